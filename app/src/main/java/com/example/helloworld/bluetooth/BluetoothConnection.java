@@ -3,26 +3,28 @@ package com.example.helloworld.bluetooth;
 import android.annotation.SuppressLint;
 import android.bluetooth.BluetoothAdapter;
 import android.bluetooth.BluetoothDevice;
-import android.bluetooth.BluetoothServerSocket;
-import android.bluetooth.BluetoothSocket;
 import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 
 import com.example.helloworld.game.GameLogic;
+import com.example.helloworld.game.PuzzleCodec;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.util.ArrayList;BluetoothConnection
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
-import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class BluetoothConnection {
     private static final String TAG = "BluetoothConnection";
-    private static final String APP_NAME = "OOXXGame";
-    private static final UUID MY_UUID = UUID.fromString("00001101-0000-1000-8000-00805F9B34FB");
 
+    // 建立连接用的传输方式，默认为蓝牙RFCOMM；bluetoothAdapter只用于查找设备
+    private final Transport transport;
     private final BluetoothAdapter bluetoothAdapter;
     private final Context context;
     private AcceptThread acceptThread;
@@ -34,29 +36,144 @@ public class BluetoothConnection {
     public static final int STATE_LISTEN = 1;     // 监听连接
     public static final int STATE_CONNECTING = 2; // 正在连接
     public static final int STATE_CONNECTED = 3;  // 已连接
+    public static final int STATE_RECONNECTING = 4; // 连接中断，正在重连并恢复会话
 
-    private final BluetoothConnectionListener listener;
+    private volatile BluetoothConnectionListener listener;
+    private final PuzzleCodec codec = new PuzzleCodec();
 
+    // 发送队列：最多排队的帧数和队列满时的处理方式（OutboundWriter.OVERFLOW_*）
+    public static final int SEND_QUEUE_CAPACITY = 256;
+    private int overflowPolicy = OutboundWriter.OVERFLOW_DROP;
+
+    // 收到的消息经收件箱成批转到主线程，onMessageReceived、onMoveReceived、
+    // onGameStateReceived和onResyncRequested都在主线程上调用
     public interface BluetoothConnectionListener {
         void onDeviceDiscovered(BluetoothDevice device);
         void onConnectionStateChanged(int state);
         void onMessageReceived(String message);
+        // 对方棋盘上一个格子的变化（按版本顺序，不会跳过或重复）
+        void onMoveReceived(int row, int col, GameLogic.CellState state);
+        // 对方在上一步之后的棋盘哈希（BoardHash），紧接着onMoveReceived回调。
+        // 只在对方已经收到本机发出的所有增量时回调，这时双方棋盘应当相同
+        void onBoardHashReceived(long hash);
+        // 对方的完整棋盘，之后的增量都基于它
+        void onGameStateReceived(GameLogic.CellState[][] board, boolean completed, long gameTime);
+        // 对方发现丢了增量，需要用sendGameState重发完整快照
+        void onResyncRequested();
+        // 对方选定了这一局的大小、难度和种子
+        void onMatchReceived(int engineVersion, int size, GameLogic.Difficulty difficulty, long seed);
+        // 对方按种子生成的初始棋盘的哈希（BoardHash）
+        void onPuzzleHashReceived(int engineVersion, long seed, long hash);
+        // 主机约定的开局时刻（主机时钟，用toLocalTime换算为本机时刻）
+        void onStartAtReceived(long startAt);
+        // 对方完成谜题的时刻（主机时钟）
+        void onGameResultReceived(long finishedAt);
         void onError(String error);
     }
 
+    // 界面之间交接已建立的连接（Intent无法传递连接对象）
+    private static BluetoothConnection shared;
+
+    private static final int MOVE_LENGTH = 19;
+    private static final int SNAPSHOT_HEADER_LENGTH = FrameCodec.SNAPSHOT_HEADER_LENGTH;
+    private static final int MATCH_LENGTH = 14;
+    private static final int PUZZLE_HASH_LENGTH = 20;
+    private static final GameLogic.Difficulty[] DIFFICULTIES = GameLogic.Difficulty.values();
+
+    // 收件箱最多排队的帧数
+    public static final int INBOX_CAPACITY = 256;
+    private static final GameLogic.CellState[] CELL_STATES = GameLogic.CellState.values();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Executor mainExecutor = mainHandler::post;
+    // 收件箱属于整个会话而不是某一次连接，断开时还没处理的帧不会丢失
+    private final Inbox inbox = new Inbox(INBOX_CAPACITY, mainExecutor, this::deliver);
+    // 只在主线程上使用，与发送用的codec分开
+    private final PuzzleCodec receiveCodec = new PuzzleCodec();
+    // 不来自对方的收件箱条目：新会话开始，在主线程上按顺序重置接收状态
+    private static final int INBOX_SESSION_RESET = -1;
+
+    // 会话恢复：连接意外断开后，发起连接的一方在RESUME_TIMEOUT_MS内反复重连，另一方重新监听，
+    // 连上后从对方已收到的位置补发（见Session）。超时后才按断开处理
+    public static final long RESUME_TIMEOUT_MS = 10000;
+    private static final long RECONNECT_BACKOFF_MS = 250;
+    private final Session session = new Session();
+    // 对方时钟的估计属于会话而不是某个连接：重连期间和重连之后继续使用原来的估计，
+    // 新连接的样本更好时才取代它（见ClockSync）。会话重置时清空
+    private final ClockSync clockSync = new ClockSync();
+    // 主动发起连接时的对方地址，重连时使用；作为服务器时为null
+    private String resumeAddress;
+    // 意外断开的连接线程，新连接的读线程等它完全退出后再开始
+    private ConnectedThread droppedThread;
+    private volatile boolean resumed;
+    private final Runnable resumeTimeout = this::giveUpResume;
+    private final Runnable reconnect = this::reconnect;
+
+    // 棋盘同步：连接建立后先发一次完整快照，之后只发单格增量。
+    // 每个方向各有一个版本号：快照带上发送方当前的版本，每个增量把版本加一。
+    // 接收方发现版本不连续（中间的增量丢了）时请求对方重发快照，快照到达前忽略之后的增量。
+    private final AtomicInteger sendVersion = new AtomicInteger();
+    // 以下两个字段只在主线程上访问
+    private int receiveVersion;
+    private boolean resyncPending;
+
+    // 心跳：每隔PING_INTERVAL_MS发一个PING，超过linkTimeoutMillis没收到任何数据时断开连接
+    public static final long PING_INTERVAL_MS = 1000;
+    public static final long DEFAULT_LINK_TIMEOUT_MS = 5000;
+    private long linkTimeoutMillis = DEFAULT_LINK_TIMEOUT_MS;
+    private volatile LinkMonitor.Listener linkListener;
+
     public BluetoothConnection(Context context, BluetoothConnectionListener listener) {
+        this(context, new RfcommTransport(BluetoothAdapter.getDefaultAdapter()), listener);
+    }
+
+    // 使用指定的传输方式（例如测试时的PipeTransport或TcpTransport），设备查找仍然使用蓝牙
+    public BluetoothConnection(Context context, Transport transport, BluetoothConnectionListener listener) {
         this.context = context;
+        this.transport = transport;
         this.listener = listener;
         bluetoothAdapter = BluetoothAdapter.getDefaultAdapter();
         state = STATE_NONE;
+        if (listener == null) {
+            inbox.pause();
+        }
+    }
+
+    public static synchronized void setShared(BluetoothConnection connection) {
+        shared = connection;
+    }
+
+    // 取出交接的连接，只能取一次；没有时返回null
+    public static synchronized BluetoothConnection takeShared() {
+        BluetoothConnection connection = shared;
+        shared = null;
+        return connection;
+    }
+
+    // 更换回调（例如从配对界面交给游戏界面），只在主线程上调用。设为null时暂停投递，
+    // 收到的消息留在收件箱里，设置新的回调后按顺序补发，交接期间不会丢消息
+    public void setListener(BluetoothConnectionListener listener) {
+        this.listener = listener;
+        if (listener == null) {
+            inbox.pause();
+        } else {
+            inbox.resume();
+        }
+    }
+
+    private void reportError(String error) {
+        BluetoothConnectionListener l = listener;
+        if (l != null) {
+            l.onError(error);
+        }
     }
 
     // 同步状态变化
     @SuppressLint("MissingPermission")
     private synchronized void setState(int state) {
         this.state = state;
-        if (listener != null) {
-            listener.onConnectionStateChanged(state);
+        BluetoothConnectionListener l = listener;
+        if (l != null) {
+            l.onConnectionStateChanged(state);
         }
     }
 
@@ -68,6 +185,8 @@ public class BluetoothConnection {
     // 开始服务（作为服务器）
     public synchronized void start() {
         Log.d(TAG, "start");
+        resumeAddress = null;
+        stopResume();
 
         // 停止任何正在运行的线程
         if (connectThread != null) {
@@ -90,9 +209,13 @@ public class BluetoothConnection {
     }
 
     // 连接到特定设备
-    @SuppressLint("MissingPermission")
-    public synchronized void connect(BluetoothDevice device) {
-        Log.d(TAG, "connect to: " + device);
+    public void connect(BluetoothDevice device) {
+        connect(device.getAddress());
+    }
+
+    // 连接到指定地址（地址的格式由transport决定）
+    public synchronized void connect(String address) {
+        Log.d(TAG, "connect to: " + address);
 
         // 停止任何正在运行的线程
         if (state == STATE_CONNECTING) {
@@ -107,15 +230,18 @@ public class BluetoothConnection {
             connectedThread = null;
         }
 
+        stopResume();
+        resumeAddress = address;
+
         // 启动ConnectThread尝试连接到设备
-        connectThread = new ConnectThread(device);
+        connectThread = new ConnectThread(address);
         connectThread.start();
 
         setState(STATE_CONNECTING);
     }
 
-    // 连接建立后开始管理通信
-    public synchronized void connected(BluetoothSocket socket, BluetoothDevice device) {
+    // 连接建立后开始管理通信；双方交换HELLO之后才进入STATE_CONNECTED
+    public synchronized void connected(Transport.Link link) {
         Log.d(TAG, "connected");
 
         // 停止ConnectThread
@@ -130,16 +256,130 @@ public class BluetoothConnection {
             acceptThread = null;
         }
 
+        ConnectedThread previous = droppedThread;
+        droppedThread = null;
+        if (connectedThread != null) {
+            connectedThread.cancel();
+            previous = connectedThread;
+        }
+
         // 启动ConnectedThread来管理连接
-        connectedThread = new ConnectedThread(socket);
+        connectedThread = new ConnectedThread(link, previous);
         connectedThread.start();
+    }
 
+    // 握手完成（读线程）
+    private void handshakeDone(FrameLink link, boolean resumed) {
+        synchronized (this) {
+            if (connectedThread == null || connectedThread.frameLink != link) {
+                return;
+            }
+            mainHandler.removeCallbacks(resumeTimeout);
+            mainHandler.removeCallbacks(reconnect);
+            this.resumed = resumed;
+            if (!resumed) {
+                sendVersion.set(0);
+            }
+        }
+        if (!resumed) {
+            // 新会话的版本号从0开始；接收方的状态经收件箱在主线程上重置，先于这个会话的任何消息。
+            // 收件箱满时会等待，不能拿着锁
+            inbox.put(INBOX_SESSION_RESET, new byte[0], 0, 0);
+        }
+        Log.i(TAG, resumed ? "session resumed" : "new session");
         setState(STATE_CONNECTED);
     }
 
-    // 停止所有线程
+    // 连接意外断开（读线程）：会话已建立时进入STATE_RECONNECTING尝试恢复，否则按断开处理
+    private void connectionLost(FrameLink link, String error) {
+        synchronized (this) {
+            if (connectedThread == null || connectedThread.frameLink != link) {
+                // 被start/connect/stop主动关闭
+                return;
+            }
+            ConnectedThread thread = connectedThread;
+            connectedThread = null;
+            session.detach();
+            if (session.isEstablished()) {
+                droppedThread = thread;
+                Log.w(TAG, "connection lost, trying to resume: " + error);
+                setState(STATE_RECONNECTING);
+                mainHandler.postDelayed(resumeTimeout, RESUME_TIMEOUT_MS);
+                if (resumeAddress != null) {
+                    mainHandler.post(reconnect);
+                } else if (acceptThread == null) {
+                    acceptThread = new AcceptThread();
+                    acceptThread.start();
+                }
+                return;
+            }
+        }
+        reportError(error);
+        setState(STATE_LISTEN);
+    }
+
+    // 重连时连接失败（连接线程）：在时限内稍后再试，否则按原来的方式报错
+    private void connectionFailed(String error) {
+        synchronized (this) {
+            if (state == STATE_RECONNECTING) {
+                mainHandler.postDelayed(reconnect, RECONNECT_BACKOFF_MS);
+                return;
+            }
+        }
+        setState(STATE_LISTEN);
+        reportError(error);
+    }
+
+    private synchronized void reconnect() {
+        if (state != STATE_RECONNECTING || resumeAddress == null || connectThread != null) {
+            return;
+        }
+        connectThread = new ConnectThread(resumeAddress);
+        connectThread.start();
+    }
+
+    // 超过RESUME_TIMEOUT_MS仍未恢复：放弃会话，按断开处理
+    private void giveUpResume() {
+        synchronized (this) {
+            if (state != STATE_RECONNECTING) {
+                return;
+            }
+            if (connectThread != null) {
+                connectThread.cancel();
+                connectThread = null;
+            }
+            if (acceptThread != null) {
+                acceptThread.cancel();
+                acceptThread = null;
+            }
+            droppedThread = null;
+            session.reset();
+            clockSync.reset();
+        }
+        reportError("连接断开，未能恢复");
+        setState(STATE_LISTEN);
+    }
+
+    // 主动更换或关闭连接时不再尝试恢复原来的会话
+    private void stopResume() {
+        mainHandler.removeCallbacks(resumeTimeout);
+        mainHandler.removeCallbacks(reconnect);
+        droppedThread = null;
+        session.reset();
+        clockSync.reset();
+    }
+
+    // 最近一次连接是否恢复了原来的会话（而不是重新开始）
+    public boolean wasResumed() {
+        return resumed;
+    }
+
+    // 停止所有线程，之后不再投递任何消息
     public synchronized void stop() {
         Log.d(TAG, "stop");
+        resumeAddress = null;
+        stopResume();
+        inbox.close();
 
         if (connectThread != null) {
             connectThread.cancel();
@@ -159,56 +399,154 @@ public class BluetoothConnection {
         setState(STATE_NONE);
     }
 
-    // 发送消息
+    // 发送一条文本消息（UTF-8编码），整体作为一帧发出
     public void write(byte[] out) {
+        writeFrame(FrameCodec.TYPE_TEXT, out);
+    }
+
+    // 设置发送队列满时的处理方式，对之后建立的连接生效
+    public synchronized void setOverflowPolicy(int overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    // 设置判定链路已断的静默时间，对之后建立的连接生效
+    public synchronized void setLinkTimeout(long millis) {
+        this.linkTimeoutMillis = millis;
+    }
+
+    // 设置链路统计的回调（不在主线程上调用），null表示不需要
+    public void setLinkListener(LinkMonitor.Listener linkListener) {
+        this.linkListener = linkListener;
+    }
+
+    // 当前连接的心跳和RTT统计，未连接时返回null
+    public LinkMonitor.Metrics getLinkMetrics() {
         ConnectedThread r;
         synchronized (this) {
-            if (state != STATE_CONNECTED) return;
             r = connectedThread;
         }
-        r.write(out);
+        return r != null ? r.frameLink.getLinkMetrics() : null;
     }
 
-    // 发送游戏状态
-    public void sendGameState(GameLogic gameLogic) {
-        // 将游戏状态转换为可传输的格式
-        StringBuilder message = new StringBuilder();
-        message.append("GAME_STATE:");
-        message.append(gameLogic.getSize());
-        message.append(",");
-        
-        GameLogic.CellState[][] board = gameLogic.getBoard();
-        for (int i = 0; i < board.length; i++) {
-            for (int j = 0; j < board[i].length; j++) {
-                message.append(board[i][j].ordinal());
-                if (i < board.length - 1 || j < board[i].length - 1) {
-                    message.append(",");
-                }
-            }
+    // 是否已经积累了足够的样本估计对方时钟（重连期间沿用断开前的估计）
+    public boolean isClockSynced() {
+        return clockSync.isSynced();
+    }
+
+    // 本机的System.nanoTime()时刻换算为对方时钟上的时刻，还没有估计时原样返回
+    public long toPeerTime(long localNanos) {
+        return clockSync.toPeer(localNanos);
+    }
+
+    // 对方时钟上的时刻换算为本机的System.nanoTime()时刻，还没有估计时原样返回
+    public long toLocalTime(long peerNanos) {
+        return clockSync.toLocal(peerNanos);
+    }
+
+    // 收件箱排队帧数的历史最大值
+    public int getInboxHighWaterMark() {
+        return inbox.getHighWaterMark();
+    }
+
+    // 等待对方确认的帧数
+    public int getUnacknowledgedFrames() {
+        return session.unacknowledged();
+    }
+
+    // 当前连接的发送统计，未连接时返回null
+    public OutboundWriter.Metrics getSendMetrics() {
+        ConnectedThread r;
+        synchronized (this) {
+            r = connectedThread;
+        }
+        return r != null ? r.frameLink.getSendMetrics() : null;
+    }
+
+    // 发送一帧（放入发送队列后立即返回，由发送线程写出）。
+    // 重连期间的帧先留在会话的重放缓冲区里，恢复后补发
+    public void writeFrame(int type, byte[] payload) {
+        synchronized (this) {
+            if (state != STATE_CONNECTED && state != STATE_RECONNECTING) return;
+        }
+        if (!session.send(FrameCodec.encode(type, payload))) {
+            Log.w(TAG, "frame dropped, unacknowledged: " + session.unacknowledged() + ", " + getSendMetrics());
+            reportError("发送队列已满，消息被丢弃");
         }
-        
-        message.append(":").append(gameLogic.isGameCompleted() ? 1 : 0);
-        message.append(":").append(gameLogic.getGameTime());
-        
-        write(message.toString().getBytes());
     }
 
-    // 发送移动
-    public void sendMove(int row, int col, GameLogic.CellState state) {
-        String message = "MOVE:" + row + "," + col + "," + state.ordinal();
-        write(message.toString().getBytes());
+    private void sendText(String message) {
+        write(message.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // 发送完整快照（连接建立时和对方请求重新同步时）
+    // 棋盘使用PuzzleCodec紧凑编码（每格2位）
+    public synchronized void sendGameState(GameLogic gameLogic) {
+        GameLogic.CellState[][] board = gameLogic.getBoard();
+        byte[] payload = new byte[SNAPSHOT_HEADER_LENGTH + PuzzleCodec.encodedLength(board.length, 0)];
+        ByteBuffer.wrap(payload)
+                .putInt(sendVersion.get())
+                .put((byte) (gameLogic.isGameCompleted() ? 1 : 0))
+                .putLong(gameLogic.getGameTime());
+        codec.encode(board, null, false, 0, payload, SNAPSHOT_HEADER_LENGTH);
+        writeFrame(FrameCodec.TYPE_SNAPSHOT, payload);
     }
 
-    // 发送游戏结果
-    public void sendGameResult(boolean isWinner) {
-        String message = "GAME_RESULT:" + (isWinner ? 1 : 0);
-        write(message.toString().getBytes());
+    // 发送一个格子的变化（二进制增量，接收方不需要解析字符串），只在主线程上调用
+    // boardHash为修改后本机棋盘的哈希，接收方据此发现双方棋盘不一致；
+    // 同时带上已经收到的对方版本，双方的增量在路上交错时接收方不做比较
+    public synchronized void sendMove(int row, int col, GameLogic.CellState state, long boardHash) {
+        byte[] payload = new byte[MOVE_LENGTH];
+        ByteBuffer.wrap(payload)
+                .putInt(sendVersion.incrementAndGet())
+                .putInt(receiveVersion)
+                .put((byte) row)
+                .put((byte) col)
+                .put((byte) state.ordinal())
+                .putLong(boardHash);
+        writeFrame(FrameCodec.TYPE_MOVE, payload);
+    }
+
+    // 开局握手：把这一局的参数发给对方
+    public void sendMatch(int size, GameLogic.Difficulty difficulty, long seed) {
+        byte[] payload = new byte[MATCH_LENGTH];
+        ByteBuffer.wrap(payload)
+                .putInt(GameLogic.ENGINE_VERSION)
+                .put((byte) size)
+                .put((byte) difficulty.ordinal())
+                .putLong(seed);
+        writeFrame(FrameCodec.TYPE_MATCH, payload);
+    }
+
+    // 把按种子生成的初始棋盘的哈希发给对方核对
+    public void sendPuzzleHash(long seed, long hash) {
+        byte[] payload = new byte[PUZZLE_HASH_LENGTH];
+        ByteBuffer.wrap(payload)
+                .putInt(GameLogic.ENGINE_VERSION)
+                .putLong(seed)
+                .putLong(hash);
+        writeFrame(FrameCodec.TYPE_PUZZLE_HASH, payload);
+    }
+
+    // 请求对方重发完整快照（只在主线程上调用）
+    public void requestResync() {
+        resyncPending = true;
+        writeFrame(FrameCodec.TYPE_RESYNC, new byte[0]);
+    }
+
+    // 约定开局时刻（主机时钟）
+    public void sendStartAt(long startAt) {
+        writeFrame(FrameCodec.TYPE_START_AT, ByteBuffer.allocate(8).putLong(startAt).array());
+    }
+
+    // 发送完成谜题的时刻（主机时钟），双方按完成时刻而不是消息到达的先后判定胜负
+    public void sendGameResult(long finishedAt) {
+        writeFrame(FrameCodec.TYPE_GAME_RESULT, ByteBuffer.allocate(8).putLong(finishedAt).array());
     }
 
     // 发送退出通知
     public void sendQuitNotification() {
         String message = "QUIT_GAME";
-        write(message.toString().getBytes());
+        sendText(message);
     }
 
     // 发现已配对的设备
@@ -240,50 +578,51 @@ public class BluetoothConnection {
 
     //  AcceptThread类用于监听传入的连接请求
     private class AcceptThread extends Thread {
-        private final BluetoothServerSocket serverSocket;
+        private final Transport.Acceptor acceptor;
 
-        @SuppressLint("MissingPermission")
         public AcceptThread() {
-            BluetoothServerSocket tmp = null;
+            Transport.Acceptor tmp = null;
             try {
-                tmp = bluetoothAdapter.listenUsingRfcommWithServiceRecord(APP_NAME, MY_UUID);
+                tmp = transport.listen();
             } catch (IOException e) {
                 Log.e(TAG, "listen() failed", e);
-                if (listener != null) {
-                    listener.onError("监听连接失败: " + e.getMessage());
-                }
+                reportError("监听连接失败: " + e.getMessage());
             }
-            serverSocket = tmp;
+            acceptor = tmp;
         }
 
         public void run() {
             Log.d(TAG, "BEGIN mAcceptThread");
             setName("AcceptThread");
+            if (acceptor == null) {
+                return;
+            }
 
-            BluetoothSocket socket = null;
+            Transport.Link link = null;
 
             while (state != STATE_CONNECTED) {
                 try {
-                    socket = serverSocket.accept();
+                    link = acceptor.accept();
                 } catch (IOException e) {
                     Log.e(TAG, "accept() failed", e);
-                    if (listener != null) {
-                        listener.onError("接受连接失败: " + e.getMessage());
-                    }
+                    reportError("接受连接失败: " + e.getMessage());
                     break;
                 }
 
-                if (socket != null) {
+                if (link != null) {
                     synchronized (BluetoothConnection.this) {
                         switch (state) {
                             case STATE_LISTEN:
                             case STATE_CONNECTING:
-                                connected(socket, socket.getRemoteDevice());
-                                break;
+                            case STATE_RECONNECTING:
+                                // 握手完成前状态不变，不再继续accept
+                                connected(link);
+                                Log.i(TAG, "END mAcceptThread");
+                                return;
                             case STATE_NONE:
                             case STATE_CONNECTED:
                                 try {
-                                    socket.close();
+                                    link.close();
                                 } catch (IOException e) {
                                     Log.e(TAG, "Could not close unwanted socket", e);
                                 }
@@ -297,8 +636,11 @@ public class BluetoothConnection {
 
         public void cancel() {
             Log.d(TAG, "cancel " + this);
+            if (acceptor == null) {
+                return;
+            }
             try {
-                serverSocket.close();
+                acceptor.close();
             } catch (IOException e) {
                 Log.e(TAG, "close() of server failed", e);
             }
@@ -307,45 +649,37 @@ public class BluetoothConnection {
 
     // ConnectThread类用于连接到远程设备
     private class ConnectThread extends Thread {
-        private final BluetoothSocket socket;
-        private final BluetoothDevice device;
+        private final Transport.Link link;
 
-        @SuppressLint("MissingPermission")
-        public ConnectThread(BluetoothDevice device) {
-            this.device = device;
-            BluetoothSocket tmp = null;
+        public ConnectThread(String address) {
+            Transport.Link tmp = null;
 
             try {
-                tmp = device.createRfcommSocketToServiceRecord(MY_UUID);
+                tmp = transport.createLink(address);
             } catch (IOException e) {
                 Log.e(TAG, "create() failed", e);
-                if (listener != null) {
-                    listener.onError("创建连接失败: " + e.getMessage());
-                }
+                reportError("创建连接失败: " + e.getMessage());
             }
-            socket = tmp;
+            link = tmp;
         }
 
-        @SuppressLint("MissingPermission")
         public void run() {
             Log.i(TAG, "BEGIN mConnectThread");
             setName("ConnectThread");
 
-            // 取消发现，因为这会减慢连接速度
-            bluetoothAdapter.cancelDiscovery();
-
             try {
-                socket.connect();
-            } catch (IOException e) {
-                try {
-                    socket.close();
-                } catch (IOException e2) {
-                    Log.e(TAG, "unable to close() socket during connection failure", e2);
+                if (link == null) {
+                    throw new IOException("no link");
                 }
-                setState(STATE_LISTEN);
-                if (listener != null) {
-                    listener.onError("连接设备失败: " + e.getMessage());
+                link.connect();
+            } catch (IOException e) {
+                cancel();
+                synchronized (BluetoothConnection.this) {
+                    if (connectThread == this) {
+                        connectThread = null;
+                    }
                 }
+                connectionFailed("连接设备失败: " + e.getMessage());
                 return;
             }
 
@@ -355,85 +689,205 @@ public class BluetoothConnection {
             }
 
             // 启动连接管理
-            connected(socket, device);
+            connected(link);
         }
 
         public void cancel() {
+            if (link == null) {
+                return;
+            }
             try {
-                socket.close();
+                link.close();
             } catch (IOException e) {
                 Log.e(TAG, "close() of connect socket failed", e);
             }
         }
     }
 
-    // ConnectedThread类用于管理已建立的连接
-    private class ConnectedThread extends Thread {
-        private final BluetoothSocket socket;
-        private final InputStream inputStream;
-        private final OutputStream outputStream;
+    // 收件箱的消费者，在主线程上调用
+    private void deliver(int type, byte[] payload, int length) {
+        if (type == INBOX_SESSION_RESET) {
+            receiveVersion = 0;
+            resyncPending = false;
+            return;
+        }
+        BluetoothConnectionListener l = listener;
+        if (l == null) {
+            return;
+        }
+        switch (type) {
+            case FrameCodec.TYPE_MOVE:
+                receiveMove(l, payload, length);
+                break;
+            case FrameCodec.TYPE_SNAPSHOT:
+                receiveSnapshot(l, payload, length);
+                break;
+            case FrameCodec.TYPE_RESYNC:
+                l.onResyncRequested();
+                break;
+            case FrameCodec.TYPE_MATCH:
+                if (length >= MATCH_LENGTH && (payload[5] & 0xFF) < DIFFICULTIES.length) {
+                    l.onMatchReceived(readInt(payload, 0), payload[4] & 0xFF, DIFFICULTIES[payload[5] & 0xFF],
+                            readLong(payload, 6));
+                }
+                break;
+            case FrameCodec.TYPE_PUZZLE_HASH:
+                if (length >= PUZZLE_HASH_LENGTH) {
+                    l.onPuzzleHashReceived(readInt(payload, 0), readLong(payload, 4), readLong(payload, 12));
+                }
+                break;
+            case FrameCodec.TYPE_START_AT:
+                if (length >= 8) {
+                    l.onStartAtReceived(readLong(payload, 0));
+                }
+                break;
+            case FrameCodec.TYPE_GAME_RESULT:
+                if (length >= 8) {
+                    l.onGameResultReceived(readLong(payload, 0));
+                }
+                break;
+            case FrameCodec.TYPE_TEXT:
+                String message = new String(payload, 0, length, StandardCharsets.UTF_8);
+                Log.d(TAG, "收到消息: " + message);
+                l.onMessageReceived(message);
+                break;
+            default:
+                // 新版本的帧类型，忽略
+                Log.w(TAG, "unknown frame type " + type);
+                break;
+        }
+    }
 
-        public ConnectedThread(BluetoothSocket socket) {
-            Log.d(TAG, "create ConnectedThread");
-            this.socket = socket;
-            InputStream tmpIn = null;
-            OutputStream tmpOut = null;
+    private void receiveMove(BluetoothConnectionListener l, byte[] payload, int length) {
+        if (length < MOVE_LENGTH || (payload[10] & 0xFF) >= CELL_STATES.length) {
+            return;
+        }
+        int version = readInt(payload, 0);
+        if (resyncPending || version <= receiveVersion) {
+            // 正在等待快照，或者是旧的增量
+            return;
+        }
+        if (version != receiveVersion + 1) {
+            Log.w(TAG, "move version gap: expected " + (receiveVersion + 1) + ", got " + version);
+            requestResync();
+            return;
+        }
+        receiveVersion = version;
+        l.onMoveReceived(payload[8] & 0xFF, payload[9] & 0xFF, CELL_STATES[payload[10] & 0xFF]);
+        // 对方发这一步时已经收到了本机的所有增量，双方棋盘应当一致
+        if (readInt(payload, 4) == sendVersion.get()) {
+            l.onBoardHashReceived(readLong(payload, 11));
+        }
+    }
 
-            try {
-                tmpIn = socket.getInputStream();
-                tmpOut = socket.getOutputStream();
-            } catch (IOException e) {
-                Log.e(TAG, "temp sockets not created", e);
-                if (listener != null) {
-                    listener.onError("创建IO流失败: " + e.getMessage());
-                }
-            }
+    private void receiveSnapshot(BluetoothConnectionListener l, byte[] payload, int length) {
+        int size = FrameCodec.snapshotBoardSize(payload, length);
+        if (size < 0) {
+            Log.e(TAG, "bad snapshot: length " + length
+                    + (length > SNAPSHOT_HEADER_LENGTH ? ", size " + (payload[SNAPSHOT_HEADER_LENGTH] & 0xFF) : ""));
+            requestResync();
+            return;
+        }
+        GameLogic.CellState[][] board = new GameLogic.CellState[size][size];
+        try {
+            receiveCodec.decode(payload, SNAPSHOT_HEADER_LENGTH, length - SNAPSHOT_HEADER_LENGTH, board, null);
+        } catch (IOException e) {
+            Log.e(TAG, "corrupt snapshot", e);
+            requestResync();
+            return;
+        }
+        ByteBuffer header = ByteBuffer.wrap(payload, 0, SNAPSHOT_HEADER_LENGTH);
+        receiveVersion = header.getInt();
+        resyncPending = false;
+        l.onGameStateReceived(board, header.get() != 0, header.getLong());
+    }
+
+    private int readInt(byte[] payload, int offset) {
+        return ((payload[offset] & 0xFF) << 24) | ((payload[offset + 1] & 0xFF) << 16)
+                | ((payload[offset + 2] & 0xFF) << 8) | (payload[offset + 3] & 0xFF);
+    }
 
-            inputStream = tmpIn;
-            outputStream = tmpOut;
+    private long readLong(byte[] payload, int offset) {
+        return ((long) readInt(payload, offset) << 32) | (readInt(payload, offset + 4) & 0xFFFFFFFFL);
+    }
+
+    // ConnectedThread类用于管理已建立的连接
+    // 帧协议由FrameLink处理：读到的编号帧放进收件箱后由主线程成批处理，
+    // PING/PONG直接在读线程上处理，测得的RTT不包含主线程的排队时间
+    private class ConnectedThread extends Thread implements FrameLink.Callback {
+        private final FrameLink frameLink;
+        // 同一会话的上一个连接线程，它还可能在往收件箱里放帧
+        private ConnectedThread previous;
+
+        public ConnectedThread(Transport.Link link, ConnectedThread previous) {
+            Log.d(TAG, "create ConnectedThread");
+            this.previous = previous;
+            frameLink = new FrameLink(link, session, this, SEND_QUEUE_CAPACITY, overflowPolicy,
+                    PING_INTERVAL_MS, linkTimeoutMillis, clockSync);
         }
 
         public void run() {
             Log.i(TAG, "BEGIN mConnectedThread");
-            byte[] buffer = new byte[1024];
-            int bytes;
-
-            while (true) {
+            // 收件箱只有一个生产者：等上一个读线程完全退出，它收到的帧都已计数，HELLO里的帧数才准确
+            if (previous != null) {
                 try {
-                    bytes = inputStream.read(buffer);
-                    String message = new String(buffer, 0, bytes);
-                    Log.d(TAG, "收到消息: " + message);
-                    if (listener != null) {
-                        listener.onMessageReceived(message);
-                    }
-                } catch (IOException e) {
-                    Log.e(TAG, "disconnected", e);
-                    if (listener != null) {
-                        listener.onError("连接断开: " + e.getMessage());
-                    }
-                    setState(STATE_LISTEN);
-                    break;
+                    previous.join();
+                } catch (InterruptedException e) {
+                    frameLink.close();
+                    return;
                 }
+                previous = null;
             }
+            frameLink.run();
         }
 
-        public void write(byte[] buffer) {
-            try {
-                outputStream.write(buffer);
-            } catch (IOException e) {
-                Log.e(TAG, "Exception during write", e);
-                if (listener != null) {
-                    listener.onError("发送消息失败: " + e.getMessage());
-                }
+        @Override
+        public void onHandshake(FrameLink link, boolean resumed) {
+            handshakeDone(link, resumed);
+        }
+
+        // 在读线程上调用：拷贝进收件箱，收件箱满时等待主线程处理
+        @Override
+        public boolean onFrame(int type, byte[] buffer, int offset, int length) {
+            return inbox.put(type, buffer, offset, length);
+        }
+
+        @Override
+        public void onClosed(FrameLink link, IOException cause) {
+            Log.e(TAG, "disconnected", cause);
+            connectionLost(link, link.isDead() ? "连接无响应，已断开" : "连接断开: " + cause.getMessage());
+        }
+
+        // 在读线程上调用
+        @Override
+        public void onLinkStats(LinkMonitor.Metrics metrics) {
+            LinkMonitor.Listener l = linkListener;
+            if (l != null) {
+                l.onLinkStats(metrics);
             }
         }
 
-        public void cancel() {
-            try {
-                socket.close();
-            } catch (IOException e) {
-                Log.e(TAG, "close() of connect socket failed", e);
+        // 在监测线程上调用，之后FrameLink关闭连接，读线程随之退出并按断开处理
+        @Override
+        public void onLinkDead(long silenceMillis) {
+            Log.w(TAG, "no data for " + silenceMillis + "ms, closing link: " + frameLink.getLinkMetrics());
+            LinkMonitor.Listener l = linkListener;
+            if (l != null) {
+                l.onLinkDead(silenceMillis);
             }
         }
+
+        // 在发送线程上调用，之后FrameLink关闭连接并按断开处理；
+        // 没写出去的帧还在会话的重放缓冲区里，恢复后补发，不需要提示用户
+        @Override
+        public void onWriteError(IOException e) {
+            Log.e(TAG, "Exception during write", e);
+        }
+
+        public void cancel() {
+            frameLink.close();
+            // 读线程可能正等在已满的收件箱上
+            interrupt();
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,87 @@
+package com.example.helloworld.bluetooth;
+
+// 估计对方时钟与本机时钟之差（NTP方式）
+//
+// 每次PING/PONG往返得到四个时间戳：t1本机发出、t2对方收到、t3对方回复、t4本机收到，
+// t1/t4是本机的System.nanoTime()，t2/t3是对方的。假设去程和回程耗时相同：
+//   offset = ((t2 - t1) + (t3 - t4)) / 2    对方时钟 - 本机时钟
+//   delay  = (t4 - t1) - (t3 - t2)          往返的网络耗时（不含对方处理时间）
+// offset的误差不超过delay/2。排队延迟只会让delay变大，所以取最近SAMPLE_WINDOW个样本中
+// delay最小的那个作为估计（NTP的时钟过滤算法的简化版）。
+//
+// 两端用的都是单调时钟，时钟差不随连接变化：同一会话的各个连接共用一个实例，
+// 换连接后原来的估计继续有效，新连接的样本只在往返更快或把旧样本挤出窗口后才取代它。
+public class ClockSync {
+    public static final int SAMPLE_WINDOW = 8;
+    // 至少这么多样本后才认为估计可用
+    public static final int MIN_SAMPLES = 4;
+
+    private final long[] offsets = new long[SAMPLE_WINDOW];
+    private final long[] delays = new long[SAMPLE_WINDOW];
+    private int count;
+    private int position;
+    private long samples;
+    private long offset;
+    private long delay = Long.MAX_VALUE;
+
+    public synchronized void addSample(long t1, long t2, long t3, long t4) {
+        long sampleDelay = (t4 - t1) - (t3 - t2);
+        if (sampleDelay < 0) {
+            // 对方的处理时间比整个往返还长，时间戳不可信
+            return;
+        }
+        offsets[position] = ((t2 - t1) + (t3 - t4)) / 2;
+        delays[position] = sampleDelay;
+        position = (position + 1) % SAMPLE_WINDOW;
+        if (count < SAMPLE_WINDOW) {
+            count++;
+        }
+        samples++;
+
+        int best = 0;
+        for (int i = 1; i < count; i++) {
+            if (delays[i] < delays[best]) {
+                best = i;
+            }
+        }
+        offset = offsets[best];
+        delay = delays[best];
+    }
+
+    // 丢弃所有样本（换了对方，原来的估计不再适用）
+    public synchronized void reset() {
+        count = 0;
+        position = 0;
+        samples = 0;
+        offset = 0;
+        delay = Long.MAX_VALUE;
+    }
+
+    public synchronized boolean isSynced() {
+        return samples >= MIN_SAMPLES;
+    }
+
+    public synchronized long getSampleCount() {
+        return samples;
+    }
+
+    // 对方时钟减本机时钟，还没有样本时为0
+    public synchronized long getOffsetNanos() {
+        return offset;
+    }
+
+    // 当前估计所用样本的往返耗时，还没有样本时为Long.MAX_VALUE
+    public synchronized long getDelayNanos() {
+        return delay;
+    }
+
+    // 本机时刻换算为对方时钟上的时刻
+    public synchronized long toPeer(long localNanos) {
+        return localNanos + offset;
+    }
+
+    // 对方时钟上的时刻换算为本机时刻
+    public synchronized long toLocal(long peerNanos) {
+        return peerNanos - offset;
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.helloworld.bluetooth;
+
+import com.example.helloworld.game.LineRules;
+import com.example.helloworld.game.PuzzleCodec;
+
+// 蓝牙连接上的帧格式
+//
+//   [payload长度:varint][type:1][payload:长度]
+//
+// 长度为无符号LEB128变长整数（每字节低7位有效，最高位为1表示后面还有字节），
+// 小消息只多出2个字节的开销。RFCOMM会把连续的写入合并或拆开，
+// 接收方必须用FrameReassembler从字节流中重新切出完整的帧。
+public final class FrameCodec {
+    // 文本控制消息（目前只有退出通知"QUIT_GAME"），payload为UTF-8编码；落子走TYPE_MOVE
+    public static final int TYPE_TEXT = 1;
+    // 单格增量：[版本:4][已收到对方的版本:4][行:1][列:1][CellState序号:1][修改后的棋盘哈希:8]
+    public static final int TYPE_MOVE = 2;
+    // 完整快照：[版本:4][已完成:1][游戏用时:8][PuzzleCodec编码的棋盘]
+    public static final int TYPE_SNAPSHOT = 3;
+    // 请求对方重发完整快照，没有payload
+    public static final int TYPE_RESYNC = 4;
+    // 开局握手：[引擎版本:4][大小:1][难度:1][种子:8]，双方按种子各自生成谜题
+    public static final int TYPE_MATCH = 5;
+    // 生成谜题后互相确认：[引擎版本:4][种子:8][初始棋盘哈希:8]
+    public static final int TYPE_PUZZLE_HASH = 6;
+    // 心跳：[序号:4][发送方的System.nanoTime():8]，收到后原样作为PONG返回
+    public static final int TYPE_PING = 7;
+    // 心跳应答：[对应PING的payload:12][收到PING的时刻:8][发出PONG的时刻:8]，
+    // 后两个是应答方的System.nanoTime()，用于ClockSync估计双方时钟之差
+    public static final int TYPE_PONG = 8;
+    // 约定开局时刻：[主机时钟上的System.nanoTime():8]，双方倒计时到这一刻同时开始
+    public static final int TYPE_START_AT = 9;
+    // 完成谜题：[完成时刻:8]，主机时钟上的System.nanoTime()
+    public static final int TYPE_GAME_RESULT = 10;
+    // 会话握手，连接建立后双方发出的第一帧，格式见Session
+    public static final int TYPE_HELLO = 11;
+    // 确认收到了对方的编号帧：[已收到的帧数:8]
+    public static final int TYPE_ACK = 12;
+
+    // 单帧payload的上限，超过时视为数据损坏（棋盘最大为LineRules.MAX_LENGTH即16x16，快照不到100字节，
+    // 留出的余量给文本消息和以后的帧类型）
+    public static final int MAX_PAYLOAD = 64 * 1024;
+    // 不超过MAX_PAYLOAD的长度编码后最多3个字节
+    public static final int MAX_LENGTH_BYTES = 3;
+    // SNAPSHOT payload中棋盘编码之前的部分：[版本:4][已完成:1][游戏用时:8]
+    public static final int SNAPSHOT_HEADER_LENGTH = 13;
+
+    private FrameCodec() {
+    }
+
+    // value编码为varint后的字节数
+    public static int varintLength(int value) {
+        int length = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            length++;
+        }
+        return length;
+    }
+
+    // 把value写成varint，返回写入后的位置
+    public static int writeVarint(int value, byte[] out, int offset) {
+        while ((value & ~0x7F) != 0) {
+            out[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out[offset++] = (byte) value;
+        return offset;
+    }
+
+    // payload长度为length的帧的总字节数
+    public static int frameLength(int length) {
+        return varintLength(length) + 1 + length;
+    }
+
+    // 把一帧写入out的offset处，返回写入后的位置
+    public static int encode(int type, byte[] payload, int payloadOffset, int length, byte[] out, int offset) {
+        if (length < 0 || length > MAX_PAYLOAD) {
+            throw new IllegalArgumentException("Frame payload too long: " + length);
+        }
+        if (type < 0 || type > 0xFF) {
+            throw new IllegalArgumentException("Bad frame type " + type);
+        }
+        offset = writeVarint(length, out, offset);
+        out[offset++] = (byte) type;
+        System.arraycopy(payload, payloadOffset, out, offset, length);
+        return offset + length;
+    }
+
+    // 编码为一个新的数组
+    public static byte[] encode(int type, byte[] payload) {
+        byte[] frame = new byte[frameLength(payload.length)];
+        encode(type, payload, 0, payload.length, frame, 0);
+        return frame;
+    }
+
+    // SNAPSHOT payload中的棋盘大小。大小来自对方，不可信：不是不超过LineRules.MAX_LENGTH的正偶数，
+    // 或者payload放不下这个大小的棋盘编码时返回-1，调用方应请求重发而不是拿它去建棋盘
+    public static int snapshotBoardSize(byte[] payload, int length) {
+        if (length < SNAPSHOT_HEADER_LENGTH + 1) {
+            return -1;
+        }
+        int size = PuzzleCodec.peekSize(payload, SNAPSHOT_HEADER_LENGTH);
+        if (size <= 0 || size % 2 != 0 || size > LineRules.MAX_LENGTH
+                || PuzzleCodec.encodedLength(size, 0) > length - SNAPSHOT_HEADER_LENGTH) {
+            return -1;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,250 @@
+package com.example.helloworld.bluetooth;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+// 一次连接上的帧协议，与具体的传输方式（Transport）和界面无关：
+// 读线程把字节流切成帧，就地处理心跳（PING/PONG、时钟同步）、握手（HELLO）和确认（ACK），
+// 其余的编号帧交给Callback。发送经OutboundWriter，编号帧由Session统一编号和补发。
+// 不依赖Android，电脑上可以用PipeTransport或TcpTransport直接运行
+public class FrameLink implements FrameReassembler.Handler, LinkMonitor.Listener {
+    // 每收到这么多编号帧发一次ACK，心跳时也会确认
+    public static final int ACK_EVERY = 16;
+    // 连接建立后连发的PING个数和间隔，尽快得到时钟差的估计
+    public static final int CLOCK_SYNC_PINGS = ClockSync.SAMPLE_WINDOW;
+    public static final long CLOCK_SYNC_SPACING_MS = 50;
+    private static final int PONG_LENGTH = LinkMonitor.PING_LENGTH + 16;
+
+    // 调用所在的线程见各方法的注释，都不在主线程上
+    public interface Callback {
+        // 收到对方的HELLO，resumed表示恢复了原来的会话（读线程）
+        void onHandshake(FrameLink link, boolean resumed);
+        // 一个编号帧，buffer只在调用期间有效；返回false时连接随之关闭（读线程）
+        boolean onFrame(int type, byte[] buffer, int offset, int length);
+        // 收到PONG后更新的链路统计（读线程）
+        void onLinkStats(LinkMonitor.Metrics metrics);
+        // 超过静默时间没有收到任何数据，连接随之关闭（监测线程）
+        void onLinkDead(long silenceMillis);
+        // 发送失败（发送线程），之后连接随之关闭
+        void onWriteError(IOException e);
+        // 连接结束，run()随之返回（读线程）。主动close()时也会回调
+        void onClosed(FrameLink link, IOException cause);
+    }
+
+    private final Transport.Link link;
+    private final Session session;
+    private final Callback callback;
+    private final int queueCapacity;
+    private final int overflowPolicy;
+    private final FrameReassembler reassembler = new FrameReassembler();
+    private final LinkMonitor linkMonitor;
+    private final ClockSync clockSync;
+    // run()开始后才创建
+    private volatile OutboundWriter writer;
+    // 收到对方的HELLO之前只处理心跳
+    private volatile boolean handshaken;
+    private volatile boolean closed;
+
+    public FrameLink(Transport.Link link, Session session, Callback callback,
+                     int queueCapacity, int overflowPolicy, long pingIntervalMillis, long linkTimeoutMillis) {
+        this(link, session, callback, queueCapacity, overflowPolicy, pingIntervalMillis, linkTimeoutMillis,
+                new ClockSync());
+    }
+
+    // clockSync：时钟差的估计，同一会话的各个连接可以共用一个，换连接时不必从头估计
+    public FrameLink(Transport.Link link, Session session, Callback callback, int queueCapacity,
+                     int overflowPolicy, long pingIntervalMillis, long linkTimeoutMillis, ClockSync clockSync) {
+        this.link = link;
+        this.session = session;
+        this.callback = callback;
+        this.queueCapacity = queueCapacity;
+        this.overflowPolicy = overflowPolicy;
+        this.clockSync = clockSync;
+        linkMonitor = new LinkMonitor(pingIntervalMillis, linkTimeoutMillis, this::sendPing, this);
+    }
+
+    // 在读线程上运行到连接结束
+    public void run() {
+        byte[] buffer = new byte[1024];
+        IOException cause;
+        try {
+            InputStream inputStream = link.getInputStream();
+            OutputStream outputStream = link.getOutputStream();
+            OutboundWriter w = new OutboundWriter(outputStream, queueCapacity, overflowPolicy, this::onWriteError);
+            synchronized (this) {
+                if (closed) {
+                    throw new IOException("closed");
+                }
+                writer = w;
+            }
+            w.start();
+            w.offer(FrameCodec.encode(FrameCodec.TYPE_HELLO, session.hello()));
+            linkMonitor.start();
+            linkMonitor.burst(CLOCK_SYNC_PINGS, CLOCK_SYNC_SPACING_MS);
+            while (true) {
+                int bytes = inputStream.read(buffer);
+                if (bytes < 0) {
+                    throw new IOException("stream closed");
+                }
+                reassembler.feed(buffer, 0, bytes, this);
+            }
+        } catch (IOException e) {
+            cause = e;
+        }
+        close();
+        callback.onClosed(this, cause);
+    }
+
+    // 在读线程上调用：心跳和握手就地处理，编号帧交给callback
+    @Override
+    public void onFrame(int type, byte[] buffer, int offset, int length) throws IOException {
+        long received = System.nanoTime();
+        linkMonitor.onActivity();
+        if (type == FrameCodec.TYPE_PING) {
+            if (length >= LinkMonitor.PING_LENGTH) {
+                sendPong(buffer, offset, received);
+            }
+            return;
+        }
+        if (type == FrameCodec.TYPE_PONG) {
+            linkMonitor.onPong(buffer, offset, length);
+            if (length >= PONG_LENGTH) {
+                clockSync.addSample(readLong(buffer, offset + 4), readLong(buffer, offset + LinkMonitor.PING_LENGTH),
+                        readLong(buffer, offset + LinkMonitor.PING_LENGTH + 8), received);
+            }
+            return;
+        }
+        if (type == FrameCodec.TYPE_HELLO) {
+            if (!handshaken) {
+                handshaken = true;
+                callback.onHandshake(this, session.onHello(buffer, offset, length, writer));
+            }
+            return;
+        }
+        if (type == FrameCodec.TYPE_ACK) {
+            if (length >= Session.ACK_LENGTH) {
+                session.acknowledge(readLong(buffer, offset));
+            }
+            return;
+        }
+        if (!handshaken) {
+            throw new IOException("frame " + type + " before HELLO");
+        }
+        // 收件箱接受之后才算收到：放不进去（已关闭或读线程被中断）的帧不能被确认，
+        // 否则对方会把它从补发缓冲区中删掉，恢复连接后也不会重发
+        if (!callback.onFrame(type, buffer, offset, length)) {
+            throw new IOException("connection closed");
+        }
+        session.onReceived();
+        sendAck(ACK_EVERY);
+    }
+
+    // 确认收到的编号帧，自上次确认以来不足minFrames帧时不发
+    private void sendAck(int minFrames) {
+        long upTo = session.takeAck(minFrames);
+        if (upTo >= 0) {
+            offerQuietly(FrameCodec.encode(FrameCodec.TYPE_ACK, ByteBuffer.allocate(Session.ACK_LENGTH).putLong(upTo).array()));
+        }
+    }
+
+    // 心跳帧丢了不影响游戏，发送队列满时不报错
+    private void offerQuietly(byte[] frame) {
+        OutboundWriter w = writer;
+        if (w != null) {
+            w.offer(frame);
+        }
+    }
+
+    // 原样返回PING的内容，再附上收到PING和发出PONG的时刻
+    private void sendPong(byte[] ping, int offset, long received) {
+        byte[] payload = new byte[PONG_LENGTH];
+        System.arraycopy(ping, offset, payload, 0, LinkMonitor.PING_LENGTH);
+        ByteBuffer.wrap(payload, LinkMonitor.PING_LENGTH, 16)
+                .putLong(received)
+                .putLong(System.nanoTime());
+        offerQuietly(FrameCodec.encode(FrameCodec.TYPE_PONG, payload));
+    }
+
+    // 在监测线程上调用，同时确认之后收到的帧
+    private void sendPing(byte[] payload) {
+        offerQuietly(FrameCodec.encode(FrameCodec.TYPE_PING, payload));
+        if (handshaken) {
+            sendAck(1);
+        }
+    }
+
+    // 在发送线程上调用：写不出去的连接不会再恢复，关闭它，读线程随之退出并按断开处理，
+    // 不必等心跳超时才开始重连
+    private void onWriteError(IOException e) {
+        callback.onWriteError(e);
+        closeLink();
+    }
+
+    // 在读线程上调用
+    @Override
+    public void onLinkStats(LinkMonitor.Metrics metrics) {
+        callback.onLinkStats(metrics);
+    }
+
+    // 在监测线程上调用：关闭连接，读线程随之退出并按断开处理
+    @Override
+    public void onLinkDead(long silenceMillis) {
+        callback.onLinkDead(silenceMillis);
+        closeLink();
+    }
+
+    // 关闭连接，可以在任何线程上调用；读线程随之退出并回调onClosed
+    public void close() {
+        OutboundWriter w;
+        synchronized (this) {
+            closed = true;
+            w = writer;
+        }
+        linkMonitor.stop();
+        if (w != null) {
+            w.close();
+        }
+        closeLink();
+    }
+
+    private void closeLink() {
+        try {
+            link.close();
+        } catch (IOException e) {
+            // 已经断开
+        }
+    }
+
+    public Transport.Link getLink() {
+        return link;
+    }
+
+    // 是否因为长时间没有收到数据而断开
+    public boolean isDead() {
+        return linkMonitor.isDead();
+    }
+
+    public LinkMonitor.Metrics getLinkMetrics() {
+        return linkMonitor.getMetrics();
+    }
+
+    // 发送统计，run()开始之前返回null
+    public OutboundWriter.Metrics getSendMetrics() {
+        OutboundWriter w = writer;
+        return w != null ? w.getMetrics() : null;
+    }
+
+    public ClockSync getClockSync() {
+        return clockSync;
+    }
+
+    private static long readLong(byte[] buffer, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (buffer[offset + i] & 0xFF);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.helloworld.bluetooth;
+
+import java.io.IOException;
+
+// 从任意切分的字节流中还原出完整的帧（格式见FrameCodec）
+//
+// 每次read()得到的数据交给feed()，其中所有完整的帧依次回调给Handler，
+// 不完整的尾部留在内部缓冲区里等下一次数据。缓冲区反复使用，只有遇到更长的帧时才扩容，
+// 回调拿到的是缓冲区中的一段，回调返回后内容就会被覆盖。
+public class FrameReassembler {
+    public interface Handler {
+        void onFrame(int type, byte[] buffer, int offset, int length) throws IOException;
+    }
+
+    private byte[] buffer;
+    // 缓冲区中尚未处理的数据为[start, end)
+    private int start;
+    private int end;
+
+    public FrameReassembler() {
+        this(1024);
+    }
+
+    public FrameReassembler(int initialCapacity) {
+        buffer = new byte[initialCapacity];
+    }
+
+    // 追加收到的数据并回调其中所有完整的帧；长度字段非法时抛出IOException，此后流已不可用
+    public void feed(byte[] data, int offset, int length, Handler handler) throws IOException {
+        append(data, offset, length);
+        while (true) {
+            // 解析长度前缀
+            int pos = start;
+            int payloadLength = 0;
+            int shift = 0;
+            while (true) {
+                if (pos == end) {
+                    return;
+                }
+                int b = buffer[pos++] & 0xFF;
+                payloadLength |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    break;
+                }
+                shift += 7;
+                if (shift >= 7 * FrameCodec.MAX_LENGTH_BYTES) {
+                    throw new IOException("Malformed frame length");
+                }
+            }
+            if (payloadLength > FrameCodec.MAX_PAYLOAD) {
+                throw new IOException("Frame too long: " + payloadLength);
+            }
+            if (end - pos < 1 + payloadLength) {
+                ensureCapacity(pos - start + 1 + payloadLength);
+                return;
+            }
+            int type = buffer[pos] & 0xFF;
+            start = pos + 1 + payloadLength;
+            handler.onFrame(type, buffer, pos + 1, payloadLength);
+        }
+    }
+
+    // 当前缓冲区的大小（用于观察扩容）
+    public int capacity() {
+        return buffer.length;
+    }
+
+    // 尚未组成完整帧的字节数
+    public int pending() {
+        return end - start;
+    }
+
+    public void reset() {
+        start = 0;
+        end = 0;
+    }
+
+    private void append(byte[] data, int offset, int length) {
+        if (start == end) {
+            start = 0;
+            end = 0;
+        }
+        ensureCapacity(end - start + length);
+        System.arraycopy(data, offset, buffer, end, length);
+        end += length;
+    }
+
+    // 保证缓冲区从start开始能放下needed个字节：先把未处理的数据移到开头，仍不够时扩容
+    private void ensureCapacity(int needed) {
+        if (buffer.length - start >= needed) {
+            return;
+        }
+        int pending = end - start;
+        if (buffer.length >= needed) {
+            System.arraycopy(buffer, start, buffer, 0, pending);
+        } else {
+            // 翻倍扩容，但不超过最长一帧所需的大小
+            int maxFrame = FrameCodec.frameLength(FrameCodec.MAX_PAYLOAD);
+            byte[] grown = new byte[Math.max(needed, Math.min(buffer.length * 2, maxFrame))];
+            System.arraycopy(buffer, start, grown, 0, pending);
+            buffer = grown;
+        }
+        start = 0;
+        end = pending;
+    }
+}
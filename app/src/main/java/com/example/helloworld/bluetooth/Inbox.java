@@ -0,0 +1,152 @@
+package com.example.helloworld.bluetooth;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+// 收到的帧先放进有界收件箱，再成批交给消费线程（通常是界面线程）处理，
+// 读socket的线程不会被慢的处理逻辑拖住。
+//
+// 收件箱是单生产者（读线程）单消费者的环形缓冲区，每个槽预先分配好payload缓冲区，
+// 帧内容拷贝进去，只有遇到比以往更长的帧时才扩容。
+// 从空变为非空时通过executor提交同一个预先创建的Runnable，
+// 它一次处理所有排队的帧，所以逐帧处理不需要分配任何对象。
+// 收件箱满时读线程等待，不再从socket读取，背压交给底层链路。
+public class Inbox {
+    public interface Consumer {
+        // 在消费线程上调用；payload只在回调期间有效
+        void deliver(int type, byte[] payload, int length);
+    }
+
+    // 每个槽初始的payload缓冲区大小，足够放下MOVE等小消息
+    private static final int SLOT_BYTES = 64;
+    // 一次最多处理的帧数，超过时重新提交，避免长时间占用界面线程
+    private static final int MAX_BATCH = 64;
+    // 收件箱满时读线程每次等待的时间
+    private static final long FULL_PARK_NANOS = 200000;
+
+    private final Executor executor;
+    private final Consumer consumer;
+    private final int capacity;
+    private final int mask;
+    private final int[] types;
+    private final byte[][] payloads;
+    private final int[] lengths;
+    // tail只由读线程修改，head只由消费线程修改
+    private volatile long head;
+    private volatile long tail;
+    private volatile boolean closed;
+    private volatile boolean paused;
+
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final Runnable drain = this::drain;
+
+    // 统计
+    private volatile int highWaterMark;
+    private volatile long delivered;
+    private volatile long batches;
+
+    // capacity向上取整到2的幂
+    public Inbox(int capacity, Executor executor, Consumer consumer) {
+        this.executor = executor;
+        this.consumer = consumer;
+        this.capacity = Integer.highestOneBit(Math.max(2, capacity - 1) << 1);
+        this.mask = this.capacity - 1;
+        this.types = new int[this.capacity];
+        this.payloads = new byte[this.capacity][SLOT_BYTES];
+        this.lengths = new int[this.capacity];
+    }
+
+    // 放入一帧（仅读线程调用）；收件箱满时等待，已关闭或读线程被中断时返回false
+    public boolean put(int type, byte[] buffer, int offset, int length) {
+        long position = tail;
+        while (position - head >= capacity) {
+            if (closed || Thread.currentThread().isInterrupted()) {
+                return false;
+            }
+            LockSupport.parkNanos(FULL_PARK_NANOS);
+        }
+        if (closed) {
+            return false;
+        }
+        int index = (int) position & mask;
+        if (payloads[index].length < length) {
+            payloads[index] = new byte[Math.max(length, payloads[index].length * 2)];
+        }
+        System.arraycopy(buffer, offset, payloads[index], 0, length);
+        types[index] = type;
+        lengths[index] = length;
+        tail = position + 1;
+
+        int depth = (int) (position + 1 - head);
+        if (depth > highWaterMark) {
+            highWaterMark = depth;
+        }
+        if (scheduled.compareAndSet(false, true)) {
+            executor.execute(drain);
+        }
+        return true;
+    }
+
+    private void drain() {
+        // 先清除标志再读取，处理期间新放入的帧会再次提交
+        scheduled.set(false);
+        if (paused) {
+            return;
+        }
+        long first = head;
+        long end = Math.min(tail, first + MAX_BATCH);
+        if (first == end) {
+            return;
+        }
+        long position = first;
+        while (position < end && !closed && !paused) {
+            int index = (int) position & mask;
+            consumer.deliver(types[index], payloads[index], lengths[index]);
+            position++;
+            head = position;
+        }
+        delivered += position - first;
+        batches++;
+        if (tail != head && !closed && !paused && scheduled.compareAndSet(false, true)) {
+            executor.execute(drain);
+        }
+    }
+
+    // 当前排队的帧数
+    public int depth() {
+        return (int) (tail - head);
+    }
+
+    // 排队帧数的历史最大值
+    public int getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    public long getDelivered() {
+        return delivered;
+    }
+
+    // 处理的批数，小于getDelivered()说明发生了批量处理
+    public long getBatches() {
+        return batches;
+    }
+
+    // 暂停投递，之后收到的帧留在收件箱里（收件箱满时读线程等待）
+    public void pause() {
+        paused = true;
+    }
+
+    // 恢复投递，暂停期间排队的帧按顺序补发
+    public void resume() {
+        paused = false;
+        if (depth() > 0 && scheduled.compareAndSet(false, true)) {
+            executor.execute(drain);
+        }
+    }
+
+    // 停止投递，尚未处理的帧被丢弃，等待中的读线程返回
+    public void close() {
+        closed = true;
+    }
+}
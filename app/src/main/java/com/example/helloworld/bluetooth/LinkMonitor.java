@@ -0,0 +1,218 @@
+package com.example.helloworld.bluetooth;
+
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// 链路心跳和往返时延（RTT）统计
+//
+// 每隔固定时间发一个PING（序号+发送时的System.nanoTime()），对方原样回PONG，
+// 收到PONG时用当前时间减去其中的发送时间得到一次RTT样本，不需要两边时钟一致。
+// 统计最小值、平均值、最近SAMPLE_WINDOW个样本的p99，以及RFC 3550式的抖动估计
+// （相邻两次RTT之差的绝对值的指数平均，权重1/16）。
+// 收到任何数据都算链路活着；超过deadAfterMillis什么都没收到时判定链路已断。
+public class LinkMonitor {
+    // 计算p99的样本窗口
+    public static final int SAMPLE_WINDOW = 256;
+
+    public interface Pinger {
+        // 发出一个PING，payload由encodePing()生成
+        void sendPing(byte[] payload);
+    }
+
+    public interface Listener {
+        // 在读线程上调用，每收到一个PONG一次
+        void onLinkStats(Metrics metrics);
+
+        // 在监测线程上调用，判定链路已断时一次
+        void onLinkDead(long silenceMillis);
+    }
+
+    public static final int PING_LENGTH = 12;
+
+    private final long intervalMillis;
+    private final long deadAfterMillis;
+    private final Pinger pinger;
+    private final Listener listener;
+    private ScheduledExecutorService scheduler;
+
+    private int nextSeq;
+    private long pingsSent;
+    private long pongsReceived;
+    private long lastHeardNanos = System.nanoTime();
+    private boolean dead;
+
+    private final long[] window = new long[SAMPLE_WINDOW];
+    private int windowCount;
+    private int windowPos;
+    private long minRtt = Long.MAX_VALUE;
+    private long totalRtt;
+    private long lastRtt = -1;
+    private double jitter;
+
+    public LinkMonitor(long intervalMillis, long deadAfterMillis, Pinger pinger, Listener listener) {
+        this.intervalMillis = intervalMillis;
+        this.deadAfterMillis = deadAfterMillis;
+        this.pinger = pinger;
+        this.listener = listener;
+    }
+
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        lastHeardNanos = System.nanoTime();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "LinkMonitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::tick, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // 在接下来的count*spacingMillis内额外发count个PING，用于连接刚建立时尽快积累样本
+    public synchronized void burst(int count, long spacingMillis) {
+        if (scheduler == null || scheduler.isShutdown()) {
+            return;
+        }
+        for (int i = 1; i <= count; i++) {
+            scheduler.schedule(this::tick, i * spacingMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private void tick() {
+        byte[] ping;
+        long silence;
+        synchronized (this) {
+            if (dead) {
+                return;
+            }
+            silence = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastHeardNanos);
+            if (silence > deadAfterMillis) {
+                dead = true;
+                ping = null;
+            } else {
+                ping = encodePing(nextSeq++, System.nanoTime());
+                pingsSent++;
+            }
+        }
+        if (ping != null) {
+            pinger.sendPing(ping);
+        } else if (listener != null) {
+            listener.onLinkDead(silence);
+        }
+    }
+
+    static byte[] encodePing(int seq, long nanos) {
+        byte[] payload = new byte[PING_LENGTH];
+        for (int i = 0; i < 4; i++) {
+            payload[i] = (byte) (seq >>> (24 - 8 * i));
+        }
+        for (int i = 0; i < 8; i++) {
+            payload[4 + i] = (byte) (nanos >>> (56 - 8 * i));
+        }
+        return payload;
+    }
+
+    // 收到任何帧时调用（读线程）
+    public synchronized void onActivity() {
+        lastHeardNanos = System.nanoTime();
+    }
+
+    // 收到PONG时调用（读线程），payload以对方原样返回的PING内容开头
+    public void onPong(byte[] payload, int offset, int length) {
+        if (length < PING_LENGTH) {
+            return;
+        }
+        long sent = 0;
+        for (int i = 0; i < 8; i++) {
+            sent = (sent << 8) | (payload[offset + 4 + i] & 0xFF);
+        }
+        long now = System.nanoTime();
+        Metrics metrics;
+        synchronized (this) {
+            long rtt = now - sent;
+            if (rtt < 0) {
+                return;
+            }
+            lastHeardNanos = now;
+            pongsReceived++;
+            if (rtt < minRtt) {
+                minRtt = rtt;
+            }
+            totalRtt += rtt;
+            if (lastRtt >= 0) {
+                jitter += (Math.abs(rtt - lastRtt) - jitter) / 16;
+            }
+            lastRtt = rtt;
+            window[windowPos] = rtt;
+            windowPos = (windowPos + 1) % SAMPLE_WINDOW;
+            if (windowCount < SAMPLE_WINDOW) {
+                windowCount++;
+            }
+            metrics = listener != null ? getMetrics() : null;
+        }
+        if (metrics != null) {
+            listener.onLinkStats(metrics);
+        }
+    }
+
+    public synchronized boolean isDead() {
+        return dead;
+    }
+
+    public synchronized Metrics getMetrics() {
+        long p99 = 0;
+        if (windowCount > 0) {
+            long[] sorted = Arrays.copyOf(window, windowCount);
+            Arrays.sort(sorted);
+            p99 = sorted[Math.min(windowCount - 1, (int) Math.ceil(windowCount * 0.99) - 1)];
+        }
+        return new Metrics(pingsSent, pongsReceived,
+                pongsReceived == 0 ? 0 : minRtt,
+                pongsReceived == 0 ? 0 : totalRtt / pongsReceived,
+                p99, Math.max(0, lastRtt), (long) jitter,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastHeardNanos), dead);
+    }
+
+    // 链路统计快照，时间单位为纳秒（silenceMillis除外）
+    public static class Metrics {
+        public final long pingsSent;
+        public final long pongsReceived;
+        public final long minRttNanos;
+        public final long avgRttNanos;
+        public final long p99RttNanos;
+        public final long lastRttNanos;
+        public final long jitterNanos;
+        // 距最后一次收到数据的时间
+        public final long silenceMillis;
+        public final boolean dead;
+
+        Metrics(long pingsSent, long pongsReceived, long minRttNanos, long avgRttNanos, long p99RttNanos,
+                long lastRttNanos, long jitterNanos, long silenceMillis, boolean dead) {
+            this.pingsSent = pingsSent;
+            this.pongsReceived = pongsReceived;
+            this.minRttNanos = minRttNanos;
+            this.avgRttNanos = avgRttNanos;
+            this.p99RttNanos = p99RttNanos;
+            this.lastRttNanos = lastRttNanos;
+            this.jitterNanos = jitterNanos;
+            this.silenceMillis = silenceMillis;
+            this.dead = dead;
+        }
+
+        @Override
+        public String toString() {
+            return "rtt min/avg/p99=" + minRttNanos / 1000 + "/" + avgRttNanos / 1000 + "/" + p99RttNanos / 1000
+                    + "us jitter=" + jitterNanos / 1000 + "us pings=" + pingsSent + " pongs=" + pongsReceived
+                    + " silence=" + silenceMillis + "ms" + (dead ? " DEAD" : "");
+        }
+    }
+}
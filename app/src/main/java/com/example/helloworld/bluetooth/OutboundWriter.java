@@ -0,0 +1,259 @@
+package com.example.helloworld.bluetooth;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+// 独立的发送线程：调用方把编码好的帧放进有界队列后立即返回，由发送线程写入socket，
+// 链路卡住时不会拖住界面线程。
+//
+// 队列是无锁的多生产者单消费者环形缓冲区（每个槽带序号，生产者用CAS领取位置）。
+// 发送线程每次把当前排队的所有帧拼进同一个缓冲区，一次write()写出。
+// 队列满时按溢出策略丢弃新帧（OVERFLOW_DROP）或让调用方等待空位（OVERFLOW_BLOCK）。
+public class OutboundWriter {
+    public static final int OVERFLOW_DROP = 0;
+    public static final int OVERFLOW_BLOCK = 1;
+
+    // 一次合并写出的字节数上限（单帧超过时单独写出）
+    private static final int BATCH_BYTES = 8 * 1024;
+    // 队列满时生产者每次等待的时间
+    private static final long BLOCK_PARK_NANOS = 100000;
+
+    public interface ErrorListener {
+        // 在发送线程上调用，之后发送线程结束
+        void onWriteError(IOException e);
+    }
+
+    private final OutputStream outputStream;
+    private final int overflowPolicy;
+    private final ErrorListener errorListener;
+
+    private final int capacity;
+    private final int mask;
+    private final AtomicReferenceArray<byte[]> slots;
+    // 槽i的序号：等于写入位置表示空闲，等于写入位置+1表示已放入
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    // 只由发送线程修改
+    private volatile long head;
+
+    private final Thread thread;
+    private volatile boolean closed;
+    private volatile boolean sleeping;
+    private byte[] batch = new byte[BATCH_BYTES];
+
+    // 统计
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile long framesWritten;
+    private volatile long bytesWritten;
+    private volatile long writes;
+    private volatile long totalWriteNanos;
+    private volatile long maxWriteNanos;
+    private volatile int maxDepth;
+
+    // capacity向上取整到2的幂
+    public OutboundWriter(OutputStream outputStream, int capacity, int overflowPolicy, ErrorListener errorListener) {
+        if (overflowPolicy != OVERFLOW_DROP && overflowPolicy != OVERFLOW_BLOCK) {
+            throw new IllegalArgumentException("Unknown overflow policy " + overflowPolicy);
+        }
+        this.outputStream = outputStream;
+        this.overflowPolicy = overflowPolicy;
+        this.errorListener = errorListener;
+        this.capacity = Integer.highestOneBit(Math.max(2, capacity - 1) << 1);
+        this.mask = this.capacity - 1;
+        this.slots = new AtomicReferenceArray<>(this.capacity);
+        this.sequences = new AtomicLongArray(this.capacity);
+        for (int i = 0; i < this.capacity; i++) {
+            sequences.set(i, i);
+        }
+        thread = new Thread(this::run, "OutboundWriter");
+        thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    // 放入一帧；成功返回true，已关闭或按OVERFLOW_DROP丢弃时返回false
+    public boolean offer(byte[] frame) {
+        while (!closed) {
+            if (tryOffer(frame)) {
+                enqueued.incrementAndGet();
+                int depth = depth();
+                if (depth > maxDepth) {
+                    maxDepth = depth;
+                }
+                if (sleeping) {
+                    LockSupport.unpark(thread);
+                }
+                return true;
+            }
+            if (overflowPolicy == OVERFLOW_DROP) {
+                dropped.incrementAndGet();
+                return false;
+            }
+            LockSupport.parkNanos(BLOCK_PARK_NANOS);
+        }
+        return false;
+    }
+
+    private boolean tryOffer(byte[] frame) {
+        while (true) {
+            long position = tail.get();
+            int index = (int) position & mask;
+            long sequence = sequences.get(index);
+            if (sequence == position) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots.set(index, frame);
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+            } else if (sequence < position) {
+                // 这个槽还没被发送线程取走，队列已满
+                return false;
+            }
+            // 其他生产者抢先领取了这个位置，重试
+        }
+    }
+
+    // 取出下一帧，队列为空或下一个位置还没写完时返回null（仅发送线程调用）
+    private byte[] poll() {
+        long position = head;
+        int index = (int) position & mask;
+        if (sequences.get(index) != position + 1) {
+            return null;
+        }
+        byte[] frame = slots.get(index);
+        slots.set(index, null);
+        sequences.set(index, position + capacity);
+        head = position + 1;
+        return frame;
+    }
+
+    // 当前排队的帧数
+    public int depth() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    // 已关闭（主动关闭或写出失败），之后offer总是返回false
+    public boolean isClosed() {
+        return closed;
+    }
+
+    // 停止发送线程，尚未写出的帧被丢弃
+    public void close() {
+        closed = true;
+        LockSupport.unpark(thread);
+    }
+
+    private void run() {
+        byte[] carry = null;
+        try {
+            while (!closed) {
+                byte[] frame = carry != null ? carry : poll();
+                carry = null;
+                if (frame == null) {
+                    sleeping = true;
+                    // 设置标志后再检查一次，避免错过刚放入的帧
+                    if (depth() == 0 && !closed) {
+                        LockSupport.park(this);
+                    }
+                    sleeping = false;
+                    continue;
+                }
+
+                // 把排队的帧拼进同一个缓冲区
+                int length = 0;
+                int frames = 0;
+                byte[] out;
+                if (frame.length >= batch.length) {
+                    out = frame;
+                    length = frame.length;
+                    frames = 1;
+                } else {
+                    out = batch;
+                    while (frame != null) {
+                        if (length + frame.length > batch.length) {
+                            carry = frame;
+                            break;
+                        }
+                        System.arraycopy(frame, 0, batch, length, frame.length);
+                        length += frame.length;
+                        frames++;
+                        frame = poll();
+                    }
+                }
+
+                long start = System.nanoTime();
+                outputStream.write(out, 0, length);
+                outputStream.flush();
+                long elapsed = System.nanoTime() - start;
+
+                framesWritten += frames;
+                bytesWritten += length;
+                writes++;
+                totalWriteNanos += elapsed;
+                if (elapsed > maxWriteNanos) {
+                    maxWriteNanos = elapsed;
+                }
+            }
+        } catch (IOException e) {
+            closed = true;
+            if (errorListener != null) {
+                errorListener.onWriteError(e);
+            }
+        }
+    }
+
+    public Metrics getMetrics() {
+        return new Metrics(depth(), maxDepth, enqueued.get(), dropped.get(), framesWritten, bytesWritten,
+                writes, totalWriteNanos, maxWriteNanos);
+    }
+
+    // 发送统计快照
+    public static class Metrics {
+        public final int depth;
+        public final int maxDepth;
+        public final long enqueued;
+        public final long dropped;
+        public final long framesWritten;
+        public final long bytesWritten;
+        // 实际调用write()的次数，小于framesWritten说明发生了合并
+        public final long writes;
+        public final long totalWriteNanos;
+        public final long maxWriteNanos;
+
+        Metrics(int depth, int maxDepth, long enqueued, long dropped, long framesWritten, long bytesWritten,
+                long writes, long totalWriteNanos, long maxWriteNanos) {
+            this.depth = depth;
+            this.maxDepth = maxDepth;
+            this.enqueued = enqueued;
+            this.dropped = dropped;
+            this.framesWritten = framesWritten;
+            this.bytesWritten = bytesWritten;
+            this.writes = writes;
+            this.totalWriteNanos = totalWriteNanos;
+            this.maxWriteNanos = maxWriteNanos;
+        }
+
+        // 平均每次写出（write+flush）的耗时
+        public long getAverageWriteNanos() {
+            return writes == 0 ? 0 : totalWriteNanos / writes;
+        }
+
+        @Override
+        public String toString() {
+            return "depth=" + depth + "/" + maxDepth + " enqueued=" + enqueued + " dropped=" + dropped
+                    + " frames=" + framesWritten + " writes=" + writes + " bytes=" + bytesWritten
+                    + " avgWrite=" + getAverageWriteNanos() / 1000 + "us maxWrite=" + maxWriteNanos / 1000 + "us";
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.example.helloworld.bluetooth;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+
+// 进程内的管道：同一个PipeTransport对象上createLink()连接的对象就是listen()那一端，地址被忽略。
+// 两个方向各是一个有界字节缓冲区，没有任何传输延迟，用于在电脑上测试协议本身的开销。
+// disconnectAll()模拟链路中断，两端的读写都立即抛出IOException
+public class PipeTransport implements Transport {
+    // 每个方向缓冲的字节数，写满时写方等待，相当于链路的窗口
+    public static final int PIPE_BYTES = 64 * 1024;
+
+    // 等待被accept的连接，元素为服务端那一头；listenerClosed表示监听已关闭
+    private final LinkedBlockingQueue<PipeLink> pending = new LinkedBlockingQueue<>();
+    private final PipeLink listenerClosed = new PipeLink(null, null, "closed");
+    private final List<PipeLink> open = new ArrayList<>();
+    // 没有在监听时connect()立即失败，和TCP的拒绝连接一样
+    private volatile boolean listening;
+
+    @Override
+    public Acceptor listen() {
+        pending.clear();
+        listening = true;
+        return new Acceptor() {
+            @Override
+            public Link accept() throws IOException {
+                PipeLink link;
+                try {
+                    link = pending.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("interrupted");
+                }
+                if (link == listenerClosed) {
+                    throw new IOException("listener closed");
+                }
+                return link;
+            }
+
+            @Override
+            public void close() {
+                listening = false;
+                pending.offer(listenerClosed);
+            }
+        };
+    }
+
+    @Override
+    public Link createLink(String address) {
+        return new Link() {
+            private PipeLink client;
+            private volatile boolean closed;
+
+            @Override
+            public void connect() throws IOException {
+                if (closed) {
+                    throw new IOException("closed");
+                }
+                if (!listening) {
+                    throw new IOException("connection refused");
+                }
+                Pipe up = new Pipe();
+                Pipe down = new Pipe();
+                client = new PipeLink(down, up, "pipe:server");
+                PipeLink server = new PipeLink(up, down, "pipe:client");
+                synchronized (open) {
+                    open.add(client);
+                    open.add(server);
+                }
+                pending.offer(server);
+            }
+
+            @Override
+            public InputStream getInputStream() throws IOException {
+                return connected().getInputStream();
+            }
+
+            @Override
+            public OutputStream getOutputStream() throws IOException {
+                return connected().getOutputStream();
+            }
+
+            private PipeLink connected() throws IOException {
+                if (client == null) {
+                    throw new IOException("not connected");
+                }
+                return client;
+            }
+
+            @Override
+            public String getAddress() {
+                return address;
+            }
+
+            @Override
+            public void close() throws IOException {
+                closed = true;
+                if (client != null) {
+                    client.close();
+                }
+            }
+        };
+    }
+
+    // 断开目前所有的连接，模拟无线链路中断
+    public void disconnectAll() {
+        List<PipeLink> links;
+        synchronized (open) {
+            links = new ArrayList<>(open);
+            open.clear();
+        }
+        for (PipeLink link : links) {
+            link.close();
+        }
+    }
+
+    private class PipeLink implements Link {
+        private final Pipe in;
+        private final Pipe out;
+        private final String address;
+
+        PipeLink(Pipe in, Pipe out, String address) {
+            this.in = in;
+            this.out = out;
+            this.address = address;
+        }
+
+        @Override
+        public void connect() {
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return in.input;
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            return out.output;
+        }
+
+        @Override
+        public String getAddress() {
+            return address;
+        }
+
+        // 关闭任何一端都会断开两个方向
+        @Override
+        public void close() {
+            in.close();
+            out.close();
+            synchronized (open) {
+                open.remove(this);
+            }
+        }
+    }
+
+    // 单向的有界字节环形缓冲区
+    private static class Pipe {
+        private final byte[] buffer = new byte[PIPE_BYTES];
+        private int readPos;
+        private int count;
+        private boolean closed;
+
+        final InputStream input = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                byte[] one = new byte[1];
+                return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return Pipe.this.read(b, off, len);
+            }
+
+            @Override
+            public void close() {
+                Pipe.this.close();
+            }
+        };
+
+        final OutputStream output = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                Pipe.this.write(b, off, len);
+            }
+
+            @Override
+            public void close() {
+                Pipe.this.close();
+            }
+        };
+
+        synchronized int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            // 断开时还没读走的数据也丢掉，和无线链路中断一样
+            while (count == 0 || closed) {
+                if (closed) {
+                    throw new IOException("pipe closed");
+                }
+                waitQuietly();
+            }
+            int n = Math.min(len, count);
+            int first = Math.min(n, buffer.length - readPos);
+            System.arraycopy(buffer, readPos, b, off, first);
+            System.arraycopy(buffer, 0, b, off + first, n - first);
+            readPos = (readPos + n) % buffer.length;
+            count -= n;
+            notifyAll();
+            return n;
+        }
+
+        synchronized void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                while (count == buffer.length && !closed) {
+                    waitQuietly();
+                }
+                if (closed) {
+                    throw new IOException("pipe closed");
+                }
+                int writePos = (readPos + count) % buffer.length;
+                int n = Math.min(len, Math.min(buffer.length - count, buffer.length - writePos));
+                System.arraycopy(b, off, buffer, writePos, n);
+                count += n;
+                off += n;
+                len -= n;
+                notifyAll();
+            }
+        }
+
+        synchronized void close() {
+            closed = true;
+            notifyAll();
+        }
+
+        private void waitQuietly() throws IOException {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted");
+            }
+        }
+    }
+}
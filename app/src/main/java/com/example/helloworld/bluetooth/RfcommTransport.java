@@ -0,0 +1,91 @@
+package com.example.helloworld.bluetooth;
+
+import android.annotation.SuppressLint;
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothServerSocket;
+import android.bluetooth.BluetoothSocket;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.UUID;
+
+// 蓝牙RFCOMM，地址为设备的MAC地址
+public class RfcommTransport implements Transport {
+    private static final String APP_NAME = "OOXXGame";
+    private static final UUID MY_UUID = UUID.fromString("00001101-0000-1000-8000-00805F9B34FB");
+
+    private final BluetoothAdapter bluetoothAdapter;
+
+    public RfcommTransport(BluetoothAdapter bluetoothAdapter) {
+        this.bluetoothAdapter = bluetoothAdapter;
+    }
+
+    @SuppressLint("MissingPermission")
+    @Override
+    public Acceptor listen() throws IOException {
+        BluetoothServerSocket serverSocket = bluetoothAdapter.listenUsingRfcommWithServiceRecord(APP_NAME, MY_UUID);
+        return new Acceptor() {
+            @Override
+            public Link accept() throws IOException {
+                BluetoothSocket socket = serverSocket.accept();
+                return new SocketLink(socket, socket.getRemoteDevice().getAddress());
+            }
+
+            @Override
+            public void close() throws IOException {
+                serverSocket.close();
+            }
+        };
+    }
+
+    @SuppressLint("MissingPermission")
+    @Override
+    public Link createLink(String address) throws IOException {
+        BluetoothSocket socket = bluetoothAdapter.getRemoteDevice(address).createRfcommSocketToServiceRecord(MY_UUID);
+        return new SocketLink(socket, address);
+    }
+
+    private class SocketLink implements Link {
+        private final BluetoothSocket socket;
+        private final String address;
+
+        SocketLink(BluetoothSocket socket, String address) {
+            this.socket = socket;
+            this.address = address;
+        }
+
+        @SuppressLint("MissingPermission")
+        @Override
+        public void connect() throws IOException {
+            // 取消发现，因为这会减慢连接速度
+            bluetoothAdapter.cancelDiscovery();
+            socket.connect();
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return socket.getInputStream();
+        }
+
+        @Override
+        public OutputStream getOutputStream() throws IOException {
+            return socket.getOutputStream();
+        }
+
+        @Override
+        public String getAddress() {
+            return address;
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+
+        @Override
+        public String toString() {
+            return "rfcomm:" + address;
+        }
+    }
+}
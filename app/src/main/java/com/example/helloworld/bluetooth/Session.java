@@ -0,0 +1,157 @@
+package com.example.helloworld.bluetooth;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+// 可恢复的会话：连接断开后重新连上时，从对方最后确认收到的帧开始补发，游戏不受影响
+//
+// 除心跳、握手和确认之外的帧都按发出的顺序编号（从1开始，编号不写进帧里：
+// 同一会话里双方按同样的顺序计数，所以不需要额外的字节）。
+// 发出的帧留在重放缓冲区里，直到对方用ACK确认收到；缓冲区最多保留REPLAY_CAPACITY帧，
+// 满了以后新的帧被拒绝（调用方按发送队列满处理），而不是丢掉还没确认的帧。
+//
+// 每次连接建立后双方先互发HELLO：
+//   [本方会话ID:8][已知的对方会话ID:8][已收到的帧数:8][缓冲区中最早的帧号:8][已发出的帧数:8]
+// 双方会话ID互相对得上，并且双方都能从对方已收到的位置补发时，恢复原来的会话，
+// 否则双方都从头开始一个新会话。两边用同样的两份HELLO判断，结论总是一致。
+public class Session {
+    // 重放缓冲区最多保留的帧数，不超过发送队列的容量，补发时一次放得下
+    public static final int REPLAY_CAPACITY = 128;
+    public static final int HELLO_LENGTH = 40;
+    public static final int ACK_LENGTH = 8;
+
+    private final long localId;
+    private long peerId;
+    // 已发出、已收到和对方已确认的帧号
+    private long sent;
+    private long received;
+    private long acked;
+    private long lastAckSent;
+
+    // 帧号为acked+1到sent的帧，下标为帧号 % REPLAY_CAPACITY
+    private final byte[][] replay = new byte[REPLAY_CAPACITY][];
+
+    // 握手完成后为true，帧直接交给writer发出；否则只放进缓冲区，等连上后补发
+    private OutboundWriter writer;
+    private boolean established;
+
+    public Session() {
+        long id;
+        do {
+            id = new Random().nextLong();
+        } while (id == 0);
+        localId = id;
+    }
+
+    // 发出一帧（已编码）：放进重放缓冲区，已连接时同时交给发送队列。
+    // 返回false表示帧被丢弃（发送队列满，或者重放缓冲区满），不占用帧号。
+    // 发送线程已经退出（写出失败、连接正在断开）时和断开后一样，帧只放进缓冲区，恢复后补发
+    public synchronized boolean send(byte[] frame) {
+        if (sent - acked >= REPLAY_CAPACITY) {
+            return false;
+        }
+        if (writer != null && !writer.offer(frame)) {
+            if (!writer.isClosed()) {
+                return false;
+            }
+            writer = null;
+        }
+        sent++;
+        replay[(int) (sent % REPLAY_CAPACITY)] = frame;
+        return true;
+    }
+
+    // 连接建立后发给对方的HELLO
+    public synchronized byte[] hello() {
+        byte[] payload = new byte[HELLO_LENGTH];
+        ByteBuffer.wrap(payload)
+                .putLong(localId)
+                .putLong(peerId)
+                .putLong(received)
+                .putLong(acked + 1)
+                .putLong(sent);
+        return payload;
+    }
+
+    // 收到对方的HELLO（读线程）：决定恢复还是重新开始，然后开始通过writer发送。
+    // 恢复时先补发对方还没收到的帧；返回是否恢复了原来的会话
+    public synchronized boolean onHello(byte[] payload, int offset, int length, OutboundWriter writer) {
+        boolean resume = false;
+        if (length >= HELLO_LENGTH) {
+            ByteBuffer hello = ByteBuffer.wrap(payload, offset, HELLO_LENGTH);
+            long theirId = hello.getLong();
+            long theirPeerId = hello.getLong();
+            long theirReceived = hello.getLong();
+            long theirFirstRetained = hello.getLong();
+            long theirSent = hello.getLong();
+            resume = peerId != 0 && theirId == peerId && theirPeerId == localId
+                    && theirReceived <= sent && acked <= theirReceived
+                    && received <= theirSent && theirFirstRetained <= received + 1;
+            if (!resume) {
+                peerId = theirId;
+            } else {
+                acknowledge(theirReceived);
+                for (long seq = theirReceived + 1; seq <= sent; seq++) {
+                    writer.offer(replay[(int) (seq % REPLAY_CAPACITY)]);
+                }
+            }
+        }
+        if (!resume) {
+            sent = 0;
+            received = 0;
+            acked = 0;
+            lastAckSent = 0;
+            for (int i = 0; i < REPLAY_CAPACITY; i++) {
+                replay[i] = null;
+            }
+        }
+        this.writer = writer;
+        established = true;
+        return resume;
+    }
+
+    // 连接断开：之后发出的帧只放进缓冲区
+    public synchronized void detach() {
+        writer = null;
+    }
+
+    // 放弃这个会话，下次连接时双方重新开始
+    public synchronized void reset() {
+        writer = null;
+        established = false;
+        peerId = 0;
+    }
+
+    // 握手完成过，断开后可以尝试恢复
+    public synchronized boolean isEstablished() {
+        return established;
+    }
+
+    // 收到对方的一个编号帧（读线程）
+    public synchronized void onReceived() {
+        received++;
+    }
+
+    // 对方确认收到了帧号upTo及之前的帧
+    public synchronized void acknowledge(long upTo) {
+        upTo = Math.min(upTo, sent);
+        while (acked < upTo) {
+            acked++;
+            replay[(int) (acked % REPLAY_CAPACITY)] = null;
+        }
+    }
+
+    // 自上次确认以来收到了至少minFrames个新帧时返回要确认的帧号，否则返回-1
+    public synchronized long takeAck(int minFrames) {
+        if (received - lastAckSent < Math.max(1, minFrames)) {
+            return -1;
+        }
+        lastAckSent = received;
+        return received;
+    }
+
+    // 等待对方确认的帧数
+    public synchronized int unacknowledged() {
+        return (int) (sent - acked);
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.helloworld.bluetooth;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+// 本机TCP，用于在电脑上跑协议的压测。地址为"host:port"，只给端口时连接127.0.0.1。
+// 关闭Nagle算法，小帧立即发出，测得的RTT与蓝牙上的行为可比
+public class TcpTransport implements Transport {
+    private final int port;
+
+    // port为listen()监听的端口，0表示由系统分配（见getLocalPort）
+    public TcpTransport(int port) {
+        this.port = port;
+    }
+
+    private volatile int boundPort;
+
+    // listen()实际监听的端口
+    public int getLocalPort() {
+        return boundPort;
+    }
+
+    @Override
+    public Acceptor listen() throws IOException {
+        ServerSocket serverSocket = new ServerSocket(port, 1, InetAddress.getLoopbackAddress());
+        boundPort = serverSocket.getLocalPort();
+        return new Acceptor() {
+            @Override
+            public Link accept() throws IOException {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                return new SocketLink(socket, null);
+            }
+
+            @Override
+            public void close() throws IOException {
+                serverSocket.close();
+            }
+        };
+    }
+
+    @Override
+    public Link createLink(String address) throws IOException {
+        int colon = address.lastIndexOf(':');
+        String host = colon > 0 ? address.substring(0, colon) : "127.0.0.1";
+        int remotePort;
+        try {
+            remotePort = Integer.parseInt(address.substring(colon + 1));
+        } catch (NumberFormatException e) {
+            throw new IOException("bad address " + address);
+        }
+        return new SocketLink(new Socket(), new InetSocketAddress(host, remotePort));
+    }
+
+    private static class SocketLink implements Link {
+        private final Socket socket;
+        // 主动发起时要连接的地址，accept()得到的连接为null
+        private final InetSocketAddress target;
+
+        SocketLink(Socket socket, InetSocketAddress target) {
+            this.socket = socket;
+            this.target = target;
+        }
+
+        @Override
+        public void connect() throws IOException {
+            socket.setTcpNoDelay(true);
+            socket.connect(target);
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return socket.getInputStream();
+        }
+
+        @Override
+        public OutputStream getOutputStream() throws IOException {
+            return socket.getOutputStream();
+        }
+
+        @Override
+        public String getAddress() {
+            InetSocketAddress remote = target != null ? target : (InetSocketAddress) socket.getRemoteSocketAddress();
+            return remote == null ? null : remote.getHostString() + ":" + remote.getPort();
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+
+        @Override
+        public String toString() {
+            return "tcp:" + getAddress();
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.helloworld.bluetooth;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+// 建立双向字节流的方式。BluetoothConnection和FrameLink只通过它收发数据，
+// 除了蓝牙RFCOMM（RfcommTransport）之外，还可以换成进程内管道（PipeTransport）
+// 或本机TCP（TcpTransport），在电脑上运行、测试和压测同一套协议。
+public interface Transport {
+    // 一条双向字节流。close()可以在任何线程上调用，阻塞在connect()或读写上的线程随之抛出IOException
+    interface Link extends Closeable {
+        // 主动发起的连接在连接线程上调用一次；accept()得到的连接已经连上，不需要调用
+        void connect() throws IOException;
+
+        InputStream getInputStream() throws IOException;
+
+        OutputStream getOutputStream() throws IOException;
+
+        // 对方的地址，重连时传给createLink
+        String getAddress();
+    }
+
+    // 监听对方的连接，close()让阻塞在accept()上的线程抛出IOException
+    interface Acceptor extends Closeable {
+        Link accept() throws IOException;
+    }
+
+    Acceptor listen() throws IOException;
+
+    // 创建一个指向address的连接，还没有连上
+    Link createLink(String address) throws IOException;
+}
@@ -0,0 +1,277 @@
+package com.example.helloworld.game;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+// 批量求解/校验：从流中读取PuzzleCodec记录（例如BulkPuzzleGenerator的输出或导入的棋盘），
+// 在线程池中并行校验、数解，每条记录一个Result。
+// 同时处理中的记录数（含等待按序输出的结果）不超过maxInFlight，内存有上界；
+// 每个工作线程复用自己的求解器、编码器和棋盘数组。
+public class BatchSolver implements Closeable {
+    // 解的数量最多数到2（2表示多解）
+    public static final int MULTIPLE = 2;
+
+    public interface ResultListener {
+        // 回调在工作线程上调用，但不会并发调用
+        void onResult(Result result);
+    }
+
+    public static class Result {
+        // 记录在输入流中的序号（从0开始）
+        public final long index;
+        public final int size;
+        // 记录能否解码（校验和、格式）
+        public final boolean decoded;
+        // 给定格子本身是否符合规则
+        public final boolean valid;
+        // 解的数量：0、1或MULTIPLE
+        public final int solutionCount;
+        // 记录中附带的解是否与求得的唯一解一致（没有附带解时为true）
+        public final boolean storedSolutionMatches;
+        // 唯一解时的解，否则为null
+        public final GameLogic.CellState[][] solution;
+        public final long nodes;
+        // 开启精确计数时SolutionCounter给出的解的数量，未计算时为-1
+        public final long exactCount;
+
+        Result(long index, int size, boolean decoded, boolean valid, int solutionCount,
+               boolean storedSolutionMatches, GameLogic.CellState[][] solution, long nodes) {
+            this(index, size, decoded, valid, solutionCount, storedSolutionMatches, solution, nodes, -1);
+        }
+
+        Result(long index, int size, boolean decoded, boolean valid, int solutionCount,
+               boolean storedSolutionMatches, GameLogic.CellState[][] solution, long nodes, long exactCount) {
+            this.index = index;
+            this.size = size;
+            this.decoded = decoded;
+            this.valid = valid;
+            this.solutionCount = solutionCount;
+            this.storedSolutionMatches = storedSolutionMatches;
+            this.solution = solution;
+            this.nodes = nodes;
+            this.exactCount = exactCount;
+        }
+
+        public boolean isUnique() {
+            return solutionCount == 1;
+        }
+    }
+
+    // 每个工作线程的工作区
+    private static class Workspace {
+        final PuzzleCodec codec = new PuzzleCodec();
+        final Map<Integer, PuzzleSolver> solvers = new HashMap<>();
+        final Map<Integer, SolutionCounter> counters = new HashMap<>();
+        final Map<Integer, GameLogic.CellState[][][]> boards = new HashMap<>();
+
+        PuzzleSolver solver(int size) {
+            PuzzleSolver solver = solvers.get(size);
+            if (solver == null) {
+                solver = new PuzzleSolver(size);
+                solvers.put(size, solver);
+            }
+            return solver;
+        }
+
+        SolutionCounter counter(int size) {
+            SolutionCounter counter = counters.get(size);
+            if (counter == null) {
+                counter = new SolutionCounter(size);
+                counters.put(size, counter);
+            }
+            return counter;
+        }
+
+        // [0]为题目，[1]为记录中附带的解
+        GameLogic.CellState[][][] boards(int size) {
+            GameLogic.CellState[][][] pair = boards.get(size);
+            if (pair == null) {
+                pair = new GameLogic.CellState[2][size][size];
+                boards.put(size, pair);
+            }
+            return pair;
+        }
+    }
+
+    private final ExecutorService executor;
+    private final int maxInFlight;
+    private volatile boolean exactCounting;
+    private final ThreadLocal<Workspace> workspaces = new ThreadLocal<Workspace>() {
+        @Override
+        protected Workspace initialValue() {
+            return new Workspace();
+        }
+    };
+
+    public BatchSolver(int threads, int maxInFlight) {
+        this.executor = Executors.newFixedThreadPool(threads);
+        this.maxInFlight = maxInFlight;
+    }
+
+    // 对不超过SolutionCounter.MAX_SIZE的偶数大小，额外用行动态规划精确数解，
+    // 结果放在Result.exactCount中，作为搜索结果的独立对照
+    public void setExactCounting(boolean exactCounting) {
+        this.exactCounting = exactCounting;
+    }
+
+    // 处理整个流，全部结果回调完成后返回，返回处理的记录数
+    // ordered为true时按输入顺序回调，否则按完成顺序回调
+    public long run(InputStream input, boolean ordered, ResultListener listener)
+            throws IOException, InterruptedException {
+        DataInputStream in = new DataInputStream(input);
+        Semaphore permits = new Semaphore(maxInFlight);
+        Emitter emitter = new Emitter(ordered, listener, permits);
+        long index = 0;
+
+        while (true) {
+            int first = in.read();
+            if (first < 0) {
+                break;
+            }
+            int flags = in.read();
+            if (flags < 0) {
+                throw new EOFException("Truncated puzzle record #" + index);
+            }
+            byte[] record = new byte[PuzzleCodec.recordLength((byte) first, (byte) flags)];
+            record[0] = (byte) first;
+            record[1] = (byte) flags;
+            in.readFully(record, 2, record.length - 2);
+
+            // 监听器出错后不再提交新记录，已提交的照常处理完
+            if (emitter.getFailure() != null) {
+                break;
+            }
+            permits.acquire();
+            final long recordIndex = index++;
+            executor.execute(() -> {
+                Result result;
+                try {
+                    result = solve(recordIndex, record);
+                } catch (RuntimeException e) {
+                    // 保证每条记录都有结果，否则等待中的许可永远不会归还
+                    result = new Result(recordIndex, record[0] & 0xFF, false, false, 0, false, null, 0);
+                }
+                emitter.emit(result);
+            });
+        }
+
+        // 等待所有结果输出，监听器抛出的第一个异常在这里重新抛出
+        permits.acquire(maxInFlight);
+        permits.release(maxInFlight);
+        Throwable failure = emitter.getFailure();
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        if (failure != null) {
+            throw (RuntimeException) failure;
+        }
+        return index;
+    }
+
+    private Result solve(long index, byte[] record) {
+        Workspace workspace = workspaces.get();
+        int size = PuzzleCodec.peekSize(record, 0);
+        if (size == 0 || size > 31) {
+            return new Result(index, size, false, false, 0, false, null, 0);
+        }
+        GameLogic.CellState[][][] boards = workspace.boards(size);
+        try {
+            workspace.codec.decode(record, 0, record.length, boards[0], boards[1]);
+        } catch (IOException e) {
+            return new Result(index, size, false, false, 0, false, null, 0);
+        }
+        boolean hasStoredSolution = (workspace.codec.getLastFlags() & PuzzleCodec.FLAG_SOLUTION) != 0;
+
+        PuzzleSolver solver = workspace.solver(size);
+        solver.load(boards[0]);
+        if (!solver.isConsistent()) {
+            return new Result(index, size, true, false, 0, !hasStoredSolution, null, 0);
+        }
+
+        // 一次搜索数到第二个解为止，同时记下找到的第一个解
+        GameLogic.CellState[][] solution = new GameLogic.CellState[size][size];
+        int count = solver.countSolutions(MULTIPLE, solution);
+        long nodes = solver.getNodes();
+
+        boolean matches = !hasStoredSolution;
+        if (hasStoredSolution && count == 1) {
+            matches = true;
+            for (int r = 0; r < size && matches; r++) {
+                for (int c = 0; c < size && matches; c++) {
+                    matches = solution[r][c] == boards[1][r][c];
+                }
+            }
+        }
+        long exactCount = -1;
+        if (exactCounting && size <= SolutionCounter.MAX_SIZE && size % 2 == 0) {
+            exactCount = workspace.counter(size).count(boards[0]);
+        }
+        return new Result(index, size, true, true, count, matches, count == 1 ? solution : null, nodes,
+                exactCount);
+    }
+
+    // 负责把结果交给监听器：无序模式直接回调，有序模式在重排缓冲区中等到轮到它为止
+    private static class Emitter {
+        private final boolean ordered;
+        private final ResultListener listener;
+        private final Semaphore permits;
+        private final Map<Long, Result> pending = new HashMap<>();
+        private long next;
+        // 监听器抛出的第一个异常；之后的结果不再回调，但许可照常归还，run()才不会一直等待
+        private volatile Throwable failure;
+
+        Emitter(boolean ordered, ResultListener listener, Semaphore permits) {
+            this.ordered = ordered;
+            this.listener = listener;
+            this.permits = permits;
+        }
+
+        synchronized void emit(Result result) {
+            if (!ordered) {
+                deliver(result);
+                return;
+            }
+            pending.put(result.index, result);
+            Result head;
+            while ((head = pending.remove(next)) != null) {
+                next++;
+                deliver(head);
+            }
+        }
+
+        private void deliver(Result result) {
+            try {
+                if (failure == null) {
+                    listener.onResult(result);
+                }
+            } catch (RuntimeException | Error e) {
+                failure = e;
+            } finally {
+                permits.release();
+            }
+        }
+
+        Throwable getFailure() {
+            return failure;
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.helloworld.game;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+// 针对64位哈希的布隆过滤器，用于记录“已经出过的谜题”
+// 内存固定（位数组），查询和插入都是k次位操作；可能误判为已出过，但不会漏判
+public class BloomFilter {
+    private static final int MAGIC = 0x4F4F424C; // "OOBL"
+
+    private final long[] bits;
+    private final long numBits;
+    private final int numHashes;
+    private int insertions;
+
+    private BloomFilter(long[] bits, int numHashes, int insertions) {
+        this.bits = bits;
+        this.numBits = (long) bits.length * 64;
+        this.numHashes = numHashes;
+        this.insertions = insertions;
+    }
+
+    // 按预计插入数和目标误判率确定位数m与哈希次数k
+    // m = -n·ln(p) / (ln2)^2，k = m/n·ln2
+    public static BloomFilter create(int expectedInsertions, double falsePositiveRate) {
+        long[] shape = shape(expectedInsertions, falsePositiveRate);
+        return new BloomFilter(new long[(int) shape[0]], (int) shape[1], 0);
+    }
+
+    // {位数组的long个数, 哈希次数}
+    private static long[] shape(int expectedInsertions, double falsePositiveRate) {
+        int n = Math.max(1, expectedInsertions);
+        double p = Math.min(0.5, Math.max(1e-9, falsePositiveRate));
+        long m = (long) Math.ceil(-n * Math.log(p) / (Math.log(2) * Math.log(2)));
+        int k = Math.max(1, (int) Math.round((double) m / n * Math.log(2)));
+        long words = Math.max(1, (m + 63) / 64);
+        return new long[]{words, k};
+    }
+
+    public boolean mightContain(long hash) {
+        long h1 = hash;
+        long h2 = secondHash(hash);
+        for (int i = 0; i < numHashes; i++) {
+            long index = Long.remainderUnsigned(h1 + i * h2, numBits);
+            if ((bits[(int) (index >>> 6)] & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // 插入哈希；返回false表示插入前可能已经存在
+    public boolean put(long hash) {
+        long h1 = hash;
+        long h2 = secondHash(hash);
+        boolean changed = false;
+        for (int i = 0; i < numHashes; i++) {
+            long index = Long.remainderUnsigned(h1 + i * h2, numBits);
+            int word = (int) (index >>> 6);
+            long mask = 1L << index;
+            if ((bits[word] & mask) == 0) {
+                bits[word] |= mask;
+                changed = true;
+            }
+        }
+        if (changed) {
+            insertions++;
+        }
+        return changed;
+    }
+
+    // 双重哈希的第二个哈希，必须为奇数以遍历所有位置
+    private static long secondHash(long hash) {
+        long h = hash * 0xC2B2AE3D27D4EB4FL;
+        h ^= h >>> 29;
+        return h | 1;
+    }
+
+    public int getInsertions() {
+        return insertions;
+    }
+
+    public int getNumHashes() {
+        return numHashes;
+    }
+
+    public long getNumBits() {
+        return numBits;
+    }
+
+    public void clear() {
+        Arrays.fill(bits, 0L);
+        insertions = 0;
+    }
+
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(bits.length);
+        out.writeInt(numHashes);
+        out.writeInt(insertions);
+        for (long word : bits) {
+            out.writeLong(word);
+        }
+    }
+
+    // 文件中的过滤器必须与create(expectedInsertions, falsePositiveRate)的位数和哈希次数一致，
+    // 否则视为损坏（或参数已改变），在分配位数组之前就抛出IOException
+    public static BloomFilter readFrom(DataInputStream in, int expectedInsertions, double falsePositiveRate)
+            throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a bloom filter file");
+        }
+        int words = in.readInt();
+        int numHashes = in.readInt();
+        int insertions = in.readInt();
+        long[] shape = shape(expectedInsertions, falsePositiveRate);
+        if (words != shape[0] || numHashes != shape[1]) {
+            throw new IOException("Unexpected bloom filter shape: " + words + " words, " + numHashes
+                    + " hashes, expected " + shape[0] + " words, " + shape[1] + " hashes");
+        }
+        if (insertions < 0) {
+            throw new IOException("Corrupt bloom filter header");
+        }
+        long[] bits = new long[words];
+        for (int i = 0; i < words; i++) {
+            bits[i] = in.readLong();
+        }
+        return new BloomFilter(bits, numHashes, insertions);
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.helloworld.game;
+
+// 棋盘的Zobrist哈希：每个（格子, X/O）对应一个固定的64位随机数，棋盘的哈希是所有已填格子对应值的异或，
+// 再异或上棋盘大小对应的值。空格不参与。
+//
+// 随机数表由固定种子的SplitMix64生成，不依赖设备或JVM，因此两台设备上同一棋盘的哈希相同，
+// 可以用来比较双方的棋盘是否一致。改变一个格子只需异或两次，见update()。
+public final class BoardHash {
+    private static final int MAX_SIZE = LineRules.MAX_LENGTH;
+    private static final long TABLE_SEED = 0x4F4F58585A6F6272L;
+
+    // 下标为(row*MAX_SIZE+col)*3+CellState序号，EMPTY对应的值为0，修改格子时不需要分支
+    private static final long[] CELL_KEYS = new long[MAX_SIZE * MAX_SIZE * 3];
+    private static final long[] SIZE_KEYS = new long[MAX_SIZE + 1];
+
+    static {
+        long state = TABLE_SEED;
+        for (int i = 0; i < MAX_SIZE * MAX_SIZE; i++) {
+            for (GameLogic.CellState cell : new GameLogic.CellState[]{GameLogic.CellState.X, GameLogic.CellState.O}) {
+                state += 0x9E3779B97F4A7C15L;
+                CELL_KEYS[i * 3 + cell.ordinal()] = mix(state);
+            }
+        }
+        for (int i = 0; i < SIZE_KEYS.length; i++) {
+            state += 0x9E3779B97F4A7C15L;
+            SIZE_KEYS[i] = mix(state);
+        }
+    }
+
+    private BoardHash() {
+    }
+
+    // SplitMix64的输出函数
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static long key(int row, int col, GameLogic.CellState state) {
+        return CELL_KEYS[(row * MAX_SIZE + col) * 3 + state.ordinal()];
+    }
+
+    public static long of(GameLogic.CellState[][] board) {
+        int size = board.length;
+        long hash = SIZE_KEYS[size];
+        for (int r = 0; r < size; r++) {
+            for (int c = 0; c < size; c++) {
+                hash ^= key(r, c, board[r][c]);
+            }
+        }
+        return hash;
+    }
+
+    // 格子(row, col)从from变为to之后的哈希
+    public static long update(long hash, int row, int col, GameLogic.CellState from, GameLogic.CellState to) {
+        int base = (row * MAX_SIZE + col) * 3;
+        return hash ^ CELL_KEYS[base + from.ordinal()] ^ CELL_KEYS[base + to.ordinal()];
+    }
+}
@@ -2,12 +2,15 @@ package com.example.helloworld.game;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
-import java.util.Set;
 
 public class GameLogic {
+    // 生成算法的版本：任何会改变同一种子生成结果的修改都要加一。
+    // 蓝牙对战只交换种子，双方版本一致时才能各自生成同一局谜题
+    // 2：标准规则的4x4、6x6终盘总是从内置目录（GridCatalogue.builtIn）抽取
+    public static final int ENGINE_VERSION = 2;
+
     public enum CellState {
         EMPTY, X, O
     }
@@ -16,15 +19,70 @@ public class GameLogic {
         EASY, HARD
     }
 
+    // 限时生成实际走的路径
+    public enum GenerationPath {
+        // 在截止时间内完成了完整的生成
+        GENERATED,
+        // 删线索时到了截止时间：谜题仍有唯一解，但线索比理想的多
+        EXTRA_CLUES,
+        // 截止时间内没能生成，改用备用谜题（离线谜题库等）
+        FALLBACK,
+        // 超过截止时间又没有备用谜题，只能继续生成到完成
+        OVERDUE
+    }
+
+    // 限时生成失败时提供现成谜题
+    public interface PuzzleFallback {
+        // 向gameLogic载入一个同样大小和难度的谜题，成功返回true
+        boolean loadInto(GameLogic gameLogic, Difficulty difficulty);
+    }
+
+    private static final long NO_DEADLINE = PuzzleMinimizer.NO_DEADLINE;
+
     private CellState[][] board;
     private final int size;
     private boolean gameCompleted;
     private long startTime;
     private long endTime;
+    // 生成谜题所用的种子，同一(size, difficulty, seed)在任何设备上生成同一谜题
+    private long seed;
+    private Random random = new Random();
+    private List<CellState[]> validRows;
+    // 当前谜题的唯一解
+    private CellState[][] solution;
+    // 行/列规则，以及与board同步维护的行、列打包编码（见LineRules），规则检查直接查表
+    private final LineRules rules;
+    private final int[] rowCodes;
+    private final int[] colCodes;
+    private long boardHash;
+    // 全部合法终盘的内置目录（仅标准规则的小棋盘），为null时回溯生成终盘
+    private final GridCatalogue gridCatalogue;
+    // 求解/生成的观察者（可为null）和最近一次调用的计数
+    private SolverListener solverListener;
+    private final SolverStats stats = new SolverStats();
+    // solveAutomatically的搜索节点上限
+    private long searchNodeBudget = Long.MAX_VALUE;
+    private int searchDepth;
+    // 生成终盘的截止时间（System.nanoTime()），超过后fillBoardRandomly放弃
+    private long generationDeadline = NO_DEADLINE;
+    private boolean deadlineExceeded;
+    private GenerationPath lastGenerationPath;
 
     public GameLogic(int size) {
+        this(size, LineRules.STANDARD);
+    }
+
+    // 使用自定义规则（最大连续长度、是否平衡、是否要求行列唯一），size不超过LineRules.MAX_LENGTH
+    public GameLogic(int size, LineRules rules) {
+        if (size > LineRules.MAX_LENGTH) {
+            throw new IllegalArgumentException("Board size must not exceed " + LineRules.MAX_LENGTH);
+        }
         this.size = size;
+        this.rules = rules;
         this.board = new CellState[size][size];
+        this.rowCodes = new int[size];
+        this.colCodes = new int[size];
+        this.gridCatalogue = rules.isStandard() ? GridCatalogue.builtIn(size) : null;
         initializeBoard();
         this.gameCompleted = false;
     }
@@ -33,76 +91,281 @@ public class GameLogic {
         for (int i = 0; i < size; i++) {
             Arrays.fill(board[i], CellState.EMPTY);
         }
+        Arrays.fill(rowCodes, 0);
+        Arrays.fill(colCodes, 0);
+        boardHash = BoardHash.of(board);
+    }
+
+    // 修改单元格，同时更新行、列编码和棋盘哈希
+    private void setCell(int row, int col, CellState state) {
+        boardHash = BoardHash.update(boardHash, row, col, board[row][col], state);
+        board[row][col] = state;
+        rowCodes[row] = LineRules.withCell(rowCodes[row], col, state);
+        colCodes[col] = LineRules.withCell(colCodes[col], row, state);
+    }
+
+    // board被整体替换或在外部修改后，重新计算行、列编码和棋盘哈希
+    private void syncCodes() {
+        Arrays.fill(rowCodes, 0);
+        Arrays.fill(colCodes, 0);
+        for (int r = 0; r < size; r++) {
+            for (int c = 0; c < size; c++) {
+                int ordinal = board[r][c].ordinal();
+                rowCodes[r] |= ordinal << (2 * c);
+                colCodes[c] |= ordinal << (2 * r);
+            }
+        }
+        boardHash = BoardHash.of(board);
     }
 
-    // 生成新的游戏板
+    // 当前棋盘的哈希（BoardHash），随每次修改增量更新
+    public long getBoardHash() {
+        return boardHash;
+    }
+
+    // 按种子直接创建一局游戏
+    public static GameLogic fromSeed(int size, Difficulty difficulty, long seed) {
+        GameLogic gameLogic = new GameLogic(size);
+        gameLogic.generateNewGame(difficulty, seed);
+        return gameLogic;
+    }
+
+    // 生成新的游戏板（随机种子）
     public void generateNewGame(Difficulty difficulty) {
+        generateNewGame(difficulty, new Random().nextLong());
+    }
+
+    // 生成新的游戏板（指定种子）
+    // java.util.Random 的算法由规范固定，因此结果在不同设备和JVM之间逐位一致
+    // 有内置目录的大小从目录抽取终盘；目录由引擎自己生成，不依赖外部文件，结果同样只取决于种子
+    public void generateNewGame(Difficulty difficulty, long seed) {
+        generate(difficulty, seed, NO_DEADLINE, null);
+    }
+
+    // 限时生成：timeoutMillis内没能生成理想的谜题时改用fallback提供的谜题（可为null），
+    // 返回实际走的路径。没有超时的情况下结果与generateNewGame(difficulty, seed)相同
+    public GenerationPath generateNewGame(Difficulty difficulty, long seed, long timeoutMillis,
+                                          PuzzleFallback fallback) {
+        return generate(difficulty, seed, deadlineAfter(timeoutMillis), fallback);
+    }
+
+    private static long deadlineAfter(long timeoutMillis) {
+        if (timeoutMillis >= Long.MAX_VALUE / 1000000L) {
+            return NO_DEADLINE;
+        }
+        return System.nanoTime() + timeoutMillis * 1000000L;
+    }
+
+    private GenerationPath generate(Difficulty difficulty, long seed, long deadline, PuzzleFallback fallback) {
+        this.seed = seed;
+        this.random = new Random(seed);
         initializeBoard();
         gameCompleted = false;
         startTime = System.currentTimeMillis();
 
-        // 根据难度生成初始棋盘
-        int filledCells = size * size / (difficulty == Difficulty.EASY ? 3 : 2);
-        generateRandomValidBoard();
-        removeCells(filledCells);
+        // 根据难度生成初始棋盘：简单模式至少保留一半线索，困难模式删到最小
+        int minClues = difficulty == Difficulty.EASY ? size * size / 2 : 0;
+        GenerationPath path = GenerationPath.GENERATED;
+        stats.begin();
+        generationDeadline = deadline;
+        boolean filled;
+        if (gridCatalogue != null) {
+            gridCatalogue.sample(random, board);
+            syncCodes();
+            filled = true;
+        } else {
+            filled = generateRandomValidBoard();
+        }
+        generationDeadline = NO_DEADLINE;
+        stats.end();
+        if (!filled) {
+            if (fallback != null && fallback.loadInto(this, difficulty)) {
+                return lastGenerationPath = GenerationPath.FALLBACK;
+            }
+            // 没有备用谜题，已经超时也只能继续生成
+            generateRandomValidBoard();
+            path = GenerationPath.OVERDUE;
+            deadline = NO_DEADLINE;
+        }
+        solution = getBoard();
+
+        PuzzleMinimizer minimizer = new PuzzleMinimizer(size, rules);
+        minimizer.minimize(board, solution, random, minClues, deadline);
+        syncCodes();
+        if (minimizer.isCutShort()) {
+            if (fallback != null && fallback.loadInto(this, difficulty)) {
+                return lastGenerationPath = GenerationPath.FALLBACK;
+            }
+            path = GenerationPath.EXTRA_CLUES;
+        }
+        return lastGenerationPath = path;
+    }
+
+    // 最近一次生成走的路径（载入现成谜题时为null）
+    public GenerationPath getLastGenerationPath() {
+        return lastGenerationPath;
     }
 
-    // 生成随机有效的棋盘
-    private void generateRandomValidBoard() {
+    // 载入现成的谜题（例如来自离线谜题库）
+    public void loadPuzzle(CellState[][] puzzle, CellState[][] puzzleSolution, long puzzleSeed) {
+        initializeBoard();
+        for (int i = 0; i < size; i++) {
+            System.arraycopy(puzzle[i], 0, board[i], 0, size);
+        }
+        syncCodes();
+        solution = new CellState[size][size];
+        for (int i = 0; i < size; i++) {
+            System.arraycopy(puzzleSolution[i], 0, solution[i], 0, size);
+        }
+        seed = puzzleSeed;
+        gameCompleted = false;
+        startTime = System.currentTimeMillis();
+        lastGenerationPath = null;
+    }
+
+    // 生成一局没有出过的游戏：用不同种子重试，跳过过滤器中已记录的谜题
+    // 谜题按对称规范形式的哈希记录，因此旋转、翻转后的同一谜题也会被跳过
+    // 重试maxAttempts次仍未找到时使用最后一次的结果；返回是否为新谜题
+    public boolean generateUnseenGame(Difficulty difficulty, BloomFilter played, int maxAttempts) {
+        Random seeds = new Random();
+        PuzzleCanonicalizer canonicalizer = new PuzzleCanonicalizer();
+        for (int attempt = 0; attempt < maxAttempts; attempt++) {
+            generateNewGame(difficulty, seeds.nextLong());
+            if (played.put(canonicalizer.canonicalHash(board))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 限时生成一局没有出过的游戏：所有重试共用同一个截止时间，
+    // 一旦没能完整生成（超时、改用备用谜题）就不再重试；返回最后一次生成走的路径
+    public GenerationPath generateUnseenGame(Difficulty difficulty, BloomFilter played, int maxAttempts,
+                                             long timeoutMillis, PuzzleFallback fallback) {
+        long deadline = deadlineAfter(timeoutMillis);
+        Random seeds = new Random();
+        PuzzleCanonicalizer canonicalizer = new PuzzleCanonicalizer();
+        GenerationPath path = null;
+        for (int attempt = 0; attempt < maxAttempts; attempt++) {
+            path = generate(difficulty, seeds.nextLong(), deadline, fallback);
+            if (played.put(canonicalizer.canonicalHash(board)) || path != GenerationPath.GENERATED) {
+                break;
+            }
+        }
+        return path;
+    }
+
+    // 生成随机有效的棋盘，超过generationDeadline时放弃并返回false
+    private boolean generateRandomValidBoard() {
         // 简化实现：生成一个可能需要回溯的随机棋盘
-        Random random = new Random();
         boolean valid = false;
+        deadlineExceeded = false;
 
-        while (!valid) {
+        while (!valid && !deadlineExceeded) {
             initializeBoard();
-            valid = fillBoardRandomly(0, 0);
+            valid = fillBoardRandomly(0);
         }
+        return valid;
     }
 
-    // 随机填充棋盘（回溯法）
-    private boolean fillBoardRandomly(int row, int col) {
+    // 随机填充棋盘（按行回溯）
+    // 逐格回溯在8x8以上要到很晚才发现列不平衡，实际上无法结束；
+    // 改为每次放入一整条合法行，并在放入时检查列的连续和数量
+    private boolean fillBoardRandomly(int row) {
+        if (deadlineExceeded) {
+            return false;
+        }
+        if (generationDeadline != NO_DEADLINE && System.nanoTime() - generationDeadline > 0) {
+            deadlineExceeded = true;
+            if (solverListener != null) {
+                solverListener.onTimeout(stats.getNodes());
+            }
+            stats.timeout();
+            return false;
+        }
+
         // 检查是否已完成填充
+        stats.node(row);
         if (row == size) {
-            return validateBoard();
+            return reportSolution(validateBoard(), row);
         }
 
-        // 计算下一个位置
-        int nextRow = (col == size - 1) ? row + 1 : row;
-        int nextCol = (col == size - 1) ? 0 : col + 1;
+        // 按种子打乱候选行的尝试顺序（Fisher-Yates，不依赖Collections.shuffle的实现）
+        List<CellState[]> rows = getValidRows();
+        int[] order = new int[rows.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        for (int i = order.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = order[i];
+            order[i] = order[j];
+            order[j] = tmp;
+        }
 
-        // 尝试放置X或O
-        CellState[] possibleStates = {CellState.X, CellState.O};
-        for (CellState state : possibleStates) {
-            if (isValidMove(row, col, state)) {
-                board[row][col] = state;
-                if (fillBoardRandomly(nextRow, nextCol)) {
+        for (int index : order) {
+            CellState[] candidate = rows.get(index);
+            if (canPlaceRow(row, candidate)) {
+                for (int c = 0; c < size; c++) {
+                    setCell(row, c, candidate[c]);
+                }
+                if (solverListener != null) {
+                    solverListener.onDecision(row, row, -1, null);
+                }
+                if (fillBoardRandomly(row + 1)) {
                     return true;
                 }
-                board[row][col] = CellState.EMPTY;
+                for (int c = 0; c < size; c++) {
+                    setCell(row, c, CellState.EMPTY);
+                }
+                stats.backtrack();
+                if (solverListener != null) {
+                    solverListener.onBacktrack(row, row, -1);
+                }
             }
         }
 
         return false;
     }
 
-    // 移除部分单元格以创建谜题
-    private void removeCells(int cellsToKeep) {
-        Random random = new Random();
-        List<int[]> positions = new ArrayList<>();
-
-        // 创建所有位置的列表
-        for (int i = 0; i < size; i++) {
-            for (int j = 0; j < size; j++) {
-                positions.add(new int[]{i, j});
+    // 检查整行放入第row行后，行不重复（规则要求时）且各列仍然合法
+    private boolean canPlaceRow(int row, CellState[] candidate) {
+        if (rules.requiresUniqueLines()) {
+            int code = 0;
+            for (int c = 0; c < size; c++) {
+                code |= candidate[c].ordinal() << (2 * c);
+            }
+            for (int r = 0; r < row; r++) {
+                if (rowCodes[r] == code) {
+                    return false;
+                }
+            }
+        }
+        for (int c = 0; c < size; c++) {
+            if (!rules.isValidPartial(LineRules.withCell(colCodes[c], row, candidate[c]), size)) {
+                return false;
             }
         }
+        return true;
+    }
 
-        // 随机移除单元格，只保留指定数量的单元格
-        while (positions.size() > cellsToKeep) {
-            int index = random.nextInt(positions.size());
-            int[] pos = positions.remove(index);
-            board[pos[0]][pos[1]] = CellState.EMPTY;
+    // 所有符合规则的完整行
+    private List<CellState[]> getValidRows() {
+        if (validRows == null) {
+            validRows = new ArrayList<>();
+            CellState[] line = new CellState[size];
+            for (int bits = 0; bits < (1 << size); bits++) {
+                int code = 0;
+                for (int i = 0; i < size; i++) {
+                    line[i] = ((bits >> i) & 1) != 0 ? CellState.X : CellState.O;
+                    code |= line[i].ordinal() << (2 * i);
+                }
+                if (rules.isValidComplete(code, size)) {
+                    validRows.add(line.clone());
+                }
+            }
         }
+        return validRows;
     }
 
     // 检查移动是否有效
@@ -112,60 +375,29 @@ public class GameLogic {
             return false;
         }
 
-        // 临时设置单元格状态
-        board[row][col] = state;
-
-        // 检查行
-        boolean valid = checkRow(row) && checkColumn(col);
-
-        // 恢复单元格状态
-        board[row][col] = CellState.EMPTY;
-
-        return valid;
+        // 检查放入后的行和列（直接在编码上修改，不需要临时改动棋盘）
+        return rules.allowsRuns(LineRules.withCell(rowCodes[row], col, state), size)
+                && rules.allowsRuns(LineRules.withCell(colCodes[col], row, state), size);
     }
 
     // 执行移动
     public boolean makeMove(int row, int col, CellState state) {
         if (isValidMove(row, col, state)) {
-            board[row][col] = state;
+            setCell(row, col, state);
             checkGameCompletion();
             return true;
         }
         return false;
     }
 
-    // 检查行是否有效
+    // 检查行是否有效（连续规则）
     private boolean checkRow(int row) {
-        // 检查是否有超过两个连续的X或O
-        int consecutiveCount = 1;
-        for (int i = 1; i < size; i++) {
-            if (board[row][i] != CellState.EMPTY && board[row][i] == board[row][i - 1]) {
-                consecutiveCount++;
-                if (consecutiveCount > 2) {
-                    return false;
-                }
-            } else {
-                consecutiveCount = 1;
-            }
-        }
-        return true;
+        return rules.allowsRuns(rowCodes[row], size);
     }
 
-    // 检查列是否有效
+    // 检查列是否有效（连续规则）
     private boolean checkColumn(int col) {
-        // 检查是否有超过两个连续的X或O
-        int consecutiveCount = 1;
-        for (int i = 1; i < size; i++) {
-            if (board[i][col] != CellState.EMPTY && board[i][col] == board[i - 1][col]) {
-                consecutiveCount++;
-                if (consecutiveCount > 2) {
-                    return false;
-                }
-            } else {
-                consecutiveCount = 1;
-            }
-        }
-        return true;
+        return rules.allowsRuns(colCodes[col], size);
     }
 
     // 验证整个棋盘是否有效
@@ -199,72 +431,32 @@ public class GameLogic {
 
     // 检查完整行是否满足所有条件
     private boolean checkCompleteRow(int row) {
-        int xCount = 0, oCount = 0;
-        for (int j = 0; j < size; j++) {
-            if (board[row][j] == CellState.X) {
-                xCount++;
-            } else if (board[row][j] == CellState.O) {
-                oCount++;
-            }
-        }
-
-        // 检查X和O的数量是否相等
-        if (xCount != oCount) {
-            return false;
-        }
-
-        return checkRow(row);
+        return rules.isValidComplete(rowCodes[row], size);
     }
 
     // 检查完整列是否满足所有条件
     private boolean checkCompleteColumn(int col) {
-        int xCount = 0, oCount = 0;
-        for (int j = 0; j < size; j++) {
-            if (board[j][col] == CellState.X) {
-                xCount++;
-            } else if (board[j][col] == CellState.O) {
-                oCount++;
-            }
-        }
-
-        // 检查X和O的数量是否相等
-        if (xCount != oCount) {
-            return false;
-        }
-
-        return checkColumn(col);
+        return rules.isValidComplete(colCodes[col], size);
     }
 
     // 检查所有行是否唯一
     private boolean checkRowsUnique() {
-        Set<String> rowPatterns = new HashSet<>();
-        for (int i = 0; i < size; i++) {
-            StringBuilder rowStr = new StringBuilder();
-            for (int j = 0; j < size; j++) {
-                rowStr.append(board[i][j].ordinal());
-            }
-            String pattern = rowStr.toString();
-            if (rowPatterns.contains(pattern)) {
-                return false;
-            }
-            rowPatterns.add(pattern);
-        }
-        return true;
+        return !rules.requiresUniqueLines() || allDistinct(rowCodes);
     }
 
     // 检查所有列是否唯一
     private boolean checkColumnsUnique() {
-        Set<String> colPatterns = new HashSet<>();
-        for (int i = 0; i < size; i++) {
-            StringBuilder colStr = new StringBuilder();
-            for (int j = 0; j < size; j++) {
-                colStr.append(board[j][i].ordinal());
-            }
-            String pattern = colStr.toString();
-            if (colPatterns.contains(pattern)) {
-                return false;
+        return !rules.requiresUniqueLines() || allDistinct(colCodes);
+    }
+
+    // 编码两两比较，行数很少，不需要借助哈希集合
+    private boolean allDistinct(int[] codes) {
+        for (int i = 1; i < size; i++) {
+            for (int j = 0; j < i; j++) {
+                if (codes[i] == codes[j]) {
+                    return false;
+                }
             }
-            colPatterns.add(pattern);
         }
         return true;
     }
@@ -273,10 +465,8 @@ public class GameLogic {
     private void checkGameCompletion() {
         // 检查是否所有单元格都已填充
         for (int i = 0; i < size; i++) {
-            for (int j = 0; j < size; j++) {
-                if (board[i][j] == CellState.EMPTY) {
-                    return;
-                }
+            if (!LineRules.isFull(rowCodes[i], size)) {
+                return;
             }
         }
 
@@ -295,7 +485,13 @@ public class GameLogic {
             System.arraycopy(board[i], 0, originalBoard[i], 0, size);
         }
 
+        stats.begin();
+        searchDepth = 0;
         boolean solved = solveBacktracking(0, 0);
+        if (stats.isTimedOut() && solverListener != null) {
+            solverListener.onTimeout(stats.getNodes());
+        }
+        stats.end();
 
         if (solved) {
             gameCompleted = true;
@@ -303,6 +499,7 @@ public class GameLogic {
         } else {
             // 恢复原始棋盘状态
             board = originalBoard;
+            syncCodes();
         }
 
         return solved;
@@ -310,9 +507,18 @@ public class GameLogic {
 
     // 回溯法求解
     private boolean solveBacktracking(int row, int col) {
+        if (stats.isTimedOut()) {
+            return false;
+        }
+        stats.node(searchDepth);
+        if (stats.getNodes() > searchNodeBudget) {
+            stats.timeout();
+            return false;
+        }
+
         // 检查是否已完成填充
         if (row == size) {
-            return validateBoard();
+            return reportSolution(validateBoard(), searchDepth);
         }
 
         // 计算下一个位置
@@ -327,19 +533,45 @@ public class GameLogic {
         // 尝试放置X或O
         for (CellState state : new CellState[]{CellState.X, CellState.O}) {
             if (isValidMove(row, col, state)) {
-                board[row][col] = state;
-                if (solveBacktracking(nextRow, nextCol)) {
+                setCell(row, col, state);
+                if (solverListener != null) {
+                    solverListener.onDecision(searchDepth, row, col, state);
+                }
+                searchDepth++;
+                boolean solved = solveBacktracking(nextRow, nextCol);
+                searchDepth--;
+                if (solved) {
                     return true;
                 }
-                board[row][col] = CellState.EMPTY;
+                setCell(row, col, CellState.EMPTY);
+                stats.backtrack();
+                if (solverListener != null) {
+                    solverListener.onBacktrack(searchDepth, row, col);
+                }
             }
         }
 
         return false;
     }
 
+    private boolean reportSolution(boolean valid, int depth) {
+        if (valid && solverListener != null) {
+            solverListener.onSolution(depth);
+        }
+        return valid;
+    }
+
     // 获取提示
     public int[] getHint() {
+        stats.begin();
+        try {
+            return findHint();
+        } finally {
+            stats.end();
+        }
+    }
+
+    private int[] findHint() {
         // 随机寻找一个空单元格并尝试放置
         List<int[]> emptyCells = new ArrayList<>();
         for (int i = 0; i < size; i++) {
@@ -371,11 +603,16 @@ public class GameLogic {
                     }
 
                     tempBoard[row][col] = state;
-                    GameLogic tempLogic = new GameLogic(size);
+                    GameLogic tempLogic = new GameLogic(size, rules);
                     tempLogic.board = tempBoard;
+                    tempLogic.syncCodes();
+                    tempLogic.solverListener = solverListener;
+                    tempLogic.searchNodeBudget = searchNodeBudget;
 
                     // 检查是否有解
-                    if (tempLogic.solveAutomatically()) {
+                    boolean solvable = tempLogic.solveAutomatically();
+                    stats.merge(tempLogic.stats);
+                    if (solvable) {
                         return new int[]{row, col, state.ordinal()};
                     }
                 }
@@ -398,6 +635,11 @@ public class GameLogic {
         return endTime - startTime;
     }
 
+    // 设置开始时刻（System.currentTimeMillis()），蓝牙对战按约定的开局时刻计时
+    public void setStartTime(long startTime) {
+        this.startTime = startTime;
+    }
+
     // 获取棋盘状态
     public CellState[][] getBoard() {
         CellState[][] copy = new CellState[size][size];
@@ -407,14 +649,62 @@ public class GameLogic {
         return copy;
     }
 
+    // 获取单个单元格的状态
+    public CellState getCell(int row, int col) {
+        return board[row][col];
+    }
+
+    // 获取当前谜题的解（没有生成过谜题时为null）
+    public CellState[][] getSolution() {
+        if (solution == null) {
+            return null;
+        }
+        CellState[][] copy = new CellState[size][size];
+        for (int i = 0; i < size; i++) {
+            System.arraycopy(solution[i], 0, copy[i], 0, size);
+        }
+        return copy;
+    }
+
     // 设置棋盘状态（用于蓝牙同步）
     public void setBoard(CellState[][] newBoard) {
         if (newBoard.length == size && newBoard[0].length == size) {
             this.board = newBoard;
+            syncCodes();
             checkGameCompletion();
         }
     }
 
+    // 设置单个单元格（用于蓝牙同步）：不检查规则，对方已经检查过这一步
+    public void setCellState(int row, int col, CellState state) {
+        setCell(row, col, state);
+        checkGameCompletion();
+    }
+
+    // 获取生成当前谜题所用的种子
+    public long getSeed() {
+        return seed;
+    }
+
+    // 设置求解/生成的观察者，null表示不观察
+    public void setSolverListener(SolverListener listener) {
+        this.solverListener = listener;
+    }
+
+    // 最近一次solveAutomatically、getHint或生成终盘的计数（下次调用时重置）
+    public SolverStats getLastStats() {
+        return stats;
+    }
+
+    // solveAutomatically（以及getHint中的试解）的搜索节点上限，超过时视为无解并回调onTimeout
+    public void setSearchNodeBudget(long budget) {
+        this.searchNodeBudget = budget;
+    }
+
+    public LineRules getRules() {
+        return rules;
+    }
+
     // 获取棋盘大小
     public int getSize() {
         return size;
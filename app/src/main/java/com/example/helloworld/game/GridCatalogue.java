@@ -0,0 +1,301 @@
+package com.example.helloworld.game;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Random;
+
+// 某个大小的全部合法完整棋盘的目录（由GridCatalogueBuilder离线枚举），只读映射
+//
+//   [magic:4][version:4][size:4][rowCount:4][count:4]
+//   rowCount × [合法行的X位掩码:4]
+//   count × [record:recordLength]
+//
+// 每条记录是各行在合法行表中的序号，每个序号占bitsPerRow位，第0行在最高位，
+// 整体按大端写成recordLength字节；记录按数值升序排列，因此可以二分查找。
+// 4x4有72个、6x6有4140个、8x8有4111116个合法棋盘，分别约0.1KB、12KB、24.7MB。
+public class GridCatalogue implements Closeable {
+    public static final int MAGIC = 0x4F4F5847; // "OOXG"
+    public static final int VERSION = 1;
+
+    // 引擎内置目录的最大边长：这些大小的目录在内存中枚举生成，生成新游戏时总是从目录抽取终盘
+    public static final int BUILT_IN_MAX_SIZE = 6;
+
+    private static final int HEADER_LENGTH = 20;
+    // 内置目录，按大小在第一次使用时生成，进程内共享
+    private static final GridCatalogue[] builtIn = new GridCatalogue[BUILT_IN_MAX_SIZE + 1];
+
+    private final RandomAccessFile file;
+    private final ByteBuffer buffer;
+    private final int size;
+    private final int full;
+    private final int[] rows;
+    private final int count;
+    private final int bitsPerRow;
+    private final int recordLength;
+    private final int recordsOffset;
+
+    private GridCatalogue(RandomAccessFile file, ByteBuffer buffer) throws IOException {
+        this.file = file;
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_LENGTH || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a grid catalogue");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported grid catalogue version " + buffer.getInt(4));
+        }
+        size = buffer.getInt(8);
+        int rowCount = buffer.getInt(12);
+        count = buffer.getInt(16);
+        if (size <= 0 || size > 16 || rowCount <= 0 || rowCount > 64 || count < 0) {
+            throw new IOException("Corrupt grid catalogue header");
+        }
+        full = (1 << size) - 1;
+        bitsPerRow = bitsFor(rowCount);
+        recordLength = recordLength(size, bitsPerRow);
+        recordsOffset = HEADER_LENGTH + 4 * rowCount;
+        if (recordLength > 8 || recordsOffset + (long) count * recordLength > buffer.capacity()) {
+            throw new IOException("Corrupt grid catalogue header");
+        }
+        rows = new int[rowCount];
+        for (int i = 0; i < rowCount; i++) {
+            rows[i] = buffer.getInt(HEADER_LENGTH + 4 * i);
+        }
+    }
+
+    // 打开并映射目录文件
+    public static GridCatalogue open(File path) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(path, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            return new GridCatalogue(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    // 从内存中的目录数据创建（例如直接读入的asset）
+    public static GridCatalogue wrap(ByteBuffer data) throws IOException {
+        return new GridCatalogue(null, data.duplicate());
+    }
+
+    // 引擎内置的目录：BUILT_IN_MAX_SIZE以内的偶数大小返回全部合法棋盘，其他大小返回null。
+    // 内容只取决于大小，应用、工具和对战双方拿到的目录完全相同
+    public static GridCatalogue builtIn(int size) {
+        if (size <= 0 || size > BUILT_IN_MAX_SIZE || size % 2 != 0) {
+            return null;
+        }
+        synchronized (builtIn) {
+            if (builtIn[size] == null) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                try {
+                    new GridEnumerator(size).run().writeTo(out);
+                    builtIn[size] = wrap(ByteBuffer.wrap(out.toByteArray()));
+                } catch (IOException e) {
+                    // 写入内存不会失败
+                    throw new IllegalStateException(e);
+                }
+            }
+            return builtIn[size];
+        }
+    }
+
+    private static int bitsFor(int rowCount) {
+        return Math.max(1, 32 - Integer.numberOfLeadingZeros(rowCount - 1));
+    }
+
+    private static int recordLength(int size, int bitsPerRow) {
+        return (size * bitsPerRow + 7) / 8;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    private long record(int index) {
+        int pos = recordsOffset + index * recordLength;
+        long value = 0;
+        for (int i = 0; i < recordLength; i++) {
+            value = (value << 8) | (buffer.get(pos + i) & 0xFF);
+        }
+        return value;
+    }
+
+    private int rowIndex(long record, int row) {
+        return (int) (record >>> ((size - 1 - row) * bitsPerRow)) & ((1 << bitsPerRow) - 1);
+    }
+
+    // 把第index个棋盘写入out
+    public void grid(int index, GameLogic.CellState[][] out) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("No grid #" + index);
+        }
+        long record = record(index);
+        for (int r = 0; r < size; r++) {
+            int line = rows[rowIndex(record, r)];
+            for (int c = 0; c < size; c++) {
+                out[r][c] = ((line >>> c) & 1) != 0 ? GameLogic.CellState.X : GameLogic.CellState.O;
+            }
+        }
+    }
+
+    // 均匀随机取一个完整棋盘写入out，返回其序号
+    public int sample(Random random, GameLogic.CellState[][] out) {
+        int index = random.nextInt(count);
+        grid(index, out);
+        return index;
+    }
+
+    // 完整棋盘在目录中的序号（二分查找），不是合法棋盘时返回-1
+    public int indexOf(GameLogic.CellState[][] grid) {
+        long key = 0;
+        for (int r = 0; r < size; r++) {
+            int line = 0;
+            for (int c = 0; c < size; c++) {
+                if (grid[r][c] == GameLogic.CellState.X) {
+                    line |= 1 << c;
+                } else if (grid[r][c] != GameLogic.CellState.O) {
+                    return -1;
+                }
+            }
+            int rowIndex = Arrays.binarySearch(rows, line);
+            if (rowIndex < 0) {
+                return -1;
+            }
+            key = (key << bitsPerRow) | rowIndex;
+        }
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long value = record(mid);
+            if (value < key) {
+                low = mid + 1;
+            } else if (value > key) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    // 与部分棋盘（空格不限）相符的完整棋盘数量，即它的解的数量，最多数到limit
+    // 每一行先算出允许的合法行集合（位掩码），之后对每条记录只做几次移位和与运算
+    public int countMatching(GameLogic.CellState[][] partial, int limit) {
+        long[] allowed = new long[size];
+        for (int r = 0; r < size; r++) {
+            int givenX = 0;
+            int givenO = 0;
+            for (int c = 0; c < size; c++) {
+                if (partial[r][c] == GameLogic.CellState.X) {
+                    givenX |= 1 << c;
+                } else if (partial[r][c] == GameLogic.CellState.O) {
+                    givenO |= 1 << c;
+                }
+            }
+            for (int i = 0; i < rows.length; i++) {
+                if ((rows[i] & givenX) == givenX && (~rows[i] & full & givenO) == givenO) {
+                    allowed[r] |= 1L << i;
+                }
+            }
+            if (allowed[r] == 0) {
+                return 0;
+            }
+        }
+
+        int found = 0;
+        for (int index = 0; index < count && found < limit; index++) {
+            long record = record(index);
+            boolean matches = true;
+            for (int r = 0; r < size && matches; r++) {
+                matches = (allowed[r] & (1L << rowIndex(record, r))) != 0;
+            }
+            if (matches) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    // 部分棋盘是否恰有一个解
+    public boolean isUnique(GameLogic.CellState[][] partial) {
+        return countMatching(partial, 2) == 1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (file != null) {
+            file.close();
+        }
+    }
+
+    // 目录写入器：按升序逐个添加棋盘（以行序号表示），最后一次性写出
+    public static class Writer {
+        private final int size;
+        private final int[] rows;
+        private final int bitsPerRow;
+        private long[] records = new long[1024];
+        private int count;
+
+        // rows：合法行的X位掩码，升序排列
+        public Writer(int size, int[] rows) {
+            this.size = size;
+            this.rows = rows.clone();
+            this.bitsPerRow = bitsFor(rows.length);
+            if (recordLength(size, bitsPerRow) > 8) {
+                throw new IllegalArgumentException("Grid records for size " + size + " do not fit in 8 bytes");
+            }
+        }
+
+        // 添加一个棋盘，rowIndices[r]为第r行在合法行表中的序号；必须按升序添加
+        public void add(int[] rowIndices) {
+            long record = 0;
+            for (int r = 0; r < size; r++) {
+                record = (record << bitsPerRow) | rowIndices[r];
+            }
+            if (count > 0 && records[count - 1] >= record) {
+                throw new IllegalArgumentException("Grids must be added in ascending order");
+            }
+            if (count == records.length) {
+                records = Arrays.copyOf(records, count * 2);
+            }
+            records[count++] = record;
+        }
+
+        public int count() {
+            return count;
+        }
+
+        public void writeTo(OutputStream output) throws IOException {
+            DataOutputStream out = new DataOutputStream(output);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(size);
+            out.writeInt(rows.length);
+            out.writeInt(count);
+            for (int row : rows) {
+                out.writeInt(row);
+            }
+            int recordLength = recordLength(size, bitsPerRow);
+            for (int i = 0; i < count; i++) {
+                for (int b = recordLength - 1; b >= 0; b--) {
+                    out.write((int) (records[i] >>> (8 * b)));
+                }
+            }
+            out.flush();
+        }
+    }
+}
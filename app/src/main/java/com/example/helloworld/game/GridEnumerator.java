@@ -0,0 +1,115 @@
+package com.example.helloworld.game;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// 枚举某个大小（标准规则、偶数边长）的全部合法完整棋盘，写入GridCatalogue.Writer
+//
+// 按行深度优先枚举，候选行按序号升序尝试，因此输出天然有序。
+// 4x4、6x6只需几毫秒，GridCatalogue.builtIn直接在内存中枚举；
+// 8x8约需十几秒，由GridCatalogueBuilder离线生成文件。
+public class GridEnumerator {
+    private final int size;
+    private final int half;
+    private final int full;
+    private final int[] rows;
+    private final GridCatalogue.Writer writer;
+    private final int[] chosen;
+    private final int[] xCounts;
+    private final boolean[] used;
+
+    public GridEnumerator(int size) {
+        if (size <= 0 || size % 2 != 0 || size > 8) {
+            throw new IllegalArgumentException("Grid size must be even and at most 8");
+        }
+        this.size = size;
+        this.half = size / 2;
+        this.full = (1 << size) - 1;
+        List<Integer> valid = new ArrayList<>();
+        for (int bits = 0; bits <= full; bits++) {
+            if (Integer.bitCount(bits) == half && !hasTriple(bits) && !hasTriple(full & ~bits)) {
+                valid.add(bits);
+            }
+        }
+        rows = new int[valid.size()];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = valid.get(i);
+        }
+        writer = new GridCatalogue.Writer(size, rows);
+        chosen = new int[size];
+        xCounts = new int[size];
+        used = new boolean[rows.length];
+    }
+
+    private static boolean hasTriple(int line) {
+        return (line & (line >>> 1) & (line >>> 2)) != 0;
+    }
+
+    // 枚举全部棋盘，返回写好的Writer
+    public GridCatalogue.Writer run() {
+        place(0);
+        return writer;
+    }
+
+    // 合法行的数量
+    public int getRowCount() {
+        return rows.length;
+    }
+
+    private void place(int row) {
+        if (row == size) {
+            if (columnsDistinct()) {
+                writer.add(chosen);
+            }
+            return;
+        }
+        for (int i = 0; i < rows.length; i++) {
+            if (used[i] || !fits(row, rows[i])) {
+                continue;
+            }
+            used[i] = true;
+            chosen[row] = i;
+            for (int c = 0; c < size; c++) {
+                xCounts[c] += (rows[i] >>> c) & 1;
+            }
+            place(row + 1);
+            for (int c = 0; c < size; c++) {
+                xCounts[c] -= (rows[i] >>> c) & 1;
+            }
+            used[i] = false;
+        }
+    }
+
+    // 放入后各列没有三连，X、O都不超过一半
+    private boolean fits(int row, int line) {
+        if (row >= 2) {
+            int prev = rows[chosen[row - 1]];
+            int prev2 = rows[chosen[row - 2]];
+            if ((line & prev & prev2) != 0 || (~line & ~prev & ~prev2 & full) != 0) {
+                return false;
+            }
+        }
+        for (int c = 0; c < size; c++) {
+            int x = xCounts[c] + ((line >>> c) & 1);
+            if (x > half || row + 1 - x > half) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean columnsDistinct() {
+        int[] columns = new int[size];
+        for (int c = 0; c < size; c++) {
+            for (int r = 0; r < size; r++) {
+                columns[c] |= ((rows[chosen[r]] >>> c) & 1) << r;
+            }
+            for (int d = 0; d < c; d++) {
+                if (columns[d] == columns[c]) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
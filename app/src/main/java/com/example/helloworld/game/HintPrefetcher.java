@@ -0,0 +1,168 @@
+package com.example.helloworld.game;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 后台预先计算提示：每次棋盘变化后提交一个快照，由单独的工作线程算出下一步提示，
+// 按下提示时直接取已经算好的结果。
+//
+// 每个快照有一个递增的版本号，新快照提交时正在进行的计算被取消，
+// 排队中的旧快照在开始前被跳过，过时的结果不会被发布。
+//
+// 提示优先选择当前局面下可以直接推出的格子（约束传播得到的），
+// 没有这样的格子时从当前局面的一个解中随机取一个空格；当前局面无解时没有提示。
+public class HintPrefetcher {
+    // 单个快照的搜索节点上限，超过时放弃（结果为UNKNOWN）
+    public static final long NODE_BUDGET = 2000000;
+
+    // 一个快照的计算结果
+    public enum Outcome {
+        // 找到了提示
+        HINT,
+        // 当前局面无解（玩家已经下错）或没有空格，确实没有提示
+        NO_HINT,
+        // 搜索超过NODE_BUDGET放弃，不知道有没有提示
+        UNKNOWN
+    }
+
+    public interface Listener {
+        // 在工作线程上调用；outcome不为HINT时hint为null
+        void onHintReady(long version, Outcome outcome, int[] hint);
+    }
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "hint-prefetcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicLong version = new AtomicLong();
+    private final Random random = new Random();
+    private volatile Listener listener;
+    // 当前版本的结果；还没算完时为null
+    private volatile Ready ready;
+    // 工作线程正在使用的求解器（仅工作线程创建和替换）
+    private volatile PuzzleSolver solver;
+
+    private static class Ready {
+        final long version;
+        final Outcome outcome;
+        final int[] hint;
+
+        Ready(long version, Outcome outcome, int[] hint) {
+            this.version = version;
+            this.outcome = outcome;
+            this.hint = hint;
+        }
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    // 提交新的棋盘快照（调用方不能再修改它），返回其版本号
+    public long submit(GameLogic.CellState[][] snapshot) {
+        final long current = version.incrementAndGet();
+        ready = null;
+        PuzzleSolver running = solver;
+        if (running != null) {
+            running.cancel();
+        }
+        executor.execute(() -> {
+            if (current != version.get()) {
+                return;
+            }
+            int[] hint = compute(snapshot);
+            if (current != version.get()) {
+                return;
+            }
+            Outcome outcome = hint != null ? Outcome.HINT : solver.isAborted() ? Outcome.UNKNOWN : Outcome.NO_HINT;
+            ready = new Ready(current, outcome, hint);
+            Listener l = listener;
+            if (l != null) {
+                l.onHintReady(current, outcome, hint);
+            }
+        });
+        return current;
+    }
+
+    // 当前快照的提示是否已经算好
+    public boolean isReady() {
+        Ready r = ready;
+        return r != null && r.version == version.get();
+    }
+
+    // 当前快照已算好的提示（{行, 列, CellState序号}），没有提示或还没算好时返回null
+    public int[] getHint() {
+        Ready r = ready;
+        return r != null && r.version == version.get() ? r.hint : null;
+    }
+
+    // 当前快照的计算结果，还没算好时返回null
+    public Outcome getOutcome() {
+        Ready r = ready;
+        return r != null && r.version == version.get() ? r.outcome : null;
+    }
+
+    public long getVersion() {
+        return version.get();
+    }
+
+    public void shutdown() {
+        version.incrementAndGet();
+        PuzzleSolver running = solver;
+        if (running != null) {
+            running.cancel();
+        }
+        executor.shutdownNow();
+    }
+
+    private int[] compute(GameLogic.CellState[][] board) {
+        int size = board.length;
+        PuzzleSolver s = solver;
+        if (s == null || s.getSize() != size) {
+            s = new PuzzleSolver(size);
+            s.setNodeBudget(NODE_BUDGET);
+            solver = s;
+        }
+        s.load(board);
+        // 先确认当前局面有解（玩家可能已经下错），同时记下解中的一个格子；
+        // 超过节点上限时同样返回null，由调用方根据isAborted区分
+        if (s.countSolutions(1) == 0) {
+            return null;
+        }
+        int[] fromSolution = pickChanged(s, board);
+
+        // 优先给出可以直接推出的格子
+        s.resetToGivens();
+        if (s.propagate()) {
+            int[] forced = pickChanged(s, board);
+            if (forced != null) {
+                return forced;
+            }
+        }
+        return fromSolution;
+    }
+
+    // 在求解器状态中随机取一个原棋盘上为空、求解器中已填的格子
+    private int[] pickChanged(PuzzleSolver s, GameLogic.CellState[][] board) {
+        int size = board.length;
+        int candidates = 0;
+        int[] cells = new int[size * size];
+        for (int r = 0; r < size; r++) {
+            for (int c = 0; c < size; c++) {
+                if (board[r][c] == GameLogic.CellState.EMPTY && s.get(r, c) != GameLogic.CellState.EMPTY) {
+                    cells[candidates++] = r * size + c;
+                }
+            }
+        }
+        if (candidates == 0) {
+            return null;
+        }
+        int cell = cells[random.nextInt(candidates)];
+        int row = cell / size;
+        int col = cell % size;
+        return new int[]{row, col, s.get(row, col).ordinal()};
+    }
+}
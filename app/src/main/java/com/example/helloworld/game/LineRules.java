@@ -0,0 +1,158 @@
+package com.example.helloworld.game;
+
+// 行/列规则，编译成查表的有限自动机
+//
+// 一条线用打包编码表示：每格2位，值为CellState.ordinal()，第i格在第2i位（与PuzzleCodec、
+// PuzzleCanonicalizer的行编码一致），最长16格。
+// 连续规则编译为一个DFA：状态是(上一个符号, 当前连续长度)，每次吃进4格（一个字节），
+// 转移表预先算好，所以检查一条线只需要 长度/4 次查表。数量规则用位计数完成。
+//
+// 规则可变：最大连续长度、是否要求X和O数量相等、是否要求各行/列互不相同，
+// 通过Builder组合即可，不需要再手写新的循环。
+public final class LineRules {
+    public static final int MAX_LENGTH = 16;
+    public static final LineRules STANDARD = new Builder().build();
+
+    private static final int EVEN_BITS = 0x55555555;
+    private static final int DEAD = -1;
+
+    private final int maxRun;
+    private final boolean balanced;
+    private final boolean uniqueLines;
+    // transitions[state * 256 + chunk]：下一状态，DEAD表示出现超长连续
+    private final byte[] transitions;
+
+    private LineRules(int maxRun, boolean balanced, boolean uniqueLines) {
+        this.maxRun = maxRun;
+        this.balanced = balanced;
+        this.uniqueLines = uniqueLines;
+        this.transitions = compile(maxRun);
+    }
+
+    public int getMaxRun() {
+        return maxRun;
+    }
+
+    public boolean isBalanced() {
+        return balanced;
+    }
+
+    public boolean requiresUniqueLines() {
+        return uniqueLines;
+    }
+
+    // 是否就是标准规则（最多连续2个、数量平衡、行列唯一）
+    public boolean isStandard() {
+        return maxRun == 2 && balanced && uniqueLines;
+    }
+
+    // 状态编号：0表示上一格为空（或尚未开始），否则 (符号-1)*maxRun + 连续长度
+    private static byte[] compile(int maxRun) {
+        int states = 1 + 2 * maxRun;
+        byte[] table = new byte[states * 256];
+        for (int state = 0; state < states; state++) {
+            for (int chunk = 0; chunk < 256; chunk++) {
+                int current = state;
+                for (int i = 0; i < 4 && current != DEAD; i++) {
+                    current = step(current, (chunk >>> (2 * i)) & 3, maxRun);
+                }
+                table[state * 256 + chunk] = (byte) current;
+            }
+        }
+        return table;
+    }
+
+    private static int step(int state, int cell, int maxRun) {
+        if (cell == 0 || cell == 3) {
+            return 0;
+        }
+        int lastSymbol = state == 0 ? 0 : (state - 1) / maxRun + 1;
+        int run = state == 0 ? 0 : (state - 1) % maxRun + 1;
+        int newRun = cell == lastSymbol ? run + 1 : 1;
+        if (newRun > maxRun) {
+            return DEAD;
+        }
+        return (cell - 1) * maxRun + newRun;
+    }
+
+    // 只检查连续规则（可用于未填满的线）
+    public boolean allowsRuns(int code, int length) {
+        int state = 0;
+        for (int shift = 0; shift < 2 * length; shift += 8) {
+            state = transitions[(state << 8) | ((code >>> shift) & 0xFF)];
+            if (state == DEAD) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // 未填满的线：连续规则，且（平衡规则下）X、O都不超过一半
+    public boolean isValidPartial(int code, int length) {
+        if (balanced) {
+            int half = length / 2;
+            if (countX(code) > half || countO(code) > half) {
+                return false;
+            }
+        }
+        return allowsRuns(code, length);
+    }
+
+    // 填满的线：连续规则，且（平衡规则下）X、O数量相等
+    public boolean isValidComplete(int code, int length) {
+        if (balanced && (countX(code) != countO(code))) {
+            return false;
+        }
+        return allowsRuns(code, length);
+    }
+
+    public static int countX(int code) {
+        return Integer.bitCount(code & EVEN_BITS);
+    }
+
+    public static int countO(int code) {
+        return Integer.bitCount((code >>> 1) & EVEN_BITS);
+    }
+
+    // 线上没有空格
+    public static boolean isFull(int code, int length) {
+        return countX(code) + countO(code) == length;
+    }
+
+    // 把第index格设为state后的编码
+    public static int withCell(int code, int index, GameLogic.CellState state) {
+        int shift = 2 * index;
+        return (code & ~(3 << shift)) | (state.ordinal() << shift);
+    }
+
+    public static class Builder {
+        private int maxRun = 2;
+        private boolean balanced = true;
+        private boolean uniqueLines = true;
+
+        // 同一符号最多连续几格（标准规则为2）
+        public Builder maxRun(int maxRun) {
+            if (maxRun < 1 || maxRun > 63) {
+                throw new IllegalArgumentException("maxRun must be between 1 and 63");
+            }
+            this.maxRun = maxRun;
+            return this;
+        }
+
+        // 是否要求每行/列X和O数量相等
+        public Builder balanced(boolean balanced) {
+            this.balanced = balanced;
+            return this;
+        }
+
+        // 是否要求所有行（以及所有列）互不相同
+        public Builder uniqueLines(boolean uniqueLines) {
+            this.uniqueLines = uniqueLines;
+            return this;
+        }
+
+        public LineRules build() {
+            return new LineRules(maxRun, balanced, uniqueLines);
+        }
+    }
+}
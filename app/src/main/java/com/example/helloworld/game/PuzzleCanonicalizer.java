@@ -0,0 +1,164 @@
+package com.example.helloworld.game;
+
+import java.util.Arrays;
+
+// 谜题的对称规范化
+// 行列翻转、旋转、转置（共8种几何变换）以及X/O互换都不改变谜题本质，
+// 这16种变体中打包编码最小的一个作为规范形式。
+// 打包编码：每行一个int，每格2位，值为CellState.ordinal()，第c列在第2c位。
+// 实例内部复用临时数组，不是线程安全的，每个线程各用一个。
+public class PuzzleCanonicalizer {
+    private static final int EVEN_BITS = 0x55555555;
+
+    private int[] source = new int[0];
+    private int[] candidate = new int[0];
+    private int[] best = new int[0];
+
+    // 计算规范形式（会分配一个结果对象）
+    public CanonicalForm canonicalize(GameLogic.CellState[][] board) {
+        int size = board.length;
+        canonicalRows(board);
+        return new CanonicalForm(size, Arrays.copyOf(best, size), hashRows(size, best));
+    }
+
+    // 只计算规范形式的64位哈希，不分配对象
+    public long canonicalHash(GameLogic.CellState[][] board) {
+        int size = board.length;
+        canonicalRows(board);
+        return hashRows(size, best);
+    }
+
+    // 最近一次计算的规范形式的第i行（供同一包内的索引比较，不必复制）
+    int canonicalRow(int i) {
+        return best[i];
+    }
+
+    private void canonicalRows(GameLogic.CellState[][] board) {
+        int size = board.length;
+        ensureCapacity(size);
+        for (int r = 0; r < size; r++) {
+            int row = 0;
+            for (int c = 0; c < size; c++) {
+                row |= board[r][c].ordinal() << (2 * c);
+            }
+            source[r] = row;
+        }
+
+        boolean first = true;
+        for (int transform = 0; transform < 8; transform++) {
+            for (int r = 0; r < size; r++) {
+                int row = 0;
+                for (int c = 0; c < size; c++) {
+                    row |= cellAt(size, transform, r, c) << (2 * c);
+                }
+                candidate[r] = row;
+            }
+            if (first || compareRows(candidate, best, size) < 0) {
+                System.arraycopy(candidate, 0, best, 0, size);
+                first = false;
+            }
+            // 同一几何变换再做X/O互换
+            for (int r = 0; r < size; r++) {
+                candidate[r] = swapRow(candidate[r]);
+            }
+            if (compareRows(candidate, best, size) < 0) {
+                System.arraycopy(candidate, 0, best, 0, size);
+            }
+        }
+    }
+
+    // 第transform种几何变换后，(row, col)处的格子来自原棋盘的哪个位置
+    private int cellAt(int size, int transform, int row, int col) {
+        int last = size - 1;
+        int r;
+        int c;
+        switch (transform) {
+            case 0: r = row; c = col; break;
+            case 1: r = row; c = last - col; break;
+            case 2: r = last - row; c = col; break;
+            case 3: r = last - row; c = last - col; break;
+            case 4: r = col; c = row; break;
+            case 5: r = col; c = last - row; break;
+            case 6: r = last - col; c = row; break;
+            default: r = last - col; c = last - row; break;
+        }
+        return (source[r] >>> (2 * c)) & 3;
+    }
+
+    // 交换整行打包编码中的X和O
+    private static int swapRow(int row) {
+        return ((row & EVEN_BITS) << 1) | ((row >>> 1) & EVEN_BITS);
+    }
+
+    private static int compareRows(int[] a, int[] b, int size) {
+        for (int i = 0; i < size; i++) {
+            if (a[i] != b[i]) {
+                // 按无符号比较，保证16x16时最高位也有序
+                return Integer.compare(a[i] ^ Integer.MIN_VALUE, b[i] ^ Integer.MIN_VALUE);
+            }
+        }
+        return 0;
+    }
+
+    static long hashRows(int size, int[] rows) {
+        long h = size;
+        for (int i = 0; i < size; i++) {
+            h = (h ^ (rows[i] & 0xFFFFFFFFL)) * 0x9E3779B97F4A7C15L;
+        }
+        // SplitMix64的末端混合，使低位也分布均匀
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        return h ^ (h >>> 31);
+    }
+
+    private void ensureCapacity(int size) {
+        if (source.length < size) {
+            source = new int[size];
+            candidate = new int[size];
+            best = new int[size];
+        }
+    }
+
+    // 规范形式：可以直接放进HashSet/HashMap中去重
+    public static final class CanonicalForm {
+        private final int size;
+        private final int[] rows;
+        private final long hash;
+
+        CanonicalForm(int size, int[] rows, long hash) {
+            this.size = size;
+            this.rows = rows;
+            this.hash = hash;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        // 规范形式的打包行编码（副本）
+        public int[] getRows() {
+            return rows.clone();
+        }
+
+        public long hash64() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CanonicalForm)) {
+                return false;
+            }
+            CanonicalForm other = (CanonicalForm) o;
+            return size == other.size && hash == other.hash && Arrays.equals(rows, other.rows);
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (hash ^ (hash >>> 32));
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.example.helloworld.game;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+// 谜题的紧凑二进制编码，持久化、蓝牙传输和谜题库共用同一格式
+//
+//   [size:1][flags:1][cells:ceil(size²/4)][solution:ceil(size²/8)]?[seed:8]?[crc32:4]
+//
+// cells：第i格（i = row*size + col）占第i/4字节中从低位起第(i%4)*2位开始的2位，值为CellState.ordinal()
+// solution：第i位为1表示X，0表示O（仅当flags含FLAG_SOLUTION）
+// seed：大端long（仅当flags含FLAG_SEED）
+// crc32：对之前所有字节的CRC32，大端
+//
+// 实例复用内部的CRC32，编码和解码都写入调用方提供的缓冲区，不分配对象；不是线程安全的
+public class PuzzleCodec {
+    public static final int FLAG_SOLUTION = 1;
+    public static final int FLAG_SEED = 2;
+
+    private static final int HEADER_LENGTH = 2;
+    private static final int CHECKSUM_LENGTH = 4;
+    private static final GameLogic.CellState[] STATES = GameLogic.CellState.values();
+
+    private final CRC32 crc = new CRC32();
+    private int lastFlags;
+    private long lastSeed;
+
+    // 指定大小和标志的编码长度
+    public static int encodedLength(int size, int flags) {
+        int cells = size * size;
+        int length = HEADER_LENGTH + (cells + 3) / 4 + CHECKSUM_LENGTH;
+        if ((flags & FLAG_SOLUTION) != 0) {
+            length += (cells + 7) / 8;
+        }
+        if ((flags & FLAG_SEED) != 0) {
+            length += 8;
+        }
+        return length;
+    }
+
+    // 编码到out[offset...]；solution为null时不写入解，includeSeed为false时不写入种子
+    // 返回写入的字节数
+    public int encode(GameLogic.CellState[][] puzzle, GameLogic.CellState[][] solution,
+                      boolean includeSeed, long seed, byte[] out, int offset) {
+        int size = puzzle.length;
+        int flags = (solution != null ? FLAG_SOLUTION : 0) | (includeSeed ? FLAG_SEED : 0);
+        int cells = size * size;
+        int pos = offset;
+
+        out[pos++] = (byte) size;
+        out[pos++] = (byte) flags;
+
+        int cellBytes = (cells + 3) / 4;
+        for (int i = 0; i < cellBytes; i++) {
+            out[pos + i] = 0;
+        }
+        for (int i = 0; i < cells; i++) {
+            int ordinal = puzzle[i / size][i % size].ordinal();
+            out[pos + (i >> 2)] |= (byte) (ordinal << ((i & 3) << 1));
+        }
+        pos += cellBytes;
+
+        if (solution != null) {
+            int solutionBytes = (cells + 7) / 8;
+            for (int i = 0; i < solutionBytes; i++) {
+                out[pos + i] = 0;
+            }
+            for (int i = 0; i < cells; i++) {
+                if (solution[i / size][i % size] == GameLogic.CellState.X) {
+                    out[pos + (i >> 3)] |= (byte) (1 << (i & 7));
+                }
+            }
+            pos += solutionBytes;
+        }
+
+        if (includeSeed) {
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                out[pos++] = (byte) (seed >>> shift);
+            }
+        }
+
+        crc.reset();
+        crc.update(out, offset, pos - offset);
+        int checksum = (int) crc.getValue();
+        out[pos++] = (byte) (checksum >>> 24);
+        out[pos++] = (byte) (checksum >>> 16);
+        out[pos++] = (byte) (checksum >>> 8);
+        out[pos++] = (byte) checksum;
+        return pos - offset;
+    }
+
+    // 根据记录的前两个字节（大小和标志）得出整条记录的长度，用于从流中切分记录
+    public static int recordLength(byte sizeByte, byte flagsByte) {
+        return encodedLength(sizeByte & 0xFF, flagsByte & 0xFF);
+    }
+
+    // 读取编码中的棋盘大小（用于在解码前准备好数组）
+    public static int peekSize(byte[] in, int offset) {
+        return in[offset] & 0xFF;
+    }
+
+    public static int peekSize(ByteBuffer in, int offset) {
+        return in.get(offset) & 0xFF;
+    }
+
+    // 从in[offset...]解码到puzzleOut（以及solutionOut，可为null）
+    // 标志和种子可通过getLastFlags()/getLastSeed()取得；返回读取的字节数
+    public int decode(byte[] in, int offset, int length,
+                      GameLogic.CellState[][] puzzleOut, GameLogic.CellState[][] solutionOut) throws IOException {
+        if (length < HEADER_LENGTH) {
+            throw new IOException("Puzzle record truncated");
+        }
+        int size = in[offset] & 0xFF;
+        int flags = in[offset + 1] & 0xFF;
+        int total = checkHeader(size, flags, length, puzzleOut);
+
+        crc.reset();
+        crc.update(in, offset, total - CHECKSUM_LENGTH);
+        int stored = ((in[offset + total - 4] & 0xFF) << 24) | ((in[offset + total - 3] & 0xFF) << 16)
+                | ((in[offset + total - 2] & 0xFF) << 8) | (in[offset + total - 1] & 0xFF);
+        if ((int) crc.getValue() != stored) {
+            throw new IOException("Puzzle record checksum mismatch");
+        }
+
+        int cells = size * size;
+        int pos = offset + HEADER_LENGTH;
+        for (int i = 0; i < cells; i++) {
+            int ordinal = (in[pos + (i >> 2)] >>> ((i & 3) << 1)) & 3;
+            puzzleOut[i / size][i % size] = stateOf(ordinal);
+        }
+        pos += (cells + 3) / 4;
+
+        if ((flags & FLAG_SOLUTION) != 0) {
+            if (solutionOut != null) {
+                for (int i = 0; i < cells; i++) {
+                    boolean isX = (in[pos + (i >> 3)] & (1 << (i & 7))) != 0;
+                    solutionOut[i / size][i % size] = isX ? GameLogic.CellState.X : GameLogic.CellState.O;
+                }
+            }
+            pos += (cells + 7) / 8;
+        }
+
+        long seed = 0;
+        if ((flags & FLAG_SEED) != 0) {
+            for (int i = 0; i < 8; i++) {
+                seed = (seed << 8) | (in[pos++] & 0xFF);
+            }
+        }
+        lastFlags = flags;
+        lastSeed = seed;
+        return total;
+    }
+
+    // 从ByteBuffer的绝对位置解码（可直接作用于内存映射的谜题库，不复制到堆上）
+    public int decode(ByteBuffer in, int offset, int length,
+                      GameLogic.CellState[][] puzzleOut, GameLogic.CellState[][] solutionOut) throws IOException {
+        if (length < HEADER_LENGTH) {
+            throw new IOException("Puzzle record truncated");
+        }
+        int size = in.get(offset) & 0xFF;
+        int flags = in.get(offset + 1) & 0xFF;
+        int total = checkHeader(size, flags, length, puzzleOut);
+
+        // CRC32.update(ByteBuffer)会移动position，完成后恢复
+        int savedPosition = in.position();
+        int savedLimit = in.limit();
+        in.limit(offset + total - CHECKSUM_LENGTH);
+        in.position(offset);
+        crc.reset();
+        crc.update(in);
+        in.limit(savedLimit);
+        in.position(savedPosition);
+        if ((int) crc.getValue() != in.getInt(offset + total - CHECKSUM_LENGTH)) {
+            throw new IOException("Puzzle record checksum mismatch");
+        }
+
+        int cells = size * size;
+        int pos = offset + HEADER_LENGTH;
+        for (int i = 0; i < cells; i++) {
+            int ordinal = (in.get(pos + (i >> 2)) >>> ((i & 3) << 1)) & 3;
+            puzzleOut[i / size][i % size] = stateOf(ordinal);
+        }
+        pos += (cells + 3) / 4;
+
+        if ((flags & FLAG_SOLUTION) != 0) {
+            if (solutionOut != null) {
+                for (int i = 0; i < cells; i++) {
+                    boolean isX = (in.get(pos + (i >> 3)) & (1 << (i & 7))) != 0;
+                    solutionOut[i / size][i % size] = isX ? GameLogic.CellState.X : GameLogic.CellState.O;
+                }
+            }
+            pos += (cells + 7) / 8;
+        }
+
+        lastFlags = flags;
+        lastSeed = (flags & FLAG_SEED) != 0 ? in.getLong(pos) : 0;
+        return total;
+    }
+
+    public int getLastFlags() {
+        return lastFlags;
+    }
+
+    public long getLastSeed() {
+        return lastSeed;
+    }
+
+    private static int checkHeader(int size, int flags, int length, GameLogic.CellState[][] puzzleOut)
+            throws IOException {
+        if (size == 0 || (flags & ~(FLAG_SOLUTION | FLAG_SEED)) != 0) {
+            throw new IOException("Bad puzzle record header");
+        }
+        int total = encodedLength(size, flags);
+        if (length < total) {
+            throw new IOException("Puzzle record truncated");
+        }
+        if (puzzleOut.length != size) {
+            throw new IOException("Expected board of size " + puzzleOut.length + " but record has " + size);
+        }
+        return total;
+    }
+
+    private static GameLogic.CellState stateOf(int ordinal) throws IOException {
+        if (ordinal >= STATES.length) {
+            throw new IOException("Bad cell value " + ordinal);
+        }
+        return STATES[ordinal];
+    }
+}
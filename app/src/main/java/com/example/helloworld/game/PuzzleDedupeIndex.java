@@ -0,0 +1,95 @@
+package com.example.helloworld.game;
+
+import java.util.Arrays;
+
+// 按规范形式去重的谜题索引：对称等价的谜题只会被收录一次
+// 离线工具（BulkPuzzleGenerator、PuzzleLibraryBuilder）生成谜题池、导入谜题库时使用；
+// 应用内记录出过的谜题用的是BloomFilter（内存固定、可持久化），不用这个索引。
+//
+// 开放寻址的哈希表：键是规范形式的64位哈希，同时保存规范行编码，哈希相同时逐行比较，
+// 因此结果是精确的。查询和插入复用规范化器的临时数组，只有收录新谜题时才复制一份行编码。
+public class PuzzleDedupeIndex {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final PuzzleCanonicalizer canonicalizer = new PuzzleCanonicalizer();
+    private long[] hashes = new long[INITIAL_CAPACITY];
+    // 为null表示空槽
+    private int[][] entries = new int[INITIAL_CAPACITY][];
+    private int count;
+
+    // 收录谜题；如果已有等价谜题则返回false
+    public synchronized boolean add(GameLogic.CellState[][] board) {
+        int size = board.length;
+        long hash = canonicalizer.canonicalHash(board);
+        int slot = find(hash, size);
+        if (entries[slot] != null) {
+            return false;
+        }
+        int[] rows = new int[size];
+        for (int i = 0; i < size; i++) {
+            rows[i] = canonicalizer.canonicalRow(i);
+        }
+        hashes[slot] = hash;
+        entries[slot] = rows;
+        count++;
+        // 装载因子不超过1/2
+        if (count * 2 > entries.length) {
+            grow();
+        }
+        return true;
+    }
+
+    public synchronized boolean contains(GameLogic.CellState[][] board) {
+        long hash = canonicalizer.canonicalHash(board);
+        return entries[find(hash, board.length)] != null;
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    public synchronized void clear() {
+        Arrays.fill(entries, null);
+        count = 0;
+    }
+
+    // 规范化器中刚算出的规范形式所在的槽，或者应该放入的空槽
+    private int find(long hash, int size) {
+        int mask = entries.length - 1;
+        int slot = (int) (hash ^ (hash >>> 32)) & mask;
+        while (entries[slot] != null && !(hashes[slot] == hash && matches(entries[slot], size))) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private boolean matches(int[] rows, int size) {
+        if (rows.length != size) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            if (rows[i] != canonicalizer.canonicalRow(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void grow() {
+        long[] oldHashes = hashes;
+        int[][] oldEntries = entries;
+        hashes = new long[oldHashes.length * 2];
+        entries = new int[oldEntries.length * 2][];
+        int mask = entries.length - 1;
+        for (int i = 0; i < oldEntries.length; i++) {
+            if (oldEntries[i] != null) {
+                int slot = (int) (oldHashes[i] ^ (oldHashes[i] >>> 32)) & mask;
+                while (entries[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                hashes[slot] = oldHashes[i];
+                entries[slot] = oldEntries[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.helloworld.game;
+
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+// 离线谜题库：按(棋盘大小, 难度)分组的定长PuzzleCodec记录，整个文件通过MappedByteBuffer只读映射
+//
+//   [magic:4][version:4][sectionCount:4]
+//   sectionCount × [size:4][difficulty:4][count:4][recordLength:4][offset:8]
+//   各分组的记录，依次紧密排列
+//
+// 取第k个谜题只是计算偏移量后直接在映射内存上解码，不需要解析整个文件，也不复制到堆上
+public class PuzzleLibrary implements Closeable {
+    public static final int MAGIC = 0x4F4F5850; // "OOXP"
+    public static final int VERSION = 1;
+    // 库中记录包含解和种子
+    public static final int RECORD_FLAGS = PuzzleCodec.FLAG_SOLUTION | PuzzleCodec.FLAG_SEED;
+
+    private static final int HEADER_LENGTH = 12;
+    private static final int SECTION_LENGTH = 24;
+
+    private final RandomAccessFile file;
+    private final MappedByteBuffer buffer;
+    private final int[] sectionSize;
+    private final int[] sectionDifficulty;
+    private final int[] sectionCount;
+    private final int[] sectionRecordLength;
+    private final long[] sectionOffset;
+    private final PuzzleCodec codec = new PuzzleCodec();
+
+    private PuzzleLibrary(RandomAccessFile file, MappedByteBuffer buffer) throws IOException {
+        this.file = file;
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_LENGTH || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a puzzle library");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported puzzle library version " + buffer.getInt(4));
+        }
+        int sections = buffer.getInt(8);
+        if (sections < 0 || HEADER_LENGTH + (long) sections * SECTION_LENGTH > buffer.capacity()) {
+            throw new IOException("Corrupt puzzle library header");
+        }
+        sectionSize = new int[sections];
+        sectionDifficulty = new int[sections];
+        sectionCount = new int[sections];
+        sectionRecordLength = new int[sections];
+        sectionOffset = new long[sections];
+        for (int i = 0; i < sections; i++) {
+            int base = HEADER_LENGTH + i * SECTION_LENGTH;
+            sectionSize[i] = buffer.getInt(base);
+            sectionDifficulty[i] = buffer.getInt(base + 4);
+            sectionCount[i] = buffer.getInt(base + 8);
+            sectionRecordLength[i] = buffer.getInt(base + 12);
+            sectionOffset[i] = buffer.getLong(base + 16);
+            long end = sectionOffset[i] + (long) sectionCount[i] * sectionRecordLength[i];
+            if (sectionCount[i] < 0 || sectionOffset[i] < 0 || end > buffer.capacity()
+                    || sectionRecordLength[i] != PuzzleCodec.encodedLength(sectionSize[i], RECORD_FLAGS)) {
+                throw new IOException("Corrupt puzzle library section " + i);
+            }
+        }
+    }
+
+    // 打开并映射谜题库文件
+    public static PuzzleLibrary open(File path) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(path, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new PuzzleLibrary(file, buffer);
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    // 指定大小和难度的谜题数量
+    public int count(int size, GameLogic.Difficulty difficulty) {
+        int section = findSection(size, difficulty);
+        return section < 0 ? 0 : sectionCount[section];
+    }
+
+    // 第index个谜题记录的只读切片（共享映射内存）
+    public ByteBuffer slice(int size, GameLogic.Difficulty difficulty, int index) {
+        int section = requireSection(size, difficulty, index);
+        ByteBuffer view = buffer.duplicate();
+        int start = (int) (sectionOffset[section] + (long) index * sectionRecordLength[section]);
+        view.position(start);
+        view.limit(start + sectionRecordLength[section]);
+        return view.slice();
+    }
+
+    // 把第index个谜题解码到puzzleOut/solutionOut，返回它的种子
+    public synchronized long read(int size, GameLogic.Difficulty difficulty, int index,
+                                  GameLogic.CellState[][] puzzleOut, GameLogic.CellState[][] solutionOut)
+            throws IOException {
+        int section = requireSection(size, difficulty, index);
+        int start = (int) (sectionOffset[section] + (long) index * sectionRecordLength[section]);
+        codec.decode(buffer, start, sectionRecordLength[section], puzzleOut, solutionOut);
+        return codec.getLastSeed();
+    }
+
+    private int findSection(int size, GameLogic.Difficulty difficulty) {
+        for (int i = 0; i < sectionSize.length; i++) {
+            if (sectionSize[i] == size && sectionDifficulty[i] == difficulty.ordinal()) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int requireSection(int size, GameLogic.Difficulty difficulty, int index) {
+        int section = findSection(size, difficulty);
+        if (section < 0 || index < 0 || index >= sectionCount[section]) {
+            throw new IndexOutOfBoundsException("No puzzle #" + index + " for " + size + "x" + size + " " + difficulty);
+        }
+        return section;
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    // 谜题库写入器：先按分组收集已编码的记录，最后一次性写出索引和数据
+    public static class Writer {
+        private final List<Integer> sizes = new ArrayList<>();
+        private final List<GameLogic.Difficulty> difficulties = new ArrayList<>();
+        private final List<List<byte[]>> records = new ArrayList<>();
+        private final PuzzleCodec codec = new PuzzleCodec();
+
+        // 添加一个谜题（同时写入解和种子）
+        public void add(GameLogic.CellState[][] puzzle, GameLogic.CellState[][] solution,
+                        long seed, GameLogic.Difficulty difficulty) {
+            int size = puzzle.length;
+            byte[] record = new byte[PuzzleCodec.encodedLength(size, RECORD_FLAGS)];
+            codec.encode(puzzle, solution, true, seed, record, 0);
+            addRecord(size, difficulty, record);
+        }
+
+        // 添加一条已编码的记录（必须包含解和种子）
+        public void addRecord(int size, GameLogic.Difficulty difficulty, byte[] record) {
+            if (record.length != PuzzleCodec.encodedLength(size, RECORD_FLAGS)) {
+                throw new IllegalArgumentException("Library records must carry solution and seed");
+            }
+            int section = -1;
+            for (int i = 0; i < sizes.size(); i++) {
+                if (sizes.get(i) == size && difficulties.get(i) == difficulty) {
+                    section = i;
+                    break;
+                }
+            }
+            if (section < 0) {
+                sizes.add(size);
+                difficulties.add(difficulty);
+                records.add(new ArrayList<byte[]>());
+                section = sizes.size() - 1;
+            }
+            records.get(section).add(record);
+        }
+
+        public void writeTo(OutputStream output) throws IOException {
+            DataOutputStream out = new DataOutputStream(output);
+            int sections = sizes.size();
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(sections);
+            long offset = HEADER_LENGTH + (long) sections * SECTION_LENGTH;
+            for (int i = 0; i < sections; i++) {
+                int recordLength = PuzzleCodec.encodedLength(sizes.get(i), RECORD_FLAGS);
+                out.writeInt(sizes.get(i));
+                out.writeInt(difficulties.get(i).ordinal());
+                out.writeInt(records.get(i).size());
+                out.writeInt(recordLength);
+                out.writeLong(offset);
+                offset += (long) records.get(i).size() * recordLength;
+            }
+            for (List<byte[]> section : records) {
+                for (byte[] record : section) {
+                    out.write(record);
+                }
+            }
+            out.flush();
+        }
+    }
+}
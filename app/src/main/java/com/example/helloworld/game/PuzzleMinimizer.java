@@ -0,0 +1,103 @@
+package com.example.helloworld.game;
+
+import java.util.Random;
+
+// 谜题最小化：在保持唯一解的前提下，删掉所有可以由其他线索推出的线索。
+//
+// 试删一个线索(r, c)=v 时不需要重新数解：原解仍然是解，所以只要检查
+// “其余线索 + (r, c)取相反值”是否无解即可，通常约束传播一步就能得出矛盾。
+// 求解器只在开始时载入一次，之后每次试删只改动一个给定格子的位掩码。
+// 另外，删不掉的线索在继续删除其他线索后也一定删不掉（线索越少解越多），
+// 因此每个线索只试一次。
+public class PuzzleMinimizer {
+    // 每次试删的搜索节点上限，超出时保守地保留该线索
+    public static final long PROBE_NODE_BUDGET = 20000;
+    // 整个最小化过程的节点上限，保证12x12也能在有限时间内结束
+    // 用节点数而不是时间做上限，保证同一种子在快慢设备上结果一致
+    public static final long TOTAL_NODE_BUDGET = 400000;
+
+    // 不限时
+    public static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    private final PuzzleSolver solver;
+    private boolean cutShort;
+
+    public PuzzleMinimizer(int size) {
+        this(size, LineRules.STANDARD);
+    }
+
+    public PuzzleMinimizer(int size, LineRules rules) {
+        this.solver = new PuzzleSolver(size, rules);
+    }
+
+    // 在puzzle上原地删除线索，solution为其唯一解；剩余线索数不少于minClues
+    // 试删顺序由random决定；返回剩余线索数
+    public int minimize(GameLogic.CellState[][] puzzle, GameLogic.CellState[][] solution,
+                        Random random, int minClues) {
+        return minimize(puzzle, solution, random, minClues, NO_DEADLINE);
+    }
+
+    // 同上，但System.nanoTime()超过deadlineNanos后不再试删，谜题仍然有唯一解，只是线索偏多；
+    // 是否因此提前结束可通过isCutShort()得知
+    public int minimize(GameLogic.CellState[][] puzzle, GameLogic.CellState[][] solution,
+                        Random random, int minClues, long deadlineNanos) {
+        cutShort = false;
+        int size = solver.getSize();
+        solver.load(puzzle);
+
+        int[] cells = new int[size * size];
+        int clues = 0;
+        for (int r = 0; r < size; r++) {
+            for (int c = 0; c < size; c++) {
+                if (puzzle[r][c] != GameLogic.CellState.EMPTY) {
+                    cells[clues++] = r * size + c;
+                }
+            }
+        }
+        for (int i = clues - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = cells[i];
+            cells[i] = cells[j];
+            cells[j] = tmp;
+        }
+
+        long budget = TOTAL_NODE_BUDGET;
+        int remaining = clues;
+        for (int i = 0; i < clues && remaining > minClues && budget > 0; i++) {
+            if (deadlineNanos != NO_DEADLINE && System.nanoTime() - deadlineNanos > 0) {
+                cutShort = true;
+                break;
+            }
+            int r = cells[i] / size;
+            int c = cells[i] % size;
+            GameLogic.CellState value = solution[r][c];
+
+            solver.setGiven(r, c, GameLogic.CellState.EMPTY);
+            solver.resetToGivens();
+            solver.setNodeBudget(Math.min(PROBE_NODE_BUDGET, budget));
+
+            boolean removable = false;
+            boolean opposite = value != GameLogic.CellState.X;
+            if (!solver.canPlace(r, c, opposite)) {
+                removable = true;
+            } else {
+                solver.place(r, c, opposite);
+                removable = solver.countSolutions(1) == 0 && !solver.isAborted();
+                budget -= solver.getNodes();
+            }
+
+            if (removable) {
+                puzzle[r][c] = GameLogic.CellState.EMPTY;
+                remaining--;
+            } else {
+                solver.setGiven(r, c, value);
+            }
+        }
+        return remaining;
+    }
+
+    // 最近一次minimize是否因为超过截止时间而提前结束
+    public boolean isCutShort() {
+        return cutShort;
+    }
+}
@@ -0,0 +1,370 @@
+package com.example.helloworld.game;
+
+import java.util.Arrays;
+
+// 位运算求解器：每行、每列各用两个位掩码（X和O）表示，
+// 规则检查都是几次位运算，搜索时按层保存快照，不分配对象。
+// 一个实例对应一个棋盘大小和一套规则（LineRules），可以反复load/求解，适合在循环中复用。
+public class PuzzleSolver {
+    private final int size;
+    private final int maxRun;
+    // 每行/列每种符号的数量上限（不要求平衡时为size）
+    private final int half;
+    private final boolean uniqueLines;
+    private final int full;
+
+    // 当前状态：行X、行O、列X、列O
+    private final int[] rowX;
+    private final int[] rowO;
+    private final int[] colX;
+    private final int[] colO;
+
+    // 题目给定的格子（用于增量试删）
+    private final int[] givenX;
+    private final int[] givenO;
+
+    // 每层搜索的快照，布局为 rowX|rowO|colX|colO
+    private final int[][] stack;
+
+    private long nodeBudget = Long.MAX_VALUE;
+    private long nodes;
+    private boolean aborted;
+    // 其他线程请求取消（例如结果已经过时），在下一个搜索节点生效
+    private volatile boolean cancelled;
+    // 观察者（可为null）和每次countSolutions的计数
+    private SolverListener listener;
+    private final SolverStats stats = new SolverStats();
+    // 不为null时，搜索到的第一个解写到这里（只在一次countSolutions期间有效）
+    private GameLogic.CellState[][] firstSolution;
+
+    public PuzzleSolver(int size) {
+        this(size, LineRules.STANDARD);
+    }
+
+    public PuzzleSolver(int size, LineRules rules) {
+        this.size = size;
+        this.maxRun = rules.getMaxRun();
+        this.half = rules.isBalanced() ? size / 2 : size;
+        this.uniqueLines = rules.requiresUniqueLines();
+        this.full = (1 << size) - 1;
+        this.rowX = new int[size];
+        this.rowO = new int[size];
+        this.colX = new int[size];
+        this.colO = new int[size];
+        this.givenX = new int[size];
+        this.givenO = new int[size];
+        this.stack = new int[size * size + 1][4 * size];
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    // 设置单次求解的搜索节点上限，超过后放弃并标记aborted
+    public void setNodeBudget(long nodeBudget) {
+        this.nodeBudget = nodeBudget;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public boolean isAborted() {
+        return aborted;
+    }
+
+    public void setListener(SolverListener listener) {
+        this.listener = listener;
+    }
+
+    // 最近一次countSolutions的计数（下次调用时重置）
+    public SolverStats getStats() {
+        return stats;
+    }
+
+    // 取消正在进行（或load之后下一次开始）的求解，求解返回0并标记aborted；可以从其他线程调用
+    public void cancel() {
+        cancelled = true;
+    }
+
+    // 载入题目（同时作为给定格子），并清除之前的取消请求
+    public void load(GameLogic.CellState[][] board) {
+        cancelled = false;
+        Arrays.fill(givenX, 0);
+        Arrays.fill(givenO, 0);
+        for (int r = 0; r < size; r++) {
+            for (int c = 0; c < size; c++) {
+                if (board[r][c] == GameLogic.CellState.X) {
+                    givenX[r] |= 1 << c;
+                } else if (board[r][c] == GameLogic.CellState.O) {
+                    givenO[r] |= 1 << c;
+                }
+            }
+        }
+        resetToGivens();
+    }
+
+    // 修改单个给定格子，不必重新载入整盘
+    public void setGiven(int row, int col, GameLogic.CellState state) {
+        int bit = 1 << col;
+        givenX[row] &= ~bit;
+        givenO[row] &= ~bit;
+        if (state == GameLogic.CellState.X) {
+            givenX[row] |= bit;
+        } else if (state == GameLogic.CellState.O) {
+            givenO[row] |= bit;
+        }
+    }
+
+    // 把当前状态恢复为给定格子
+    public void resetToGivens() {
+        Arrays.fill(colX, 0);
+        Arrays.fill(colO, 0);
+        for (int r = 0; r < size; r++) {
+            rowX[r] = givenX[r];
+            rowO[r] = givenO[r];
+            for (int c = 0; c < size; c++) {
+                if ((givenX[r] & (1 << c)) != 0) {
+                    colX[c] |= 1 << r;
+                } else if ((givenO[r] & (1 << c)) != 0) {
+                    colO[c] |= 1 << r;
+                }
+            }
+        }
+    }
+
+    public GameLogic.CellState get(int row, int col) {
+        int bit = 1 << col;
+        if ((rowX[row] & bit) != 0) {
+            return GameLogic.CellState.X;
+        }
+        if ((rowO[row] & bit) != 0) {
+            return GameLogic.CellState.O;
+        }
+        return GameLogic.CellState.EMPTY;
+    }
+
+    // 把当前状态写回棋盘
+    public void copyTo(GameLogic.CellState[][] board) {
+        for (int r = 0; r < size; r++) {
+            for (int c = 0; c < size; c++) {
+                board[r][c] = get(r, c);
+            }
+        }
+    }
+
+    // 检查在空格(row, col)放置X（isX）或O是否违反规则
+    public boolean canPlace(int row, int col, boolean isX) {
+        int rowBit = 1 << col;
+        int colBit = 1 << row;
+        if (((rowX[row] | rowO[row]) & rowBit) != 0) {
+            return false;
+        }
+        int rowLine = (isX ? rowX[row] : rowO[row]) | rowBit;
+        int colLine = (isX ? colX[col] : colO[col]) | colBit;
+        if (hasLongRun(rowLine) || hasLongRun(colLine)) {
+            return false;
+        }
+        if (Integer.bitCount(rowLine) > half || Integer.bitCount(colLine) > half) {
+            return false;
+        }
+        if (!uniqueLines) {
+            return true;
+        }
+        // 放置后行/列被填满时，不能与其他已填满的行/列相同
+        if (((rowX[row] | rowO[row]) | rowBit) == full) {
+            int pattern = isX ? rowX[row] | rowBit : rowX[row];
+            for (int r = 0; r < size; r++) {
+                if (r != row && (rowX[r] | rowO[r]) == full && rowX[r] == pattern) {
+                    return false;
+                }
+            }
+        }
+        if (((colX[col] | colO[col]) | colBit) == full) {
+            int pattern = isX ? colX[col] | colBit : colX[col];
+            for (int c = 0; c < size; c++) {
+                if (c != col && (colX[c] | colO[c]) == full && colX[c] == pattern) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    // 是否有超过maxRun个连续的1（标准规则下即 line & line>>>1 & line>>>2）
+    private boolean hasLongRun(int line) {
+        int run = line;
+        for (int k = 1; k <= maxRun && run != 0; k++) {
+            run &= line >>> k;
+        }
+        return run != 0;
+    }
+
+    public void place(int row, int col, boolean isX) {
+        if (isX) {
+            rowX[row] |= 1 << col;
+            colX[col] |= 1 << row;
+        } else {
+            rowO[row] |= 1 << col;
+            colO[col] |= 1 << row;
+        }
+    }
+
+    // 检查当前状态本身是否符合规则（连续不超长、数量不超过上限、已填满的行/列互不相同）
+    // 载入的给定格子不经过canPlace，求解前需要先检查
+    public boolean isConsistent() {
+        for (int i = 0; i < size; i++) {
+            if (hasLongRun(rowX[i]) || hasLongRun(rowO[i]) || hasLongRun(colX[i]) || hasLongRun(colO[i])) {
+                return false;
+            }
+            if (Integer.bitCount(rowX[i]) > half || Integer.bitCount(rowO[i]) > half
+                    || Integer.bitCount(colX[i]) > half || Integer.bitCount(colO[i]) > half) {
+                return false;
+            }
+            for (int j = 0; j < i && uniqueLines; j++) {
+                if ((rowX[i] | rowO[i]) == full && (rowX[j] | rowO[j]) == full && rowX[i] == rowX[j]) {
+                    return false;
+                }
+                if ((colX[i] | colO[i]) == full && (colX[j] | colO[j]) == full && colX[i] == colX[j]) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    // 约束传播：反复找出只有一种选择的空格并填入，直到不再变化
+    // 返回false表示出现了两种都不能放的空格（矛盾）
+    public boolean propagate() {
+        return propagate(0);
+    }
+
+    private boolean propagate(int depth) {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int r = 0; r < size; r++) {
+                int empty = full & ~(rowX[r] | rowO[r]);
+                while (empty != 0) {
+                    int c = Integer.numberOfTrailingZeros(empty);
+                    empty &= empty - 1;
+                    boolean canX = canPlace(r, c, true);
+                    boolean canO = canPlace(r, c, false);
+                    if (!canX && !canO) {
+                        return false;
+                    }
+                    if (canX != canO) {
+                        place(r, c, canX);
+                        stats.propagation();
+                        if (listener != null) {
+                            listener.onPropagation(depth, r, c, canX ? GameLogic.CellState.X : GameLogic.CellState.O);
+                        }
+                        changed = true;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    // 从当前状态出发统计解的数量，最多数到limit
+    // 数满limit个解时，最后找到的解保留在当前状态中
+    public int countSolutions(int limit) {
+        nodes = 0;
+        aborted = false;
+        stats.begin();
+        int count = isConsistent() ? search(0, limit) : 0;
+        if (aborted) {
+            stats.timeout();
+            if (listener != null) {
+                listener.onTimeout(nodes);
+            }
+        }
+        stats.end();
+        return count;
+    }
+
+    // 同countSolutions(limit)，另外把找到的第一个解写入firstSolution（没有解时不修改），
+    // 这样一次搜索既能确认唯一性，又能拿到解
+    public int countSolutions(int limit, GameLogic.CellState[][] firstSolution) {
+        this.firstSolution = firstSolution;
+        try {
+            return countSolutions(limit);
+        } finally {
+            this.firstSolution = null;
+        }
+    }
+
+    private int search(int depth, int limit) {
+        if (++nodes > nodeBudget || cancelled) {
+            cancelled = false;
+            aborted = true;
+            return 0;
+        }
+        stats.node(depth);
+        if (!propagate(depth)) {
+            return 0;
+        }
+
+        // 选择空格最少的行中的第一个空格分支
+        int bestRow = -1;
+        int bestEmpty = Integer.MAX_VALUE;
+        for (int r = 0; r < size; r++) {
+            int empty = Integer.bitCount(full & ~(rowX[r] | rowO[r]));
+            if (empty > 0 && empty < bestEmpty) {
+                bestEmpty = empty;
+                bestRow = r;
+            }
+        }
+        if (bestRow < 0) {
+            if (firstSolution != null) {
+                copyTo(firstSolution);
+                firstSolution = null;
+            }
+            if (listener != null) {
+                listener.onSolution(depth);
+            }
+            return 1;
+        }
+        int col = Integer.numberOfTrailingZeros(full & ~(rowX[bestRow] | rowO[bestRow]));
+
+        int[] saved = stack[depth];
+        save(saved);
+        int count = 0;
+        for (int attempt = 0; attempt < 2 && count < limit && !aborted; attempt++) {
+            boolean isX = attempt == 0;
+            if (canPlace(bestRow, col, isX)) {
+                place(bestRow, col, isX);
+                if (listener != null) {
+                    listener.onDecision(depth, bestRow, col, isX ? GameLogic.CellState.X : GameLogic.CellState.O);
+                }
+                int found = search(depth + 1, limit - count);
+                count += found;
+                if (count >= limit) {
+                    // 保留找到的解
+                    return count;
+                }
+                restore(saved);
+                stats.backtrack();
+                if (listener != null) {
+                    listener.onBacktrack(depth, bestRow, col);
+                }
+            }
+        }
+        return count;
+    }
+
+    private void save(int[] snapshot) {
+        System.arraycopy(rowX, 0, snapshot, 0, size);
+        System.arraycopy(rowO, 0, snapshot, size, size);
+        System.arraycopy(colX, 0, snapshot, 2 * size, size);
+        System.arraycopy(colO, 0, snapshot, 3 * size, size);
+    }
+
+    private void restore(int[] snapshot) {
+        System.arraycopy(snapshot, 0, rowX, 0, size);
+        System.arraycopy(snapshot, size, rowO, 0, size);
+        System.arraycopy(snapshot, 2 * size, colX, 0, size);
+        System.arraycopy(snapshot, 3 * size, colO, 0, size);
+    }
+}
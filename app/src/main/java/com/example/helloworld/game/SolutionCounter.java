@@ -0,0 +1,251 @@
+package com.example.helloworld.game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// 小棋盘（边长不超过8）的精确解计数，用于评估唯一性和难度，以及作为测试中的对照
+//
+// 按行动态规划：每一步放入一整条合法行。状态为(已用行集合, 上一行, 上两行同为X/同为O的列)：
+//   - 上两行决定下一行哪些列不能再放同一符号（不能三连），只需记录这两行相同的列；
+//   - 已用行集合保证行互不相同，同时也决定了各列的X数量，以及哪些列到目前为止完全相同
+//     （两列是否相同与行的顺序无关），所以不需要单独记录列计数和列的等价划分。
+// 8x8的合法行只有34种，集合用一个long表示，整个状态合起来仍是一个long，
+// 每层的状态放在以long为键的开放寻址表中，不装箱。
+// 给定格子把每一行的候选限制为与之相符的合法行，线索越多状态越少。
+public class SolutionCounter {
+    public static final int MAX_SIZE = 8;
+
+    // 状态编码：低40位为已用行集合，之后6位为上一行的序号+1（0表示没有），
+    // 再之后各8位为上两行同为X、同为O的列
+    private static final int PREV_SHIFT = 40;
+    private static final int PAIR_X_SHIFT = 46;
+    private static final int PAIR_O_SHIFT = 54;
+    private static final long USED_MASK = (1L << PREV_SHIFT) - 1;
+
+    private final int size;
+    private final int half;
+    private final int full;
+    // 每条合法行的X位掩码（第c列为X时第c位为1）
+    private final int[] rows;
+    // 每条合法行按列展开成4位一组的计数，相加即得各列X的数量
+    private final int[] spread;
+
+    public SolutionCounter(int size) {
+        if (size <= 0 || size > MAX_SIZE || size % 2 != 0) {
+            throw new IllegalArgumentException("Exact counting supports even sizes up to " + MAX_SIZE);
+        }
+        this.size = size;
+        this.half = size / 2;
+        this.full = (1 << size) - 1;
+
+        List<Integer> valid = new ArrayList<>();
+        for (int bits = 0; bits <= full; bits++) {
+            int o = full & ~bits;
+            if (Integer.bitCount(bits) == half && !hasTriple(bits) && !hasTriple(o)) {
+                valid.add(bits);
+            }
+        }
+        rows = new int[valid.size()];
+        spread = new int[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = valid.get(i);
+            for (int c = 0; c < size; c++) {
+                spread[i] |= ((rows[i] >>> c) & 1) << (4 * c);
+            }
+        }
+    }
+
+    private static boolean hasTriple(int line) {
+        return (line & (line >>> 1) & (line >>> 2)) != 0;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    // 棋盘（可含空格）的解的数量；给定格子本身违反规则时为0
+    public long count(GameLogic.CellState[][] board) {
+        // 每一行与给定格子相符的候选行
+        int[][] candidates = new int[size][];
+        for (int r = 0; r < size; r++) {
+            int givenX = 0;
+            int givenO = 0;
+            for (int c = 0; c < size; c++) {
+                if (board[r][c] == GameLogic.CellState.X) {
+                    givenX |= 1 << c;
+                } else if (board[r][c] == GameLogic.CellState.O) {
+                    givenO |= 1 << c;
+                }
+            }
+            int n = 0;
+            int[] matching = new int[rows.length];
+            for (int i = 0; i < rows.length; i++) {
+                if ((rows[i] & givenX) == givenX && (rows[i] & givenO) == 0) {
+                    matching[n++] = i;
+                }
+            }
+            if (n == 0) {
+                return 0;
+            }
+            candidates[r] = Arrays.copyOf(matching, n);
+        }
+
+        StateTable layer = new StateTable(16);
+        layer.add(0L, 1L);
+        for (int r = 0; r < size; r++) {
+            StateTable next = new StateTable(layer.size() * 4);
+            for (int slot = 0; slot < layer.capacity(); slot++) {
+                long ways = layer.valueAt(slot);
+                if (ways == 0) {
+                    continue;
+                }
+                long state = layer.keyAt(slot);
+                long used = state & USED_MASK;
+                int prev = (int) ((state >>> PREV_SHIFT) & 0x3F) - 1;
+                int pairX = (int) ((state >>> PAIR_X_SHIFT) & 0xFF);
+                int pairO = (int) ((state >>> PAIR_O_SHIFT) & 0xFF);
+
+                // 已满一半X或一半O的列
+                int counts = 0;
+                for (long bits = used; bits != 0; bits &= bits - 1) {
+                    counts += spread[Long.numberOfTrailingZeros(bits)];
+                }
+                int noMoreX = 0;
+                int noMoreO = 0;
+                for (int c = 0; c < size; c++) {
+                    int xCount = (counts >>> (4 * c)) & 0xF;
+                    if (xCount == half) {
+                        noMoreX |= 1 << c;
+                    }
+                    if (r - xCount == half) {
+                        noMoreO |= 1 << c;
+                    }
+                }
+
+                for (int i : candidates[r]) {
+                    if ((used & (1L << i)) != 0) {
+                        continue;
+                    }
+                    int x = rows[i];
+                    int o = full & ~x;
+                    if ((x & (pairX | noMoreX)) != 0 || (o & (pairO | noMoreO)) != 0) {
+                        continue;
+                    }
+                    int nextPairX = prev >= 0 ? x & rows[prev] : 0;
+                    int nextPairO = prev >= 0 ? o & ~rows[prev] : 0;
+                    next.add(key(used | (1L << i), i, nextPairX, nextPairO), ways);
+                }
+            }
+            if (next.size() == 0) {
+                return 0;
+            }
+            layer = next;
+        }
+
+        // 所有行已放完，列数量必然平衡，只剩列互不相同需要检查
+        long total = 0;
+        long[] columns = new long[size];
+        for (int slot = 0; slot < layer.capacity(); slot++) {
+            long ways = layer.valueAt(slot);
+            if (ways != 0 && columnsDistinct(layer.keyAt(slot) & USED_MASK, columns)) {
+                total += ways;
+            }
+        }
+        return total;
+    }
+
+    // 是否恰有一个解
+    public boolean isUnique(GameLogic.CellState[][] board) {
+        return count(board) == 1;
+    }
+
+    // 第c列表示为“在第c位为X的已用行”的集合，两列相同当且仅当集合相同
+    private boolean columnsDistinct(long used, long[] columns) {
+        for (int c = 0; c < size; c++) {
+            long column = 0;
+            for (long bits = used; bits != 0; bits &= bits - 1) {
+                int i = Long.numberOfTrailingZeros(bits);
+                if ((rows[i] & (1 << c)) != 0) {
+                    column |= 1L << i;
+                }
+            }
+            for (int d = 0; d < c; d++) {
+                if (columns[d] == column) {
+                    return false;
+                }
+            }
+            columns[c] = column;
+        }
+        return true;
+    }
+
+    private static long key(long used, int prev, int pairX, int pairO) {
+        return used | ((long) (prev + 1) << PREV_SHIFT)
+                | ((long) pairX << PAIR_X_SHIFT) | ((long) pairO << PAIR_O_SHIFT);
+    }
+
+    // long到long的开放寻址哈希表（线性探测），值为0的槽视为空；只增不删
+    private static class StateTable {
+        private long[] keys;
+        private long[] values;
+        private int size;
+
+        StateTable(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(16, expected) * 2 - 1);
+            keys = new long[capacity];
+            values = new long[capacity];
+        }
+
+        int size() {
+            return size;
+        }
+
+        int capacity() {
+            return keys.length;
+        }
+
+        long keyAt(int slot) {
+            return keys[slot];
+        }
+
+        long valueAt(int slot) {
+            return values[slot];
+        }
+
+        void add(long key, long value) {
+            int mask = keys.length - 1;
+            int slot = mix(key) & mask;
+            while (values[slot] != 0 && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            if (values[slot] == 0) {
+                keys[slot] = key;
+                if (++size * 2 > keys.length) {
+                    values[slot] = value;
+                    grow();
+                    return;
+                }
+            }
+            values[slot] += value;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            long[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new long[oldValues.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] != 0) {
+                    add(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+        private static int mix(long key) {
+            key *= 0x9E3779B97F4A7C15L;
+            return (int) (key ^ (key >>> 32));
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.helloworld.game;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+// 在工作线程上解题，把填入的格子按顺序作为步骤流式交给调用方（例如由界面逐步回放）
+//
+// 步骤的顺序就是推理的顺序：先填当前局面下可以直接推出的格子，推不下去时
+// 从解中取一个格子填入（deduced为false），然后继续推理。
+// 步骤放在容量固定的队列中，队列满时工作线程等待消费，因此无论棋盘多大内存都有上限。
+// cancel()可以随时停止工作线程。
+public class SolveStream {
+    public static final int RUNNING = 0;
+    public static final int COMPLETED = 1;
+    public static final int FAILED = 2;
+    public static final int CANCELLED = 3;
+
+    public static class Step {
+        public final int row;
+        public final int col;
+        public final GameLogic.CellState state;
+        // true表示由规则直接推出，false表示取自解（推理无法继续时）
+        public final boolean deduced;
+
+        Step(int row, int col, GameLogic.CellState state, boolean deduced) {
+            this.row = row;
+            this.col = col;
+            this.state = state;
+            this.deduced = deduced;
+        }
+    }
+
+    private final GameLogic.CellState[][] board;
+    private final BlockingQueue<Step> steps;
+    private final PuzzleSolver solver;
+    private volatile int status = RUNNING;
+    private Thread worker;
+
+    // board为开始时的棋盘快照（调用方之后不能再修改），capacity为缓冲的最大步骤数
+    public SolveStream(GameLogic.CellState[][] board, int capacity) {
+        this.board = board;
+        this.steps = new ArrayBlockingQueue<>(capacity);
+        this.solver = new PuzzleSolver(board.length);
+    }
+
+    public synchronized void start() {
+        if (worker != null) {
+            return;
+        }
+        worker = new Thread(this::run, "solve-stream");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    // 取出下一步，暂时没有或已取消时返回null（不阻塞）
+    public Step poll() {
+        return status == CANCELLED ? null : steps.poll();
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    // 已取消，或工作线程已结束且所有步骤都已取出
+    public boolean isDrained() {
+        return status == CANCELLED || (status != RUNNING && steps.isEmpty());
+    }
+
+    public synchronized void cancel() {
+        if (status == RUNNING) {
+            status = CANCELLED;
+        }
+        solver.cancel();
+        if (worker != null) {
+            worker.interrupt();
+        }
+        steps.clear();
+    }
+
+    private void run() {
+        try {
+            int result = solve();
+            synchronized (this) {
+                if (status == RUNNING) {
+                    status = result;
+                }
+            }
+        } catch (InterruptedException e) {
+            // cancel()已经设置了状态
+        }
+    }
+
+    private int solve() throws InterruptedException {
+        int size = board.length;
+        solver.load(board);
+        if (solver.countSolutions(1) == 0) {
+            return solver.isAborted() ? CANCELLED : FAILED;
+        }
+        GameLogic.CellState[][] solution = new GameLogic.CellState[size][size];
+        solver.copyTo(solution);
+
+        solver.resetToGivens();
+        int remaining = 0;
+        for (int r = 0; r < size; r++) {
+            for (int c = 0; c < size; c++) {
+                if (board[r][c] == GameLogic.CellState.EMPTY) {
+                    remaining++;
+                }
+            }
+        }
+
+        while (remaining > 0) {
+            if (status != RUNNING) {
+                return status;
+            }
+            // 一轮推理：逐个空格检查是否只有一种选择
+            boolean changed = false;
+            for (int r = 0; r < size; r++) {
+                for (int c = 0; c < size; c++) {
+                    if (solver.get(r, c) != GameLogic.CellState.EMPTY) {
+                        continue;
+                    }
+                    boolean canX = solver.canPlace(r, c, true);
+                    boolean canO = solver.canPlace(r, c, false);
+                    if (canX != canO) {
+                        emit(r, c, canX, true);
+                        remaining--;
+                        changed = true;
+                    }
+                }
+            }
+            if (changed) {
+                continue;
+            }
+            // 推不下去时从解中取一个空格
+            for (int r = 0; r < size && !changed; r++) {
+                for (int c = 0; c < size && !changed; c++) {
+                    if (solver.get(r, c) == GameLogic.CellState.EMPTY) {
+                        emit(r, c, solution[r][c] == GameLogic.CellState.X, false);
+                        remaining--;
+                        changed = true;
+                    }
+                }
+            }
+        }
+        return COMPLETED;
+    }
+
+    private void emit(int row, int col, boolean isX, boolean deduced) throws InterruptedException {
+        solver.place(row, col, isX);
+        steps.put(new Step(row, col, isX ? GameLogic.CellState.X : GameLogic.CellState.O, deduced));
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.helloworld.game;
+
+// 求解/生成过程的观察接口，用于在现场统计或跟踪求解器的开销
+//
+// 回调在求解线程上同步调用，应当尽量轻量；没有设置监听器时求解器只做空指针判断，
+// 不分配对象。depth为当前搜索深度（根为0）。
+// GameLogic生成终盘时一次决策是放入一整行，col为-1、state为null。
+public interface SolverListener {
+    // 搜索分支：在(row, col)尝试state
+    void onDecision(int depth, int row, int col, GameLogic.CellState state);
+
+    // 约束传播推出(row, col)只能是state
+    void onPropagation(int depth, int row, int col, GameLogic.CellState state);
+
+    // 撤销在(row, col)的决策
+    void onBacktrack(int depth, int row, int col);
+
+    // 找到一个解
+    void onSolution(int depth);
+
+    // 超出节点上限或被取消，nodes为已搜索的节点数
+    void onTimeout(long nodes);
+}
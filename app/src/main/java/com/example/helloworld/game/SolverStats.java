@@ -0,0 +1,97 @@
+package com.example.helloworld.game;
+
+// 一次求解/生成调用的汇总计数，求解器在每次调用开始时重置后累加
+// 计数只是几个基本类型字段的自增，可以在正式版本中一直开启
+public class SolverStats {
+    private long nodes;
+    private long backtracks;
+    private long propagations;
+    private int maxDepth;
+    private long wallNanos;
+    private boolean timedOut;
+    private long startNanos;
+
+    void begin() {
+        nodes = 0;
+        backtracks = 0;
+        propagations = 0;
+        maxDepth = 0;
+        wallNanos = 0;
+        timedOut = false;
+        startNanos = System.nanoTime();
+    }
+
+    void end() {
+        wallNanos = System.nanoTime() - startNanos;
+    }
+
+    void node(int depth) {
+        nodes++;
+        if (depth > maxDepth) {
+            maxDepth = depth;
+        }
+    }
+
+    void backtrack() {
+        backtracks++;
+    }
+
+    void propagation() {
+        propagations++;
+    }
+
+    void timeout() {
+        timedOut = true;
+    }
+
+    // 把另一次调用的计数并入（用时除外）
+    void merge(SolverStats other) {
+        nodes += other.nodes;
+        backtracks += other.backtracks;
+        propagations += other.propagations;
+        maxDepth = Math.max(maxDepth, other.maxDepth);
+        timedOut |= other.timedOut;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getBacktracks() {
+        return backtracks;
+    }
+
+    public long getPropagations() {
+        return propagations;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public long getWallNanos() {
+        return wallNanos;
+    }
+
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    // 复制一份（调用方需要保留某次调用的结果时使用）
+    public SolverStats snapshot() {
+        SolverStats copy = new SolverStats();
+        copy.nodes = nodes;
+        copy.backtracks = backtracks;
+        copy.propagations = propagations;
+        copy.maxDepth = maxDepth;
+        copy.wallNanos = wallNanos;
+        copy.timedOut = timedOut;
+        return copy;
+    }
+
+    @Override
+    public String toString() {
+        return "nodes=" + nodes + " backtracks=" + backtracks + " propagations=" + propagations
+                + " maxDepth=" + maxDepth + " wall=" + wallNanos / 1000 + "us" + (timedOut ? " (timed out)" : "");
+    }
+}
@@ -0,0 +1,229 @@
+package com.example.helloworld.tools;
+
+import com.example.helloworld.game.GameLogic;
+import com.example.helloworld.game.PuzzleCodec;
+import com.example.helloworld.game.PuzzleDedupeIndex;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 多线程批量生成谜题的命令行工具，在构建机上预生成大量谜题
+//
+// 用法：BulkPuzzleGenerator --out <文件> [--sizes 6,8,10] [--difficulty HARD] [--count N]
+//                           [--seed-start S] [--seed-end E] [--threads T] [--max-attempts A]
+//
+// 每个大小从[seed-start, seed-end)中依次领取种子，生成够count个为止；
+// 种子用完或尝试次数达到max-attempts（默认count的20倍，小棋盘的不同谜题本来就有限）时提前结束。
+// 输出文件是PuzzleCodec记录（含解和种子）的简单拼接，每条记录自带大小，可以顺序读取。
+// 对称等价的重复谜题被拒绝，不写入文件，计入拒绝率。
+public class BulkPuzzleGenerator {
+    public static void main(String[] args) throws Exception {
+        String out = null;
+        String sizes = "6,8,10";
+        GameLogic.Difficulty difficulty = GameLogic.Difficulty.HARD;
+        int count = 1000;
+        long seedStart = 1;
+        long seedEnd = Long.MAX_VALUE;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long maxAttempts = -1;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--out": out = args[++i]; break;
+                case "--sizes": sizes = args[++i]; break;
+                case "--difficulty": difficulty = GameLogic.Difficulty.valueOf(args[++i]); break;
+                case "--count": count = Integer.parseInt(args[++i]); break;
+                case "--seed-start": seedStart = Long.parseLong(args[++i]); break;
+                case "--seed-end": seedEnd = Long.parseLong(args[++i]); break;
+                case "--threads": threads = Integer.parseInt(args[++i]); break;
+                case "--max-attempts": maxAttempts = Long.parseLong(args[++i]); break;
+                default:
+                    System.err.println("unknown argument " + args[i]);
+                    System.exit(2);
+            }
+        }
+        if (out == null) {
+            System.err.println("usage: BulkPuzzleGenerator --out <file> [--sizes 6,8,10] [--difficulty EASY|HARD]"
+                    + " [--count N] [--seed-start S] [--seed-end E] [--threads T] [--max-attempts A]");
+            System.exit(2);
+        }
+
+        if (maxAttempts < 0) {
+            maxAttempts = 20L * count;
+        }
+        long seedLimit;
+        try {
+            seedLimit = Math.min(seedEnd, Math.addExact(seedStart, maxAttempts));
+        } catch (ArithmeticException e) {
+            // seed-start + max-attempts超出long的范围，只受seed-end限制
+            seedLimit = seedEnd;
+        }
+
+        try (OutputStream output = new BufferedOutputStream(new FileOutputStream(out), 1 << 16)) {
+            for (String s : sizes.split(",")) {
+                int size = Integer.parseInt(s.trim());
+                Run run = new Run(size, difficulty, count, seedStart, seedLimit, output);
+                run.execute(threads);
+                run.report();
+            }
+        }
+    }
+
+    // 一个棋盘大小的生成任务
+    private static class Run {
+        private final int size;
+        private final GameLogic.Difficulty difficulty;
+        private final int target;
+        private final long seedEnd;
+        private final OutputStream output;
+        private final AtomicLong nextSeed;
+        private final AtomicInteger accepted = new AtomicInteger();
+        private final AtomicInteger rejected = new AtomicInteger();
+        private final PuzzleDedupeIndex index = new PuzzleDedupeIndex();
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private long wallNanos;
+
+        Run(int size, GameLogic.Difficulty difficulty, int target, long seedStart, long seedEnd,
+            OutputStream output) {
+            this.size = size;
+            this.difficulty = difficulty;
+            this.target = target;
+            this.seedEnd = seedEnd;
+            this.output = output;
+            this.nextSeed = new AtomicLong(seedStart);
+        }
+
+        void execute(int threads) throws InterruptedException {
+            List<Thread> workers = new ArrayList<>();
+            List<LatencyHistogram> histograms = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int t = 0; t < threads; t++) {
+                LatencyHistogram histogram = new LatencyHistogram();
+                histograms.add(histogram);
+                Thread worker = new Thread(() -> work(histogram), "generator-" + size + "-" + t);
+                workers.add(worker);
+                worker.start();
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            wallNanos = System.nanoTime() - start;
+            for (LatencyHistogram histogram : histograms) {
+                latency.merge(histogram);
+            }
+        }
+
+        // 每个线程独占一个GameLogic、编码器和缓冲区，只有去重索引和输出是共享的
+        private void work(LatencyHistogram histogram) {
+            GameLogic gameLogic = new GameLogic(size);
+            PuzzleCodec codec = new PuzzleCodec();
+            int flags = PuzzleCodec.FLAG_SOLUTION | PuzzleCodec.FLAG_SEED;
+            byte[] record = new byte[PuzzleCodec.encodedLength(size, flags)];
+
+            while (accepted.get() < target) {
+                long seed = nextSeed.getAndIncrement();
+                if (seed >= seedEnd) {
+                    return;
+                }
+                long start = System.nanoTime();
+                gameLogic.generateNewGame(difficulty, seed);
+                histogram.record(System.nanoTime() - start);
+
+                GameLogic.CellState[][] puzzle = gameLogic.getBoard();
+                if (!index.add(puzzle)) {
+                    rejected.incrementAndGet();
+                    continue;
+                }
+                if (accepted.incrementAndGet() > target) {
+                    return;
+                }
+                codec.encode(puzzle, gameLogic.getSolution(), true, seed, record, 0);
+                try {
+                    synchronized (output) {
+                        output.write(record);
+                    }
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+
+        void report() {
+            int written = Math.min(accepted.get(), target);
+            int attempts = (int) latency.count();
+            double seconds = wallNanos / 1e9;
+            System.out.printf("%dx%d %s: %d puzzles in %.2fs, %.1f puzzles/s, p50 %.2fms, p99 %.2fms,"
+                            + " max %.2fms, rejected %d/%d (%.2f%%)%n",
+                    size, size, difficulty, written, seconds, written / seconds,
+                    latency.percentile(0.50) / 1e6, latency.percentile(0.99) / 1e6, latency.max() / 1e6,
+                    rejected.get(), attempts, attempts == 0 ? 0.0 : 100.0 * rejected.get() / attempts);
+        }
+    }
+
+    // 对数分桶的延迟直方图：内存固定，百分位误差在1/16以内
+    static class LatencyHistogram {
+        private static final int SUB_BUCKETS = 16;
+        private final long[] buckets = new long[64 * SUB_BUCKETS];
+        private long count;
+        private long max;
+
+        void record(long nanos) {
+            buckets[bucketOf(Math.max(1, nanos))]++;
+            count++;
+            max = Math.max(max, nanos);
+        }
+
+        void merge(LatencyHistogram other) {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] += other.buckets[i];
+            }
+            count += other.count;
+            max = Math.max(max, other.max);
+        }
+
+        long count() {
+            return count;
+        }
+
+        long max() {
+            return max;
+        }
+
+        // 返回桶的上界作为百分位估计
+        long percentile(double p) {
+            long rank = (long) Math.ceil(p * count);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank && seen > 0) {
+                    return Math.min(max, upperBound(i));
+                }
+            }
+            return max;
+        }
+
+        private static int bucketOf(long value) {
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            if (exponent < 4) {
+                return (int) value;
+            }
+            int mantissa = (int) ((value >>> (exponent - 4)) & (SUB_BUCKETS - 1));
+            return (exponent - 3) * SUB_BUCKETS + mantissa;
+        }
+
+        private static long upperBound(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int exponent = bucket / SUB_BUCKETS + 3;
+            long mantissa = bucket % SUB_BUCKETS;
+            return ((SUB_BUCKETS + mantissa + 1) << (exponent - 4)) - 1;
+        }
+    }
+}
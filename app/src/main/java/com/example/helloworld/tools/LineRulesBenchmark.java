@@ -0,0 +1,142 @@
+package com.example.helloworld.tools;
+
+import com.example.helloworld.game.GameLogic;
+import com.example.helloworld.game.LineRules;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+// 对比逐格循环与LineRules查表两种行规则检查的速度
+//
+// 用法：LineRulesBenchmark [size] [boards] [rounds]
+//
+// 随机生成一批完整棋盘（不一定合法，以免两种实现都在第一行就提前返回），
+// 分别用原来的循环写法和查表写法检查每一行的连续、数量和唯一性，两者结果必须一致。
+public class LineRulesBenchmark {
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int boardCount = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        Random random = new Random(42);
+        LineRules rules = LineRules.STANDARD;
+        GameLogic.CellState[][][] boards = new GameLogic.CellState[boardCount][size][size];
+        int[][] codes = new int[boardCount][size];
+        for (int b = 0; b < boardCount; b++) {
+            for (int r = 0; r < size; r++) {
+                for (int c = 0; c < size; c++) {
+                    GameLogic.CellState state = random.nextBoolean() ? GameLogic.CellState.X : GameLogic.CellState.O;
+                    boards[b][r][c] = state;
+                    codes[b][r] |= state.ordinal() << (2 * c);
+                }
+            }
+        }
+
+        // 预热并确认两种实现结果一致
+        int loopValid = runLoops(boards, size);
+        int tableValid = runTable(codes, size, rules);
+        if (loopValid != tableValid) {
+            throw new IllegalStateException("loop " + loopValid + " != table " + tableValid);
+        }
+
+        long loopNanos = Long.MAX_VALUE;
+        long tableNanos = Long.MAX_VALUE;
+        int sink = 0;
+        for (int round = 0; round < rounds; round++) {
+            long start = System.nanoTime();
+            sink += runLoops(boards, size);
+            loopNanos = Math.min(loopNanos, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            sink += runTable(codes, size, rules);
+            tableNanos = Math.min(tableNanos, System.nanoTime() - start);
+        }
+
+        long lines = (long) boardCount * size;
+        System.out.printf("%dx%d, %d boards (%d valid): loops %.1f ns/line, table %.1f ns/line, %.1fx (%d)%n",
+                size, size, boardCount, tableValid, (double) loopNanos / lines, (double) tableNanos / lines,
+                (double) loopNanos / tableNanos, sink);
+    }
+
+    // 查表写法：每行的连续和数量检查，加上行编码两两比较
+    private static int runTable(int[][] codes, int size, LineRules rules) {
+        int valid = 0;
+        for (int[] rows : codes) {
+            boolean ok = true;
+            for (int r = 0; r < size && ok; r++) {
+                ok = rules.isValidComplete(rows[r], size);
+            }
+            for (int i = 1; i < size && ok; i++) {
+                for (int j = 0; j < i && ok; j++) {
+                    ok = rows[i] != rows[j];
+                }
+            }
+            if (ok) {
+                valid++;
+            }
+        }
+        return valid;
+    }
+
+    // 原来GameLogic中的循环写法
+    private static int runLoops(GameLogic.CellState[][][] boards, int size) {
+        int valid = 0;
+        for (GameLogic.CellState[][] board : boards) {
+            boolean ok = true;
+            for (int r = 0; r < size && ok; r++) {
+                ok = checkCompleteRow(board, r, size);
+            }
+            if (ok && checkRowsUnique(board, size)) {
+                valid++;
+            }
+        }
+        return valid;
+    }
+
+    private static boolean checkRow(GameLogic.CellState[][] board, int row, int size) {
+        int consecutiveCount = 1;
+        for (int i = 1; i < size; i++) {
+            if (board[row][i] != GameLogic.CellState.EMPTY && board[row][i] == board[row][i - 1]) {
+                consecutiveCount++;
+                if (consecutiveCount > 2) {
+                    return false;
+                }
+            } else {
+                consecutiveCount = 1;
+            }
+        }
+        return true;
+    }
+
+    private static boolean checkCompleteRow(GameLogic.CellState[][] board, int row, int size) {
+        int xCount = 0, oCount = 0;
+        for (int j = 0; j < size; j++) {
+            if (board[row][j] == GameLogic.CellState.X) {
+                xCount++;
+            } else if (board[row][j] == GameLogic.CellState.O) {
+                oCount++;
+            }
+        }
+        if (xCount != oCount) {
+            return false;
+        }
+        return checkRow(board, row, size);
+    }
+
+    private static boolean checkRowsUnique(GameLogic.CellState[][] board, int size) {
+        Set<String> rowPatterns = new HashSet<>();
+        for (int i = 0; i < size; i++) {
+            StringBuilder rowStr = new StringBuilder();
+            for (int j = 0; j < size; j++) {
+                rowStr.append(board[i][j].ordinal());
+            }
+            String pattern = rowStr.toString();
+            if (rowPatterns.contains(pattern)) {
+                return false;
+            }
+            rowPatterns.add(pattern);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,304 @@
+package com.example.helloworld.tools;
+
+import com.example.helloworld.bluetooth.FrameCodec;
+import com.example.helloworld.bluetooth.FrameLink;
+import com.example.helloworld.bluetooth.LinkMonitor;
+import com.example.helloworld.bluetooth.OutboundWriter;
+import com.example.helloworld.bluetooth.PipeTransport;
+import com.example.helloworld.bluetooth.Session;
+import com.example.helloworld.bluetooth.TcpTransport;
+import com.example.helloworld.bluetooth.Transport;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+// 在电脑上压测蓝牙对战用的帧协议（FrameLink + Session），不需要手机和蓝牙
+//
+// 用法：LinkSoak [pipe|tcp] [frames] [drops]
+//
+// 一端监听、一端连接，双方同时尽快互发frames个与落子同样大小的帧，其间强行断开drops次
+// （pipe用disconnectAll，tcp关闭连接）。连接方断开后立即重连，靠会话恢复补发丢失的帧。
+// 和应用一样，session.send返回false的帧直接丢掉（不重试），稍等后发下一帧；
+// 每一端检查收到的正是对方发送成功的那些帧，按顺序、不重不漏，
+// 最后输出吞吐量、被拒绝的帧数、帧从发出到被对方处理的延迟和心跳RTT。
+public class LinkSoak {
+    // 与落子帧的负载一样长：[帧号:8][发出时刻:8]，其余补零
+    private static final int PAYLOAD_LENGTH = 19;
+    private static final long PING_INTERVAL_MS = 100;
+    private static final long LINK_TIMEOUT_MS = 5000;
+    private static final long DEADLINE_MS = 120000;
+
+    public static void main(String[] args) throws Exception {
+        String kind = args.length > 0 ? args[0] : "pipe";
+        int frames = args.length > 1 ? Integer.parseInt(args[1]) : 200000;
+        int drops = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        Transport transport;
+        if (kind.equals("pipe")) {
+            transport = new PipeTransport();
+        } else if (kind.equals("tcp")) {
+            transport = new TcpTransport(0);
+        } else {
+            throw new IllegalArgumentException("unknown transport " + kind);
+        }
+
+        Transport.Acceptor acceptor = transport.listen();
+        String address = kind.equals("tcp") ? "127.0.0.1:" + ((TcpTransport) transport).getLocalPort() : "pipe";
+        Endpoint server = new Endpoint("server", frames);
+        Endpoint client = new Endpoint("client", frames);
+
+        server.peer = client;
+        client.peer = server;
+        long start = System.nanoTime();
+        server.startLinks(() -> acceptor.accept());
+        client.startLinks(() -> {
+            Transport.Link link = transport.createLink(address);
+            link.connect();
+            return link;
+        });
+        server.startSending();
+        client.startSending();
+
+        // 在传输进度的等分点上断开，等双方重新握手后再进行下一次
+        long deadline = System.currentTimeMillis() + DEADLINE_MS;
+        for (int drop = 1; drop <= drops; drop++) {
+            long target = (long) frames * drop / (drops + 1);
+            while (Math.min(server.delivered(), client.delivered()) < target) {
+                checkProgress(server, client, deadline);
+                Thread.sleep(1);
+            }
+            int handshakes = client.handshakes();
+            if (transport instanceof PipeTransport) {
+                ((PipeTransport) transport).disconnectAll();
+            } else {
+                client.dropLink();
+            }
+            while (client.handshakes() == handshakes) {
+                checkProgress(server, client, deadline);
+                Thread.sleep(1);
+            }
+        }
+        while (!server.isComplete() || !client.isComplete()) {
+            checkProgress(server, client, deadline);
+            Thread.sleep(1);
+        }
+        long elapsed = System.nanoTime() - start;
+
+        LinkMonitor.Metrics rtt = client.getLinkMetrics();
+        OutboundWriter.Metrics send = client.getSendMetrics();
+        // 先关闭监听，服务端的连接线程才能从accept()返回
+        acceptor.close();
+        server.stop();
+        client.stop();
+
+        long accepted = server.accepted + client.accepted;
+        System.out.printf("%s: %d frames each way, %d drops, %d resumed, %.0f ms, %.0f frames/s, %d rejected%n",
+                kind, frames, drops, client.resumes, elapsed / 1e6, accepted * 1e9 / elapsed, 2L * frames - accepted);
+        System.out.println("delivery latency: server " + server.latencySummary() + ", client " + client.latencySummary());
+        System.out.println("link: " + rtt);
+        System.out.println("send: " + send);
+        if (client.resumes != drops || server.resumes != drops) {
+            System.out.println("FAIL: expected every drop to resume the session");
+            System.exit(1);
+        }
+    }
+
+    private static void checkProgress(Endpoint server, Endpoint client, long deadline) {
+        String error = server.error != null ? server.error : client.error;
+        if (error == null && System.currentTimeMillis() > deadline) {
+            error = "timed out: server " + server.delivered() + ", client " + client.delivered();
+        }
+        if (error != null) {
+            System.out.println("FAIL: " + error);
+            System.exit(1);
+        }
+    }
+
+    private interface LinkSource {
+        Transport.Link next() throws IOException;
+    }
+
+    // 一端：一个会话，连接线程依次使用每个连接，发送线程不管连接状态一直发
+    private static class Endpoint implements FrameLink.Callback {
+        private final String name;
+        private final int frames;
+        private final Session session = new Session();
+        private Endpoint peer;
+        // 每个收到的帧从发出到被处理的纳秒数，按收到的顺序
+        private final long[] latencies;
+        // 收到的帧数和最后收到的帧号（帧号是发送方的序号，被拒绝的帧不会出现）
+        private volatile long received;
+        private volatile long lastSeq;
+        // send返回true的帧数
+        private volatile long accepted;
+        private volatile FrameLink current;
+        private volatile boolean stopped;
+        private volatile int handshakeCount;
+        private volatile String error;
+        private int resumes;
+        private Thread linkThread;
+        private Thread sendThread;
+
+        Endpoint(String name, int frames) {
+            this.name = name;
+            this.frames = frames;
+            latencies = new long[frames];
+        }
+
+        // 连接线程：一个连接结束后再取下一个，收到的帧只有一个生产者
+        void startLinks(LinkSource source) {
+            linkThread = new Thread(() -> {
+                while (!stopped) {
+                    Transport.Link link;
+                    try {
+                        link = source.next();
+                    } catch (IOException e) {
+                        sleepQuietly(10);
+                        continue;
+                    }
+                    FrameLink frameLink = new FrameLink(link, session, this, 256, OutboundWriter.OVERFLOW_DROP,
+                            PING_INTERVAL_MS, LINK_TIMEOUT_MS);
+                    current = frameLink;
+                    if (stopped) {
+                        frameLink.close();
+                    }
+                    frameLink.run();
+                }
+            }, name + "-link");
+            linkThread.start();
+        }
+
+        // 发送线程：和应用一样，send返回false（重放缓冲区或发送队列满）时这一帧就丢掉，稍等后发下一帧。
+        // 第一次握手开始一个新会话，之前发出的帧会被清掉，和界面一样等连上之后再发
+        void startSending() {
+            sendThread = new Thread(() -> {
+                while (handshakeCount == 0 && !stopped) {
+                    sleepQuietly(1);
+                }
+                for (long seq = 1; seq <= frames && !stopped; seq++) {
+                    byte[] payload = new byte[PAYLOAD_LENGTH];
+                    ByteBuffer.wrap(payload).putLong(seq).putLong(System.nanoTime());
+                    byte[] frame = FrameCodec.encode(FrameCodec.TYPE_MOVE, payload);
+                    if (session.send(frame)) {
+                        accepted++;
+                    } else {
+                        sleepQuietly(1);
+                    }
+                }
+            }, name + "-send");
+            sendThread.start();
+        }
+
+        void dropLink() {
+            FrameLink link = current;
+            if (link != null) {
+                try {
+                    link.getLink().close();
+                } catch (IOException e) {
+                    // 已经断开
+                }
+            }
+        }
+
+        void stop() throws InterruptedException {
+            stopped = true;
+            FrameLink link = current;
+            if (link != null) {
+                link.close();
+            }
+            sendThread.join();
+            linkThread.join();
+        }
+
+        // 对方的发送进度（按帧号），被拒绝的帧也算在内
+        long delivered() {
+            return lastSeq;
+        }
+
+        int handshakes() {
+            return handshakeCount;
+        }
+
+        // 收齐了对方发送成功的帧，自己发出的帧也都被确认
+        boolean isComplete() {
+            return !peer.sendThread.isAlive() && received == peer.accepted
+                    && session.unacknowledged() == 0 && !sendThread.isAlive();
+        }
+
+        LinkMonitor.Metrics getLinkMetrics() {
+            FrameLink link = current;
+            return link != null ? link.getLinkMetrics() : null;
+        }
+
+        OutboundWriter.Metrics getSendMetrics() {
+            FrameLink link = current;
+            return link != null ? link.getSendMetrics() : null;
+        }
+
+        String latencySummary() {
+            long[] sorted = Arrays.copyOf(latencies, (int) received);
+            Arrays.sort(sorted);
+            if (sorted.length == 0) {
+                return "-";
+            }
+            return String.format("p50 %.1f us, p99 %.1f us, max %.1f ms",
+                    sorted[sorted.length / 2] / 1e3, sorted[(int) (sorted.length * 0.99)] / 1e3,
+                    sorted[sorted.length - 1] / 1e6);
+        }
+
+        @Override
+        public void onHandshake(FrameLink link, boolean resumed) {
+            if (handshakeCount > 0 && !resumed) {
+                error = name + ": session not resumed after drop";
+            }
+            if (resumed) {
+                resumes++;
+            }
+            handshakeCount++;
+        }
+
+        @Override
+        public boolean onFrame(int type, byte[] buffer, int offset, int length) {
+            long now = System.nanoTime();
+            ByteBuffer payload = ByteBuffer.wrap(buffer, offset, length);
+            long seq = payload.getLong();
+            // 帧号严格递增：不重复、不乱序；收齐时的帧数等于对方发送成功的帧数，说明也没有遗漏
+            if (type != FrameCodec.TYPE_MOVE || length != PAYLOAD_LENGTH || seq <= lastSeq || seq > frames) {
+                error = name + ": expected a frame after " + lastSeq + ", got " + seq;
+                return false;
+            }
+            latencies[(int) received] = now - payload.getLong();
+            received++;
+            lastSeq = seq;
+            return true;
+        }
+
+        @Override
+        public void onLinkStats(LinkMonitor.Metrics metrics) {
+        }
+
+        @Override
+        public void onLinkDead(long silenceMillis) {
+            error = name + ": link dead after " + silenceMillis + "ms";
+        }
+
+        @Override
+        public void onWriteError(IOException e) {
+            // 断开时正在写的帧还在重放缓冲区里，恢复后补发
+        }
+
+        @Override
+        public void onClosed(FrameLink link, IOException cause) {
+            session.detach();
+        }
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
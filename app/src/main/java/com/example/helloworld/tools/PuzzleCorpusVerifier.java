@@ -0,0 +1,59 @@
+package com.example.helloworld.tools;
+
+import com.example.helloworld.game.BatchSolver;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 校验谜题文件（PuzzleCodec记录的拼接，例如BulkPuzzleGenerator的输出）
+// 用法：PuzzleCorpusVerifier [--exact] <文件> [线程数]
+// 逐条报告有问题的记录，最后输出汇总；全部通过时退出码为0
+// --exact：对8x8及以下的记录再用SolutionCounter精确数解，与搜索结果不一致时报告
+public class PuzzleCorpusVerifier {
+    public static void main(String[] args) throws Exception {
+        boolean exact = args.length > 0 && args[0].equals("--exact");
+        if (exact) {
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
+        if (args.length < 1) {
+            System.err.println("usage: PuzzleCorpusVerifier [--exact] <file> [threads]");
+            System.exit(2);
+        }
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        AtomicLong bad = new AtomicLong();
+        AtomicLong unique = new AtomicLong();
+        long start = System.nanoTime();
+        long total;
+        try (InputStream in = new BufferedInputStream(new FileInputStream(args[0]), 1 << 16);
+             BatchSolver solver = new BatchSolver(threads, threads * 64)) {
+            solver.setExactCounting(exact);
+            total = solver.run(in, true, result -> {
+                if (!result.decoded) {
+                    System.out.println("#" + result.index + ": corrupt record");
+                } else if (!result.valid) {
+                    System.out.println("#" + result.index + ": givens break the rules");
+                } else if (result.solutionCount == 0) {
+                    System.out.println("#" + result.index + ": no solution");
+                } else if (!result.isUnique()) {
+                    System.out.println("#" + result.index + ": multiple solutions");
+                } else if (!result.storedSolutionMatches) {
+                    System.out.println("#" + result.index + ": stored solution differs");
+                } else if (result.exactCount >= 0 && result.exactCount != 1) {
+                    System.out.println("#" + result.index + ": exact count is " + result.exactCount);
+                } else {
+                    unique.incrementAndGet();
+                    return;
+                }
+                bad.incrementAndGet();
+            });
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d records, %d unique, %d bad, %.2fs (%.0f records/s)%n",
+                total, unique.get(), bad.get(), seconds, total / seconds);
+        System.exit(bad.get() == 0 ? 0 : 1);
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.helloworld.tools;
+
+import com.example.helloworld.game.GameLogic;
+import com.example.helloworld.game.PuzzleDedupeIndex;
+import com.example.helloworld.game.PuzzleLibrary;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+// 在JVM上批量生成谜题并写出离线谜题库文件（只依赖game包，不需要Android环境）
+//
+// 用法：PuzzleLibraryBuilder <输出文件> [--seed 起始种子] <大小:难度:数量>...
+// 种子从起始种子开始依次递增，对称等价的谜题只收录一次，相同参数总是生成相同的文件
+//
+// 随应用打包的app/src/main/assets/puzzles.lib覆盖主界面提供的全部棋盘大小和难度，由下面的命令生成；
+// 改动生成器或谜题库格式后需要重新生成并提交：
+//   PuzzleLibraryBuilder app/src/main/assets/puzzles.lib 4:EASY:200 4:HARD:500 6:EASY:2000 6:HARD:2000
+//       8:EASY:1000 8:HARD:1000 10:EASY:500 10:HARD:500
+// 对称等价意义下4x4困难题一共只有725道（见PlayedPuzzleStore），数量不能超过它，否则会一直生成下去
+public class PuzzleLibraryBuilder {
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: PuzzleLibraryBuilder <output> [--seed N] <size:EASY|HARD:count>...");
+            System.exit(2);
+        }
+
+        String output = args[0];
+        long seed = 1;
+        PuzzleLibrary.Writer writer = new PuzzleLibrary.Writer();
+
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--seed")) {
+                seed = Long.parseLong(args[++i]);
+                continue;
+            }
+            String[] spec = args[i].split(":");
+            int size = Integer.parseInt(spec[0]);
+            GameLogic.Difficulty difficulty = GameLogic.Difficulty.valueOf(spec[1]);
+            int count = Integer.parseInt(spec[2]);
+
+            PuzzleDedupeIndex index = new PuzzleDedupeIndex();
+            GameLogic gameLogic = new GameLogic(size);
+            long start = System.nanoTime();
+            int added = 0;
+            int duplicates = 0;
+            while (added < count) {
+                gameLogic.generateNewGame(difficulty, seed++);
+                GameLogic.CellState[][] puzzle = gameLogic.getBoard();
+                if (!index.add(puzzle)) {
+                    duplicates++;
+                    continue;
+                }
+                writer.add(puzzle, gameLogic.getSolution(), gameLogic.getSeed(), difficulty);
+                added++;
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%dx%d %s: %d puzzles, %d duplicates skipped, %.1fs%n",
+                    size, size, difficulty, added, duplicates, seconds);
+        }
+
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(output))) {
+            writer.writeTo(out);
+        }
+        System.out.println("wrote " + output);
+    }
+}
@@ -22,8 +22,11 @@ import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 import com.example.helloworld.R;
 import com.example.helloworld.bluetooth.BluetoothConnection;
+import com.example.helloworld.game.GameLogic;
+import com.example.helloworld.game.LineRules;
 
 import java.util.ArrayList;
+import java.util.Random;
 import java.util.Set;
 
 public class BluetoothActivity extends AppCompatActivity {
@@ -42,6 +45,10 @@ public class BluetoothActivity extends AppCompatActivity {
     private ArrayAdapter<String> discoveredDevicesAdapter;
     private ArrayList<BluetoothDevice> discoveredDevicesList;
     private boolean isDiscovering = false;
+    // 由本机发起连接时，由本机选择棋盘大小、难度并决定种子
+    private boolean isInitiator = false;
+    // 连接已交给游戏界面，退出时不能关闭
+    private boolean handedOff = false;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -76,17 +83,59 @@ public class BluetoothActivity extends AppCompatActivity {
         checkBluetoothPermissions();
 
         // 初始化蓝牙连接
-        bluetoothConnection = new BluetoothConnection(bluetoothAdapter);
-        bluetoothConnection.setConnectionListener(new BluetoothConnection.ConnectionListener() {
+        bluetoothConnection = new BluetoothConnection(this, new BluetoothConnection.BluetoothConnectionListener() {
+            @Override
+            public void onDeviceDiscovered(BluetoothDevice device) {
+            }
+
             @Override
             public void onConnectionStateChanged(int state) {
                 updateConnectionStatus(state);
             }
 
             @Override
-            public void onGameDataReceived(String data) {
-                // 处理接收到的游戏数据
-                handleGameData(data);
+            public void onMessageReceived(String message) {
+            }
+
+            @Override
+            public void onMoveReceived(int row, int col, GameLogic.CellState state) {
+            }
+
+            @Override
+            public void onBoardHashReceived(long hash) {
+            }
+
+            @Override
+            public void onGameStateReceived(GameLogic.CellState[][] board, boolean completed, long gameTime) {
+            }
+
+            @Override
+            public void onResyncRequested() {
+            }
+
+            @Override
+            public void onMatchReceived(int engineVersion, int size, GameLogic.Difficulty difficulty, long seed) {
+                // 大小来自对方，本机建不了的棋盘直接拒绝
+                if (size <= 0 || size % 2 != 0 || size > LineRules.MAX_LENGTH) {
+                    tvConnectionStatus.setText("对方选择的棋盘无效，无法开始游戏");
+                    Toast.makeText(BluetoothActivity.this, "不支持" + size + "x" + size + "的棋盘", Toast.LENGTH_LONG).show();
+                    return;
+                }
+                // 对方选定了这一局，按同一个种子在本机生成谜题；
+                // 引擎版本不同时同一个种子生成的谜题也不同，开局后直接向主机要快照
+                startGame(size, difficulty, seed, engineVersion != GameLogic.ENGINE_VERSION);
+            }
+
+            @Override
+            public void onPuzzleHashReceived(int engineVersion, long seed, long hash) {
+            }
+
+            @Override
+            public void onStartAtReceived(long startAt) {
+            }
+
+            @Override
+            public void onGameResultReceived(long finishedAt) {
             }
 
             @Override
@@ -177,7 +226,7 @@ public class BluetoothActivity extends AppCompatActivity {
 
     private void startBluetoothServer() {
         // 启动蓝牙服务器线程
-        bluetoothConnection.startServer();
+        bluetoothConnection.start();
         runOnUiThread(() -> {
             tvConnectionStatus.setText("等待连接...");
         });
@@ -270,14 +319,12 @@ public class BluetoothActivity extends AppCompatActivity {
             cancelDiscovery();
         }
 
-        // 停止服务器线程
-        bluetoothConnection.stopServer();
-
-        // 连接到指定设备
+        // 连接到指定设备（连接建立后服务器线程自动停止）
+        isInitiator = true;
         runOnUiThread(() -> {
             tvConnectionStatus.setText("正在连接...");
         });
-        bluetoothConnection.connect(address);
+        bluetoothConnection.connect(bluetoothAdapter.getRemoteDevice(address));
     }
 
     private void updateConnectionStatus(final int state) {
@@ -292,10 +339,21 @@ public class BluetoothActivity extends AppCompatActivity {
                 case BluetoothConnection.STATE_CONNECTING:
                     tvConnectionStatus.setText("正在连接...");
                     break;
+                case BluetoothConnection.STATE_RECONNECTING:
+                    tvConnectionStatus.setText("连接中断，正在恢复...");
+                    break;
                 case BluetoothConnection.STATE_CONNECTED:
-                    tvConnectionStatus.setText("已连接，准备开始游戏");
-                    // 连接成功后，跳转到游戏界面并传递棋盘大小和难度
-                    showBoardSizeDialog();
+                    if (bluetoothConnection.wasResumed()) {
+                        tvConnectionStatus.setText("已重新连接");
+                        break;
+                    }
+                    // 连接成功后，由发起方选择棋盘大小和难度
+                    if (isInitiator) {
+                        tvConnectionStatus.setText("已连接，准备开始游戏");
+                        showBoardSizeDialog();
+                    } else {
+                        tvConnectionStatus.setText("已连接，等待对方选择棋盘...");
+                    }
                     break;
             }
         });
@@ -342,36 +400,32 @@ public class BluetoothActivity extends AppCompatActivity {
     }
 
     private void startBluetoothGame(int size, int difficultyIndex) {
-        // 发送游戏设置给对方
-        String gameSettings = "GAME_SETTINGS:" + size + ":" + difficultyIndex;
-        bluetoothConnection.write(gameSettings.getBytes());
+        // 只把大小、难度、种子和引擎版本发给对方，双方各自按种子生成同一局谜题
+        GameLogic.Difficulty difficulty = difficultyIndex == 0 ? GameLogic.Difficulty.EASY : GameLogic.Difficulty.HARD;
+        long seed = new Random().nextLong();
+        bluetoothConnection.sendMatch(size, difficulty, seed);
+        startGame(size, difficulty, seed, false);
+    }
+
+    // 把连接交给游戏界面：交接期间暂停投递，对方的消息留到游戏界面接手后再处理
+    // syncFromHost：本机不能按种子生成同一局谜题，开局后以主机发来的快照为准
+    private void startGame(int size, GameLogic.Difficulty difficulty, long seed, boolean syncFromHost) {
+        if (handedOff) {
+            return;
+        }
+        handedOff = true;
+        bluetoothConnection.setListener(null);
+        BluetoothConnection.setShared(bluetoothConnection);
 
-        // 跳转到游戏界面
         Intent intent = new Intent(this, GameScreenActivity.class);
         intent.putExtra("BOARD_SIZE", size);
-        intent.putExtra("DIFFICULTY", difficultyIndex == 0 ? "EASY" : "HARD");
+        intent.putExtra("DIFFICULTY", difficulty.name());
         intent.putExtra("BLUETOOTH_MODE", true);
-        intent.putExtra("BLUETOOTH_CONNECTION", bluetoothConnection);
+        intent.putExtra("IS_HOST", isInitiator);
+        intent.putExtra("SEED", seed);
+        intent.putExtra("SYNC_FROM_HOST", syncFromHost);
         startActivity(intent);
-    }
-
-    private void handleGameData(String data) {
-        // 处理从蓝牙接收到的游戏数据
-        if (data.startsWith("GAME_SETTINGS:")) {
-            // 解析游戏设置
-            String[] parts = data.split(":");
-            if (parts.length >= 3) {
-                int size = Integer.parseInt(parts[1]);
-                int difficultyIndex = Integer.parseInt(parts[2]);
-                // 跳转到游戏界面
-                Intent intent = new Intent(this, GameScreenActivity.class);
-                intent.putExtra("BOARD_SIZE", size);
-                intent.putExtra("DIFFICULTY", difficultyIndex == 0 ? "EASY" : "HARD");
-                intent.putExtra("BLUETOOTH_MODE", true);
-                intent.putExtra("BLUETOOTH_CONNECTION", bluetoothConnection);
-                startActivity(intent);
-            }
-        }
+        finish();
     }
 
     @Override
@@ -385,8 +439,8 @@ public class BluetoothActivity extends AppCompatActivity {
         } catch (Exception e) {
             e.printStackTrace();
         }
-        // 关闭蓝牙连接
-        if (bluetoothConnection != null) {
+        // 关闭蓝牙连接（已交给游戏界面时由游戏界面负责）
+        if (bluetoothConnection != null && !handedOff) {
             bluetoothConnection.stop();
         }
     }
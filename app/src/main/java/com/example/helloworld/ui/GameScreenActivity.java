@@ -7,6 +7,8 @@ import android.content.Intent;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
 import android.view.View;
 import android.widget.Button;
 import android.widget.LinearLayout;
@@ -18,10 +20,19 @@ import androidx.appcompat.app.AppCompatActivity;
 
 import com.example.helloworld.R;
 import com.example.helloworld.bluetooth.BluetoothConnection;
+import com.example.helloworld.bluetooth.LinkMonitor;
+import com.example.helloworld.game.BloomFilter;
 import com.example.helloworld.game.GameLogic;
+import com.example.helloworld.game.HintPrefetcher;
+import com.example.helloworld.game.SolveStream;
+import com.example.helloworld.utils.PlayedPuzzleStore;
+import com.example.helloworld.utils.PuzzleLibraryStore;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class GameScreenActivity extends AppCompatActivity implements BluetoothConnection.BluetoothConnectionListener {
     private GameLogic gameLogic;
@@ -38,12 +49,57 @@ public class GameScreenActivity extends AppCompatActivity implements BluetoothCo
 
     private boolean isBluetoothMode = false;
     private boolean isHost = false;
+    // 对方的引擎版本不同，本机按种子生成的谜题不可信，开局时直接向主机要快照
+    private boolean syncFromHost = false;
     private long startTime;
     private Handler timerHandler = new Handler(Looper.getMainLooper());
     private List<Move> moveHistory = new ArrayList<>();
     private List<Move> redoHistory = new ArrayList<>();
+    // 每次棋盘变化后在后台预先算好下一步提示
+    private final HintPrefetcher hintPrefetcher = new HintPrefetcher();
+    // 按下提示时结果还没算好，算好后再显示
+    private boolean hintRequested = false;
+
+    // 自动解题：后台求解，界面按固定间隔逐步回放填入的格子
+    private static final String PREF_NAME = "GamePrefs";
+    private static final String KEY_SOLVE_STEP_DELAY = "solve_step_delay";
+    private static final int DEFAULT_SOLVE_STEP_DELAY_MS = 80;
+    // 最多缓冲的步骤数，回放跟不上时求解线程等待
+    private static final int SOLVE_STEP_BUFFER = 32;
+    private SolveStream solveStream;
+    private int solveStepDelay = DEFAULT_SOLVE_STEP_DELAY_MS;
+    private final Handler solveHandler = new Handler(Looper.getMainLooper());
 
     private static final int REQUEST_ENABLE_BLUETOOTH = 1;
+    // 蓝牙模式下按种子生成的初始棋盘的哈希
+    private long puzzleHash;
+
+    private static final String TAG = "GameScreenActivity";
+    // 单人模式现场生成谜题的时限
+    private static final long GENERATION_TIMEOUT_MS = 500;
+
+    // 蓝牙对战计时：主机约定开局时刻，双方倒计时到同一时刻开始。
+    // 时刻都用主机的System.nanoTime()表示，非主机按估计的时钟差换算，
+    // 胜负按双方的完成时刻判定，与结果消息在链路上走了多久无关
+    private static final long COUNTDOWN_MS = 3000;
+    // 主机等待时钟差估计可用的最长时间
+    private static final long CLOCK_SYNC_WAIT_MS = 2000;
+    // 本机先完成时等待对方结果的时间（再加上链路往返时间的p99）
+    private static final long RESULT_GRACE_MS = 300;
+    private boolean matchStarted;
+    private boolean startScheduled;
+    private long matchStartAt;
+    // 完成时刻，-1表示还没有完成
+    private long finishedAt = -1;
+    private long peerFinishedAt = -1;
+    private boolean resultShown;
+
+    // 谜题的生成和载入（连同已出过谜题的记录和谜题库的读写）在后台进行，完成后再显示棋盘
+    private final ExecutorService puzzleLoader = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "puzzle-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -66,35 +122,124 @@ public class GameScreenActivity extends AppCompatActivity implements BluetoothCo
         GameLogic.Difficulty difficulty = GameLogic.Difficulty.valueOf(intent.getStringExtra("DIFFICULTY"));
         isBluetoothMode = intent.getBooleanExtra("BLUETOOTH_MODE", false);
         isHost = intent.getBooleanExtra("IS_HOST", false);
+        syncFromHost = intent.getBooleanExtra("SYNC_FROM_HOST", false);
 
-        // 初始化游戏逻辑
-        gameLogic = new GameLogic(size);
-        gameLogic.generateNewGame(difficulty);
+        boolean hasSeed = intent.hasExtra("SEED");
+        long seed = intent.getLongExtra("SEED", 0);
+
+        // 设置按钮点击事件；谜题准备好之前不能提示、解题和撤销
+        btnHint.setOnClickListener(v -> showHint());
+        btnSolve.setOnClickListener(v -> solveAutomatically());
+        btnUndo.setOnClickListener(v -> undoMove());
+        btnRedo.setOnClickListener(v -> redoMove());
+        btnQuit.setOnClickListener(v -> quitGame());
+        setPuzzleButtonsEnabled(false);
+        statusTextView.setText("正在生成谜题...");
+
+        puzzleLoader.execute(() -> {
+            GameLogic logic = loadPuzzle(size, difficulty, hasSeed, seed);
+            runOnUiThread(() -> onPuzzleReady(logic));
+        });
+    }
+
+    // 在后台线程上生成或载入谜题，不访问界面
+    private GameLogic loadPuzzle(int size, GameLogic.Difficulty difficulty, boolean hasSeed, long seed) {
+        GameLogic logic = new GameLogic(size);
+        if (isBluetoothMode) {
+            // 握手时双方交换了种子，各自生成同一局谜题，之后用哈希核对
+            if (hasSeed) {
+                logic.generateNewGame(difficulty, seed);
+            } else {
+                logic.generateNewGame(difficulty);
+            }
+            return logic;
+        }
+        // 单人模式跳过最近出过的谜题
+        // 困难谜题现场生成最慢，优先从离线谜题库中取
+        PlayedPuzzleStore playedPuzzleStore = new PlayedPuzzleStore(this);
+        BloomFilter played = playedPuzzleStore.getFilter(size, difficulty);
+        int attempts = playedPuzzleStore.attempts(size, difficulty);
+        PuzzleLibraryStore libraryStore = PuzzleLibraryStore.getInstance(this);
+        boolean fromLibrary = difficulty == GameLogic.Difficulty.HARD
+                && libraryStore.loadUnseenPuzzle(logic, difficulty, played, attempts);
+        if (!fromLibrary) {
+            // 现场生成限时完成，超时时改用谜题库中的一局（即使出过也比让玩家等待好）
+            Random random = new Random();
+            GameLogic.GenerationPath path = logic.generateUnseenGame(difficulty, played, attempts,
+                    GENERATION_TIMEOUT_MS,
+                    (target, diff) -> libraryStore.loadPuzzle(target, diff, random.nextInt(Integer.MAX_VALUE)));
+            Log.i(TAG, size + "x" + size + " " + difficulty + " puzzle: " + path);
+        }
+        playedPuzzleStore.save(size, difficulty);
+        return logic;
+    }
+
+    // 谜题准备好后（主线程）显示棋盘，开始计时或连接
+    private void onPuzzleReady(GameLogic logic) {
+        if (isFinishing() || isDestroyed()) {
+            return;
+        }
+        gameLogic = logic;
+        if (isBluetoothMode) {
+            puzzleHash = gameLogic.getBoardHash();
+        }
 
         // 初始化蓝牙连接（如果是蓝牙模式）
         if (isBluetoothMode) {
-            initializeBluetooth();
             statusTextView.setText("等待连接...");
+            initializeBluetooth();
         } else {
             statusTextView.setText("单人模式");
         }
 
         // 创建游戏棋盘
-        createGameGrid(size);
-
-        // 开始计时器
-        startTime = System.currentTimeMillis();
-        startTimer();
+        createGameGrid(gameLogic.getSize());
+        setPuzzleButtonsEnabled(true);
+        hintPrefetcher.setListener((version, outcome, hint) -> runOnUiThread(() -> {
+            if (hintRequested && version == hintPrefetcher.getVersion()) {
+                hintRequested = false;
+                displayHint(outcome, hint);
+            }
+        }));
+        prefetchHint();
+
+        // 开始计时器；蓝牙对战等到约定的开局时刻
+        matchStarted = !isBluetoothMode;
+        if (matchStarted) {
+            startTime = System.currentTimeMillis();
+            gameLogic.setStartTime(startTime);
+            startTimer();
+        }
+    }
 
-        // 设置按钮点击事件
-        btnHint.setOnClickListener(v -> showHint());
-        btnSolve.setOnClickListener(v -> solveAutomatically());
-        btnUndo.setOnClickListener(v -> undoMove());
-        btnRedo.setOnClickListener(v -> redoMove());
-        btnQuit.setOnClickListener(v -> quitGame());
+    private void setPuzzleButtonsEnabled(boolean enabled) {
+        btnHint.setEnabled(enabled);
+        btnSolve.setEnabled(enabled);
+        if (enabled) {
+            updateButtonStates();
+        } else {
+            btnUndo.setEnabled(false);
+            btnRedo.setEnabled(false);
+        }
     }
 
     private void initializeBluetooth() {
+        // 从配对界面接手已经建立的连接，把本机生成的谜题的哈希发给对方核对
+        bluetoothConnection = BluetoothConnection.takeShared();
+        if (bluetoothConnection != null) {
+            bluetoothConnection.setListener(this);
+            // 主机收到哈希后才安排开局，所以即使要快照也照常发送
+            bluetoothConnection.sendPuzzleHash(gameLogic.getSeed(), puzzleHash);
+            if (syncFromHost) {
+                Log.w(TAG, "peer engine differs from " + GameLogic.ENGINE_VERSION + ", requesting snapshot");
+                statusTextView.setText("引擎版本不同，正在同步主机的谜题...");
+                bluetoothConnection.requestResync();
+            } else {
+                statusTextView.setText("已连接，正在核对谜题...");
+            }
+            return;
+        }
+
         bluetoothConnection = new BluetoothConnection(this, this);
 
         // 检查蓝牙是否可用
@@ -154,7 +299,7 @@ public class GameScreenActivity extends AppCompatActivity implements BluetoothCo
 
                 // 设置按钮点击事件
                 cellButton.setOnClickListener(v -> {
-                    if (!isBluetoothMode || (isBluetoothMode && !gameLogic.isGameCompleted())) {
+                    if (matchStarted && (!isBluetoothMode || !gameLogic.isGameCompleted())) {
                         makeMove(row, col);
                     }
                 });
@@ -170,6 +315,8 @@ public class GameScreenActivity extends AppCompatActivity implements BluetoothCo
     }
 
     private void makeMove(int row, int col) {
+        // 玩家自己落子时停止自动解题的回放
+        stopSolvePlayback();
         // 如果单元格已填充，则切换状态
         GameLogic.CellState currentState = gameLogic.getBoard()[row][col];
         GameLogic.CellState nextState;
@@ -188,13 +335,10 @@ public class GameScreenActivity extends AppCompatActivity implements BluetoothCo
 
         // 执行移动
         if (gameLogic.makeMove(row, col, nextState)) {
-            updateGameGrid();
+            updateCell(row, col);
             updateButtonStates();
-
-            // 如果是蓝牙模式，发送移动
-            if (isBluetoothMode && bluetoothConnection.getState() == BluetoothConnection.STATE_CONNECTED) {
-                bluetoothConnection.sendMove(row, col, nextState);
-            }
+            prefetchHint();
+            sendCell(row, col);
 
             // 检查游戏是否完成
             checkGameCompletion();
@@ -202,28 +346,66 @@ public class GameScreenActivity extends AppCompatActivity implements BluetoothCo
     }
 
     private void undoMove() {
+        stopSolvePlayback();
         if (!moveHistory.isEmpty()) {
             Move lastMove = moveHistory.removeLast();
             redoHistory.add(new Move(lastMove.row, lastMove.col, gameLogic.getBoard()[lastMove.row][lastMove.col]));
             gameLogic.makeMove(lastMove.row, lastMove.col, lastMove.state);
-            updateGameGrid();
+            updateCell(lastMove.row, lastMove.col);
             updateButtonStates();
+            prefetchHint();
+            sendCell(lastMove.row, lastMove.col);
         }
     }
 
     private void redoMove() {
+        stopSolvePlayback();
         if (!redoHistory.isEmpty()) {
             Move nextMove = redoHistory.removeLast();
             moveHistory.add(new Move(nextMove.row, nextMove.col, gameLogic.getBoard()[nextMove.row][nextMove.col]));
             gameLogic.makeMove(nextMove.row, nextMove.col, nextMove.state);
-            updateGameGrid();
+            updateCell(nextMove.row, nextMove.col);
             updateButtonStates();
+            prefetchHint();
+            sendCell(nextMove.row, nextMove.col);
         }
     }
 
+    // 已连接或正在恢复中断的连接（这期间发出的消息在恢复后补发）
+    private boolean isInMatch() {
+        if (!isBluetoothMode || bluetoothConnection == null) {
+            return false;
+        }
+        int state = bluetoothConnection.getState();
+        return state == BluetoothConnection.STATE_CONNECTED || state == BluetoothConnection.STATE_RECONNECTING;
+    }
+
+    // 蓝牙模式下把一个格子的当前状态作为增量发给对方
+    private void sendCell(int row, int col) {
+        if (isInMatch()) {
+            bluetoothConnection.sendMove(row, col, gameLogic.getCell(row, col), gameLogic.getBoardHash());
+        }
+    }
+
+    // 把当前棋盘交给后台提示线程，之前未完成的计算作废
+    private void prefetchHint() {
+        hintPrefetcher.submit(gameLogic.getBoard());
+    }
+
     private void showHint() {
-        int[] hint = gameLogic.getHint();
-        if (hint != null) {
+        if (hintPrefetcher.isReady()) {
+            displayHint(hintPrefetcher.getOutcome(), hintPrefetcher.getHint());
+        } else {
+            // 刚下完一步，后台还在计算
+            hintRequested = true;
+        }
+    }
+
+    private void displayHint(HintPrefetcher.Outcome outcome, int[] hint) {
+        if (outcome == HintPrefetcher.Outcome.UNKNOWN) {
+            // 局面太复杂，没能在限定的搜索量内算出来；不等于没有提示
+            Toast.makeText(this, "局面太复杂，暂时无法给出提示", Toast.LENGTH_SHORT).show();
+        } else if (hint != null) {
             int row = hint[0];
             int col = hint[1];
             GameLogic.CellState state = GameLogic.CellState.values()[hint[2]];
@@ -242,43 +424,100 @@ public class GameScreenActivity extends AppCompatActivity implements BluetoothCo
     }
 
     private void solveAutomatically() {
+        if (!matchStarted) {
+            return;
+        }
         new AlertDialog.Builder(this)
                 .setTitle("自动解题")
                 .setMessage("确定要使用自动解题功能吗？")
-                .setPositiveButton("确定", (dialog, which) -> {
-                    if (gameLogic.solveAutomatically()) {
-                        updateGameGrid();
-                        checkGameCompletion();
-                    } else {
-                        Toast.makeText(this, "无法自动解决此谜题", Toast.LENGTH_SHORT).show();
-                    }
-                })
+                .setPositiveButton("确定", (dialog, which) -> startSolvePlayback())
                 .setNegativeButton("取消", null)
                 .show();
     }
 
+    // 在后台求解当前棋盘，并开始逐步回放
+    private void startSolvePlayback() {
+        stopSolvePlayback();
+        solveStepDelay = getSharedPreferences(PREF_NAME, MODE_PRIVATE)
+                .getInt(KEY_SOLVE_STEP_DELAY, DEFAULT_SOLVE_STEP_DELAY_MS);
+        solveStream = new SolveStream(gameLogic.getBoard(), SOLVE_STEP_BUFFER);
+        solveStream.start();
+        btnSolve.setEnabled(false);
+        solveHandler.post(solvePlayback);
+    }
+
+    private void stopSolvePlayback() {
+        if (solveStream != null) {
+            solveStream.cancel();
+            solveStream = null;
+            solveHandler.removeCallbacks(solvePlayback);
+            btnSolve.setEnabled(true);
+        }
+    }
+
+    // 每次回放一步；求解线程还没给出下一步时稍后再试
+    private final Runnable solvePlayback = new Runnable() {
+        @Override
+        public void run() {
+            SolveStream stream = solveStream;
+            if (stream == null) {
+                return;
+            }
+            SolveStream.Step step = stream.poll();
+            if (step != null) {
+                gameLogic.makeMove(step.row, step.col, step.state);
+                updateCell(step.row, step.col);
+                prefetchHint();
+                // 对战中每一步都作为增量发给对方，和手动落子一样，对方的棋盘和哈希才能保持一致
+                sendCell(step.row, step.col);
+                solveHandler.postDelayed(this, solveStepDelay);
+                return;
+            }
+            if (!stream.isDrained()) {
+                solveHandler.postDelayed(this, solveStepDelay);
+                return;
+            }
+            solveStream = null;
+            btnSolve.setEnabled(true);
+            if (stream.getStatus() == SolveStream.FAILED) {
+                Toast.makeText(GameScreenActivity.this, "无法自动解决此谜题", Toast.LENGTH_SHORT).show();
+            } else {
+                checkGameCompletion();
+            }
+        }
+    };
+
     private void updateGameGrid() {
         GameLogic.CellState[][] board = gameLogic.getBoard();
         for (int i = 0; i < board.length; i++) {
             for (int j = 0; j < board[i].length; j++) {
-                switch (board[i][j]) {
-                    case X:
-                        cellButtons[i][j].setText("X");
-                        cellButtons[i][j].setBackgroundResource(R.drawable.cell_x_background);
-                        break;
-                    case O:
-                        cellButtons[i][j].setText("O");
-                        cellButtons[i][j].setBackgroundResource(R.drawable.cell_o_background);
-                        break;
-                    default:
-                        cellButtons[i][j].setText("");
-                        cellButtons[i][j].setBackgroundResource(R.drawable.cell_empty_background);
-                        break;
-                }
+                showCell(i, j, board[i][j]);
             }
         }
     }
 
+    // 只刷新一个单元格（回放时不必复制整个棋盘）
+    private void updateCell(int row, int col) {
+        showCell(row, col, gameLogic.getCell(row, col));
+    }
+
+    private void showCell(int row, int col, GameLogic.CellState state) {
+        switch (state) {
+            case X:
+                cellButtons[row][col].setText("X");
+                cellButtons[row][col].setBackgroundResource(R.drawable.cell_x_background);
+                break;
+            case O:
+                cellButtons[row][col].setText("O");
+                cellButtons[row][col].setBackgroundResource(R.drawable.cell_o_background);
+                break;
+            default:
+                cellButtons[row][col].setText("");
+                cellButtons[row][col].setBackgroundResource(R.drawable.cell_empty_background);
+                break;
+        }
+    }
+
     private void updateButtonStates() {
         btnUndo.setEnabled(!moveHistory.isEmpty());
         btnRedo.setEnabled(!redoHistory.isEmpty());
@@ -286,18 +525,12 @@ public class GameScreenActivity extends AppCompatActivity implements BluetoothCo
 
     private void checkGameCompletion() {
         if (gameLogic.isGameCompleted()) {
-            timerHandler.removeCallbacksAndMessages(null);
-            long gameTime = gameLogic.getGameTime() / 1000;
-            int minutes = (int) (gameTime / 60);
-            int seconds = (int) (gameTime % 60);
-            String timeString = String.format("%02d:%02d", minutes, seconds);
-
-            String message = "恭喜你完成了谜题！用时: " + timeString;
-
-            if (isBluetoothMode && bluetoothConnection.getState() == BluetoothConnection.STATE_CONNECTED) {
-                bluetoothConnection.sendGameResult(true);
-                message = "你赢了！用时: " + timeString;
+            if (isInMatch()) {
+                finishRace();
+                return;
             }
+            timerHandler.removeCallbacksAndMessages(null);
+            String message = "恭喜你完成了谜题！用时: " + formatTime(gameLogic.getGameTime());
 
             new AlertDialog.Builder(this)
                     .setTitle("游戏完成")
@@ -310,6 +543,127 @@ public class GameScreenActivity extends AppCompatActivity implements BluetoothCo
         }
     }
 
+    private static String formatTime(long millis) {
+        long gameTime = Math.max(0, millis) / 1000;
+        int minutes = (int) (gameTime / 60);
+        int seconds = (int) (gameTime % 60);
+        return String.format("%02d:%02d", minutes, seconds);
+    }
+
+    // 主机时钟上的当前时刻
+    private long hostNow() {
+        long now = System.nanoTime();
+        return isHost ? now : bluetoothConnection.toPeerTime(now);
+    }
+
+    // 主机：等时钟差估计可用后约定开局时刻，超过CLOCK_SYNC_WAIT_MS仍按现有估计开始
+    private void scheduleStart() {
+        if (startScheduled) {
+            return;
+        }
+        startScheduled = true;
+        long deadline = SystemClock.uptimeMillis() + CLOCK_SYNC_WAIT_MS;
+        timerHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (!bluetoothConnection.isClockSynced()) {
+                    if (SystemClock.uptimeMillis() < deadline) {
+                        timerHandler.postDelayed(this, 100);
+                        return;
+                    }
+                    Log.w(TAG, "clock offset not settled after " + CLOCK_SYNC_WAIT_MS + "ms, scheduling start anyway");
+                }
+                long startAt = System.nanoTime() + COUNTDOWN_MS * 1000000L;
+                bluetoothConnection.sendStartAt(startAt);
+                beginCountdown(startAt);
+            }
+        });
+    }
+
+    // 非主机：开局时刻在主机时钟上，等本机的时钟差估计可用后再换算，
+    // 否则可能按还没有样本的估计（原样返回）换算出相差很远的时刻。超过CLOCK_SYNC_WAIT_MS仍按现有估计开始
+    private void awaitClockSyncThenCountdown(long startAt) {
+        long deadline = SystemClock.uptimeMillis() + CLOCK_SYNC_WAIT_MS;
+        timerHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (!bluetoothConnection.isClockSynced()) {
+                    if (SystemClock.uptimeMillis() < deadline) {
+                        timerHandler.postDelayed(this, 100);
+                        return;
+                    }
+                    Log.w(TAG, "clock offset not settled after " + CLOCK_SYNC_WAIT_MS
+                            + "ms, converting start time with the current estimate");
+                }
+                beginCountdown(startAt);
+            }
+        });
+    }
+
+    // 倒计时到约定的开局时刻（主机时钟）后开始计时和接受落子
+    private void beginCountdown(long startAt) {
+        matchStartAt = startAt;
+        long localStart = isHost ? startAt : bluetoothConnection.toLocalTime(startAt);
+        timerHandler.removeCallbacksAndMessages(null);
+        timerHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                long remaining = localStart - System.nanoTime();
+                if (remaining > 0) {
+                    statusTextView.setText("倒计时 " + (remaining / 1000000000L + 1));
+                    timerHandler.postDelayed(this, Math.min(100, remaining / 1000000L + 1));
+                    return;
+                }
+                matchStarted = true;
+                // 换算为墙上时间，计时显示和用时都从约定的时刻算起
+                startTime = System.currentTimeMillis() - (System.nanoTime() - localStart) / 1000000L;
+                gameLogic.setStartTime(startTime);
+                statusTextView.setText("开始！");
+                startTimer();
+            }
+        });
+    }
+
+    // 蓝牙对战：记下完成时刻发给对方，对方可能更早完成而结果还在路上，等一会儿再判定
+    private void finishRace() {
+        if (finishedAt >= 0 || resultShown) {
+            return;
+        }
+        timerHandler.removeCallbacksAndMessages(null);
+        finishedAt = hostNow();
+        bluetoothConnection.sendGameResult(finishedAt);
+        if (peerFinishedAt >= 0) {
+            showRaceResult();
+            return;
+        }
+        statusTextView.setText("已完成，等待对方结果...");
+        LinkMonitor.Metrics link = bluetoothConnection.getLinkMetrics();
+        long grace = RESULT_GRACE_MS + (link != null ? link.p99RttNanos / 1000000L : 0);
+        timerHandler.postDelayed(this::showRaceResult, grace);
+    }
+
+    // 双方用同样的两个完成时刻判定，结论一致；时刻相同时主机胜
+    private void showRaceResult() {
+        if (resultShown) {
+            return;
+        }
+        resultShown = true;
+        timerHandler.removeCallbacksAndMessages(null);
+        boolean won = finishedAt >= 0 && (peerFinishedAt < 0 || finishedAt < peerFinishedAt
+                || (finishedAt == peerFinishedAt && isHost));
+        String message = won
+                ? "你赢了！用时: " + formatTime((finishedAt - matchStartAt) / 1000000L)
+                : "很遗憾，你输了！对手用时: " + formatTime((peerFinishedAt - matchStartAt) / 1000000L);
+        new AlertDialog.Builder(this)
+                .setTitle(won ? "游戏完成" : "游戏结束")
+                .setMessage(message)
+                .setPositiveButton("返回主菜单", (dialog, which) -> {
+                    finish();
+                })
+                .setCancelable(false)
+                .show();
+    }
+
     private void startTimer() {
         timerHandler.postDelayed(new Runnable() {
             @Override
@@ -330,7 +684,7 @@ public class GameScreenActivity extends AppCompatActivity implements BluetoothCo
                 .setTitle("退出游戏")
                 .setMessage("确定要退出游戏吗？")
                 .setPositiveButton("确定", (dialog, which) -> {
-                    if (isBluetoothMode && bluetoothConnection.getState() == BluetoothConnection.STATE_CONNECTED) {
+                    if (isInMatch()) {
                         bluetoothConnection.sendQuitNotification();
                     }
                     finish();
@@ -358,6 +712,9 @@ public class GameScreenActivity extends AppCompatActivity implements BluetoothCo
     protected void onDestroy() {
         super.onDestroy();
         timerHandler.removeCallbacksAndMessages(null);
+        stopSolvePlayback();
+        hintPrefetcher.shutdown();
+        puzzleLoader.shutdownNow();
         if (isBluetoothMode && bluetoothConnection != null) {
             bluetoothConnection.stop();
         }
@@ -379,11 +736,20 @@ public class GameScreenActivity extends AppCompatActivity implements BluetoothCo
                 case BluetoothConnection.STATE_CONNECTING:
                     statusTextView.setText("正在连接...");
                     break;
+                case BluetoothConnection.STATE_RECONNECTING:
+                    statusTextView.setText("连接中断，正在恢复...");
+                    break;
                 case BluetoothConnection.STATE_CONNECTED:
+                    if (bluetoothConnection.wasResumed()) {
+                        // 会话已恢复，中断期间的消息已经补发，不需要重新同步
+                        statusTextView.setText("已重新连接");
+                        break;
+                    }
                     statusTextView.setText("已连接，开始游戏！");
-                    // 如果是主机，发送初始游戏状态
+                    // 如果是主机，发送初始游戏状态并约定开局时刻
                     if (isHost) {
                         bluetoothConnection.sendGameState(gameLogic);
+                        scheduleStart();
                     }
                     break;
                 default:
@@ -393,74 +759,116 @@ public class GameScreenActivity extends AppCompatActivity implements BluetoothCo
         });
     }
 
+    // 在主线程上调用
     @Override
-    public void onMessageReceived(String message) {
-        runOnUiThread(() -> {
-            if (message.startsWith("MOVE:")) {
-                // 处理移动消息
-                String[] parts = message.substring(5).split(",");
-                if (parts.length == 3) {
-                    int row = Integer.parseInt(parts[0]);
-                    int col = Integer.parseInt(parts[1]);
-                    GameLogic.CellState state = GameLogic.CellState.values()[Integer.parseInt(parts[2])];
-                    gameLogic.makeMove(row, col, state);
-                    updateGameGrid();
-                    checkGameCompletion();
-                }
-            } else if (message.startsWith("GAME_STATE:")) {
-                // 处理游戏状态消息（非主机接收初始状态）
-                if (!isHost) {
-                    String[] parts = message.substring(11).split(":");
-                    if (parts.length >= 2) {
-                        String[] boardData = parts[0].split(",");
-                        int size = Integer.parseInt(boardData[0]);
-                        
-                        // 重建游戏逻辑和棋盘
-                        gameLogic = new GameLogic(size);
-                        GameLogic.CellState[][] newBoard = new GameLogic.CellState[size][size];
-                        
-                        for (int i = 0; i < size; i++) {
-                            for (int j = 0; j < size; j++) {
-                                int index = 1 + i * size + j;
-                                if (index < boardData.length) {
-                                    newBoard[i][j] = GameLogic.CellState.values()[Integer.parseInt(boardData[index])];
-                                }
-                            }
-                        }
-                        
-                        gameLogic.setBoard(newBoard);
-                        createGameGrid(size);
-                        startTime = System.currentTimeMillis() - Long.parseLong(parts[2]);
-                        startTimer();
+    public void onMoveReceived(int row, int col, GameLogic.CellState state) {
+        if (row >= gameLogic.getSize() || col >= gameLogic.getSize()) {
+            return;
+        }
+        // 增量按顺序到达，直接写入，只刷新这一格
+        gameLogic.setCellState(row, col, state);
+        updateCell(row, col);
+        prefetchHint();
+        checkGameCompletion();
+    }
+
+    // 在主线程上调用：与本机棋盘的哈希（随每步增量更新）比较，不一致时以主机的棋盘为准重新同步
+    @Override
+    public void onBoardHashReceived(long hash) {
+        if (hash == gameLogic.getBoardHash()) {
+            return;
+        }
+        Log.w(TAG, "board diverged from peer, resyncing");
+        statusTextView.setText("棋盘不一致，正在同步...");
+        if (isHost) {
+            bluetoothConnection.sendGameState(gameLogic);
+        } else {
+            bluetoothConnection.requestResync();
+        }
+    }
+
+    // 在主线程上调用
+    @Override
+    public void onGameStateReceived(GameLogic.CellState[][] board, boolean completed, long gameTime) {
+        int size = board.length;
+        if (size == gameLogic.getSize()) {
+            // 大小相同时原地更新，只刷新变化的格子
+            GameLogic.CellState[][] old = gameLogic.getBoard();
+            gameLogic.setBoard(board);
+            for (int i = 0; i < size; i++) {
+                for (int j = 0; j < size; j++) {
+                    if (old[i][j] != board[i][j]) {
+                        showCell(i, j, board[i][j]);
                     }
                 }
-            } else if (message.startsWith("GAME_RESULT:")) {
-                // 处理游戏结果消息
-                boolean isWinner = message.substring(12).equals("1");
-                if (!isWinner) {
-                    timerHandler.removeCallbacksAndMessages(null);
-                    new AlertDialog.Builder(this)
-                            .setTitle("游戏结束")
-                            .setMessage("很遗憾，你输了！")
-                            .setPositiveButton("返回主菜单", (dialog, which) -> {
-                                finish();
-                            })
-                            .setCancelable(false)
-                            .show();
-                }
-            } else if (message.equals("QUIT_GAME")) {
-                // 处理退出通知
-                timerHandler.removeCallbacksAndMessages(null);
-                new AlertDialog.Builder(this)
-                        .setTitle("游戏结束")
-                        .setMessage("对手已退出，你获胜了！")
-                        .setPositiveButton("返回主菜单", (dialog, which) -> {
-                            finish();
-                        })
-                        .setCancelable(false)
-                        .show();
             }
-        });
+        } else {
+            // 重建游戏逻辑和棋盘
+            gameLogic = new GameLogic(size);
+            gameLogic.setBoard(board);
+            createGameGrid(size);
+        }
+        prefetchHint();
+        statusTextView.setText("已连接，开始游戏！");
+        // 计时以约定的开局时刻为准，快照中的用时不再使用（它没有计入传输延迟）
+    }
+
+    // 在主线程上调用
+    @Override
+    public void onResyncRequested() {
+        bluetoothConnection.sendGameState(gameLogic);
+    }
+
+    // 在主线程上调用：游戏已经开始，不再处理开局握手
+    @Override
+    public void onMatchReceived(int engineVersion, int size, GameLogic.Difficulty difficulty, long seed) {
+    }
+
+    // 在主线程上调用
+    @Override
+    public void onPuzzleHashReceived(int engineVersion, long seed, long hash) {
+        if (engineVersion == GameLogic.ENGINE_VERSION && seed == gameLogic.getSeed() && hash == puzzleHash) {
+            statusTextView.setText("已连接，开始游戏！");
+        } else if (!isHost && !syncFromHost) {
+            // 引擎版本不同或生成结果不一致：以主机的棋盘为准（syncFromHost时开局就已经请求过快照）
+            Log.w(TAG, "puzzle mismatch: engine " + engineVersion + ", seed " + seed);
+            statusTextView.setText("谜题不一致，正在同步...");
+            bluetoothConnection.requestResync();
+        }
+        // 不一致时非主机会请求快照，快照在倒计时结束前到达
+        if (isHost) {
+            scheduleStart();
+        }
+    }
+
+    // 在主线程上调用
+    @Override
+    public void onStartAtReceived(long startAt) {
+        awaitClockSyncThenCountdown(startAt);
+    }
+
+    // 在主线程上调用
+    @Override
+    public void onGameResultReceived(long finishedAt) {
+        peerFinishedAt = finishedAt;
+        showRaceResult();
+    }
+
+    // 在主线程上调用
+    @Override
+    public void onMessageReceived(String message) {
+        if (message.equals("QUIT_GAME")) {
+            // 处理退出通知
+            timerHandler.removeCallbacksAndMessages(null);
+            new AlertDialog.Builder(this)
+                    .setTitle("游戏结束")
+                    .setMessage("对手已退出，你获胜了！")
+                    .setPositiveButton("返回主菜单", (dialog, which) -> {
+                        finish();
+                    })
+                    .setCancelable(false)
+                    .show();
+        }
     }
 
     @Override
@@ -0,0 +1,126 @@
+package com.example.helloworld.utils;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.example.helloworld.game.BloomFilter;
+import com.example.helloworld.game.GameLogic;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+// 持久化“已出过的谜题”布隆过滤器，每个(棋盘大小, 难度)一个文件
+public class PlayedPuzzleStore {
+    private static final String TAG = "PlayedPuzzleStore";
+
+    // 每个(大小, 难度)预计记录的谜题数和目标误判率
+    // 10000个谜题、1%误判率约占12KB
+    private static final int EXPECTED_PUZZLES = 10000;
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+    // 寻找新谜题的最大重试次数
+    public static final int MAX_ATTEMPTS = 8;
+    // 4x4困难谜题（删到最少线索）按规范形式只有这么多种：最小化的结果正是72个终盘上
+    // “唯一解、且每个线索都删不掉”的谜题，PlayedPuzzleStoreTest按这个定义穷举核对。
+    // 这个数只对DISTINCT_ENGINE_VERSION的生成算法成立，版本变了就不再限制重试次数，直到重新核对。
+    // 其余组合的谜题数都远超EXPECTED_PUZZLES
+    private static final int DISTINCT_4X4_HARD = 725;
+    static final int DISTINCT_ENGINE_VERSION = 2;
+
+    private final File directory;
+    private final Map<String, BloomFilter> filters = new HashMap<>();
+
+    public PlayedPuzzleStore(Context context) {
+        this.directory = new File(context.getFilesDir(), "played");
+    }
+
+    // 获取(或加载)指定大小和难度的过滤器
+    public synchronized BloomFilter getFilter(int size, GameLogic.Difficulty difficulty) {
+        String key = key(size, difficulty);
+        BloomFilter filter = filters.get(key);
+        if (filter == null) {
+            filter = load(new File(directory, key + ".bloom"));
+            // 记录数远超预期时误判率会升高，重新开始记录
+            if (filter == null || filter.getInsertions() > EXPECTED_PUZZLES * 2) {
+                filter = BloomFilter.create(EXPECTED_PUZZLES, FALSE_POSITIVE_RATE);
+            }
+            filters.put(key, filter);
+        }
+        return filter;
+    }
+
+    // 寻找新谜题时值得重试的次数：不超过还没出过的谜题数，谜题空间很小时不会每次都白白重试。
+    // 所有谜题都出过一遍后重新开始记录
+    public synchronized int attempts(int size, GameLogic.Difficulty difficulty) {
+        int distinct = distinctPuzzles(size, difficulty);
+        if (distinct == Integer.MAX_VALUE) {
+            return MAX_ATTEMPTS;
+        }
+        BloomFilter filter = getFilter(size, difficulty);
+        if (filter.getInsertions() >= distinct) {
+            filter.clear();
+        }
+        return Math.max(1, Math.min(MAX_ATTEMPTS, distinct - filter.getInsertions()));
+    }
+
+    // 指定大小和难度最多能生成的不同谜题数（按规范形式计），
+    // 远超记录容量或没有为当前生成算法核对过时返回Integer.MAX_VALUE
+    static int distinctPuzzles(int size, GameLogic.Difficulty difficulty) {
+        if (size == 4 && difficulty == GameLogic.Difficulty.HARD
+                && GameLogic.ENGINE_VERSION == DISTINCT_ENGINE_VERSION) {
+            return DISTINCT_4X4_HARD;
+        }
+        return Integer.MAX_VALUE;
+    }
+
+    // 将过滤器写回文件（先写临时文件再替换，避免写到一半损坏）
+    public synchronized void save(int size, GameLogic.Difficulty difficulty) {
+        String key = key(size, difficulty);
+        BloomFilter filter = filters.get(key);
+        if (filter == null) {
+            return;
+        }
+        if (!directory.exists() && !directory.mkdirs()) {
+            Log.e(TAG, "Could not create " + directory);
+            return;
+        }
+        File file = new File(directory, key + ".bloom");
+        File tmp = new File(directory, key + ".bloom.tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            filter.writeTo(out);
+        } catch (IOException e) {
+            Log.e(TAG, "save() failed", e);
+            return;
+        }
+        if (!tmp.renameTo(file)) {
+            Log.e(TAG, "Could not replace " + file);
+        }
+    }
+
+    private BloomFilter load(File file) {
+        if (!file.exists()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            return BloomFilter.readFrom(in, EXPECTED_PUZZLES, FALSE_POSITIVE_RATE);
+        } catch (IOException e) {
+            // 文件损坏或与当前参数不符：丢弃，下次保存时写入新的过滤器
+            Log.e(TAG, "load() failed, starting a new filter", e);
+            if (!file.delete()) {
+                Log.e(TAG, "Could not delete " + file);
+            }
+            return null;
+        }
+    }
+
+    private static String key(int size, GameLogic.Difficulty difficulty) {
+        return size + "_" + difficulty.name();
+    }
+}
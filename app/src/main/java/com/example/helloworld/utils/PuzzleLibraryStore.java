@@ -0,0 +1,158 @@
+package com.example.helloworld.utils;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.example.helloworld.BuildConfig;
+import com.example.helloworld.game.BloomFilter;
+import com.example.helloworld.game.GameLogic;
+import com.example.helloworld.game.PuzzleCanonicalizer;
+import com.example.helloworld.game.PuzzleLibrary;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+
+// 管理离线谜题库文件
+// 随应用打包的assets/puzzles.lib在首次使用（或应用升级）时复制到内部存储，
+// 因为assets可能被压缩，无法直接映射；之后通过installUpdate()可以替换为更新的谜题库。
+// 整个进程共用一个实例（getInstance），谜题库只映射一次，一直保持打开；
+// 第一次使用时会复制和映射文件，不要在主线程上调用
+public class PuzzleLibraryStore {
+    private static final String TAG = "PuzzleLibraryStore";
+    private static final String ASSET_NAME = "puzzles.lib";
+    private static final String PREF_NAME = "GamePrefs";
+    private static final String KEY_LIBRARY_VERSION = "puzzle_library_version";
+
+    private static PuzzleLibraryStore instance;
+
+    private final Context context;
+    private final File file;
+    private PuzzleLibrary library;
+
+    public static synchronized PuzzleLibraryStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new PuzzleLibraryStore(context);
+        }
+        return instance;
+    }
+
+    private PuzzleLibraryStore(Context context) {
+        this.context = context.getApplicationContext();
+        this.file = new File(this.context.getFilesDir(), ASSET_NAME);
+    }
+
+    // 获取已映射的谜题库；没有可用的谜题库时返回null
+    public synchronized PuzzleLibrary getLibrary() {
+        if (library == null) {
+            copyBundledLibraryIfNeeded();
+            if (file.exists()) {
+                try {
+                    library = PuzzleLibrary.open(file);
+                } catch (IOException e) {
+                    Log.e(TAG, "open() failed", e);
+                }
+            }
+        }
+        return library;
+    }
+
+    // 从谜题库中随机载入一局没有出过的谜题，成功返回true
+    public boolean loadUnseenPuzzle(GameLogic gameLogic, GameLogic.Difficulty difficulty,
+                                    BloomFilter played, int maxAttempts) {
+        PuzzleCanonicalizer canonicalizer = new PuzzleCanonicalizer();
+        Random random = new Random();
+        for (int attempt = 0; attempt < maxAttempts; attempt++) {
+            if (!loadPuzzle(gameLogic, difficulty, random.nextInt(Integer.MAX_VALUE))) {
+                return false;
+            }
+            if (played.put(canonicalizer.canonicalHash(gameLogic.getBoard()))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 从谜题库中载入第index个谜题（超出数量时取模），成功返回true。
+    // 与installUpdate互斥，读取期间映射不会被关闭
+    public synchronized boolean loadPuzzle(GameLogic gameLogic, GameLogic.Difficulty difficulty, int index) {
+        PuzzleLibrary lib = getLibrary();
+        int size = gameLogic.getSize();
+        if (lib == null || lib.count(size, difficulty) == 0) {
+            return false;
+        }
+        GameLogic.CellState[][] puzzle = new GameLogic.CellState[size][size];
+        GameLogic.CellState[][] solution = new GameLogic.CellState[size][size];
+        try {
+            long seed = lib.read(size, difficulty, index % lib.count(size, difficulty), puzzle, solution);
+            gameLogic.loadPuzzle(puzzle, solution, seed);
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, "read() failed", e);
+            return false;
+        }
+    }
+
+    // 用新下载的谜题库替换当前文件；新文件校验失败时保留原文件
+    public synchronized boolean installUpdate(File downloaded) {
+        try {
+            PuzzleLibrary.open(downloaded).close();
+        } catch (IOException e) {
+            Log.e(TAG, "Rejected library update", e);
+            return false;
+        }
+        closeLibrary();
+        if (!downloaded.renameTo(file)) {
+            Log.e(TAG, "Could not install library update");
+            return false;
+        }
+        // 标记为已是最新，避免下次启动又被打包的版本覆盖
+        prefs().edit().putInt(KEY_LIBRARY_VERSION, BuildConfig.VERSION_CODE).apply();
+        return true;
+    }
+
+    public synchronized void closeLibrary() {
+        if (library != null) {
+            try {
+                library.close();
+            } catch (IOException e) {
+                Log.e(TAG, "close() failed", e);
+            }
+            library = null;
+        }
+    }
+
+    private void copyBundledLibraryIfNeeded() {
+        SharedPreferences prefs = prefs();
+        if (file.exists() && prefs.getInt(KEY_LIBRARY_VERSION, 0) >= BuildConfig.VERSION_CODE) {
+            return;
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+        try (InputStream in = context.getAssets().open(ASSET_NAME);
+             OutputStream out = new FileOutputStream(tmp)) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        } catch (FileNotFoundException e) {
+            // 这个构建没有打包谜题库
+            return;
+        } catch (IOException e) {
+            Log.e(TAG, "Copying bundled library failed", e);
+            return;
+        }
+        if (tmp.renameTo(file)) {
+            prefs.edit().putInt(KEY_LIBRARY_VERSION, BuildConfig.VERSION_CODE).apply();
+        }
+    }
+
+    private SharedPreferences prefs() {
+        return context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.helloworld.bluetooth;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ClockSyncTest {
+    // 对方时钟比本机快这么多
+    private static final long OFFSET = 5_000_000_000L;
+
+    // 本机在localSend时发出PING，去程forward、对方处理processing、回程backward
+    // 估计的offset为OFFSET + (forward - backward) / 2，delay为forward + backward
+    private static void sample(ClockSync sync, long localSend, long forward, long processing, long backward) {
+        long t1 = localSend;
+        long t2 = localSend + forward + OFFSET;
+        long t3 = t2 + processing;
+        long t4 = localSend + forward + processing + backward;
+        sync.addSample(t1, t2, t3, t4);
+    }
+
+    @Test
+    public void symmetricSampleGivesExactOffset() {
+        ClockSync sync = new ClockSync();
+        sample(sync, 1000, 3_000_000, 500_000, 3_000_000);
+        assertEquals(OFFSET, sync.getOffsetNanos());
+        assertEquals(6_000_000, sync.getDelayNanos());
+        assertEquals(OFFSET + 42, sync.toPeer(42));
+        assertEquals(42, sync.toLocal(OFFSET + 42));
+    }
+
+    // 排队只会让往返变慢，窗口内往返最快的样本决定估计，与到达顺序无关
+    @Test
+    public void picksMinimumDelaySample() {
+        ClockSync sync = new ClockSync();
+        sample(sync, 0, 20_000_000, 0, 2_000_000);
+        sample(sync, 100, 2_000_000, 1_000_000, 2_000_000);
+        sample(sync, 200, 2_000_000, 0, 30_000_000);
+        sample(sync, 300, 8_000_000, 0, 8_000_000);
+        assertEquals(4_000_000, sync.getDelayNanos());
+        assertEquals(OFFSET, sync.getOffsetNanos());
+    }
+
+    // 最好的样本被挤出窗口后改用窗口内剩下的最好样本
+    @Test
+    public void bestSampleExpiresAfterWindow() {
+        ClockSync sync = new ClockSync();
+        sample(sync, 0, 1_000_000, 0, 1_000_000);
+        for (int i = 1; i < ClockSync.SAMPLE_WINDOW; i++) {
+            sample(sync, i, 6_000_000, 0, 4_000_000);
+            assertEquals(2_000_000, sync.getDelayNanos());
+        }
+        sample(sync, 99, 6_000_000, 0, 4_000_000);
+        assertEquals(10_000_000, sync.getDelayNanos());
+        assertEquals(OFFSET + 1_000_000, sync.getOffsetNanos());
+    }
+
+    // 对方处理时间比整个往返还长：时间戳不可信，丢弃
+    @Test
+    public void rejectsNegativeDelay() {
+        ClockSync sync = new ClockSync();
+        sync.addSample(0, OFFSET + 1000, OFFSET + 10_000_000, 2_000_000);
+        assertEquals(0, sync.getSampleCount());
+        assertEquals(Long.MAX_VALUE, sync.getDelayNanos());
+        assertEquals(0, sync.getOffsetNanos());
+    }
+
+    @Test
+    public void syncedAfterMinSamples() {
+        ClockSync sync = new ClockSync();
+        for (int i = 0; i < ClockSync.MIN_SAMPLES; i++) {
+            assertFalse(sync.isSynced());
+            // 没有估计之前换算原样返回
+            assertEquals(i == 0 ? 7 : 7 + OFFSET, sync.toPeer(7));
+            sample(sync, i, 1_000_000, 0, 1_000_000);
+        }
+        assertTrue(sync.isSynced());
+    }
+
+    @Test
+    public void resetDiscardsEstimate() {
+        ClockSync sync = new ClockSync();
+        for (int i = 0; i < ClockSync.MIN_SAMPLES; i++) {
+            sample(sync, i, 1_000_000, 0, 1_000_000);
+        }
+        sync.reset();
+        assertFalse(sync.isSynced());
+        assertEquals(0, sync.getSampleCount());
+        assertEquals(0, sync.getOffsetNanos());
+        assertEquals(Long.MAX_VALUE, sync.getDelayNanos());
+
+        // 重置后的慢样本不会输给重置前的快样本
+        sample(sync, 10, 5_000_000, 0, 5_000_000);
+        assertEquals(10_000_000, sync.getDelayNanos());
+    }
+}
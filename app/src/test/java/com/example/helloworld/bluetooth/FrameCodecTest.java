@@ -0,0 +1,64 @@
+package com.example.helloworld.bluetooth;
+
+import com.example.helloworld.game.GameLogic;
+import com.example.helloworld.game.LineRules;
+import com.example.helloworld.game.PuzzleCodec;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+public class FrameCodecTest {
+    // 与BluetoothConnection.sendGameState相同的布局：快照头后接PuzzleCodec编码的棋盘（这里是空棋盘）
+    private static byte[] snapshot(int size) {
+        GameLogic.CellState[][] board = new GameLogic.CellState[size][size];
+        for (GameLogic.CellState[] row : board) {
+            Arrays.fill(row, GameLogic.CellState.EMPTY);
+        }
+        byte[] payload = new byte[FrameCodec.SNAPSHOT_HEADER_LENGTH + PuzzleCodec.encodedLength(size, 0)];
+        new PuzzleCodec().encode(board, null, false, 0, payload, FrameCodec.SNAPSHOT_HEADER_LENGTH);
+        return payload;
+    }
+
+    @Test
+    public void acceptsWellFormedSnapshots() {
+        for (int size = 2; size <= LineRules.MAX_LENGTH; size += 2) {
+            byte[] payload = snapshot(size);
+            assertEquals(size, FrameCodec.snapshotBoardSize(payload, payload.length));
+        }
+    }
+
+    // 对方发来超过LineRules.MAX_LENGTH的大小时不能交给GameLogic（它会抛出IllegalArgumentException）
+    @Test
+    public void rejectsOversizedSnapshot() {
+        int size = LineRules.MAX_LENGTH + 2;
+        byte[] payload = new byte[FrameCodec.SNAPSHOT_HEADER_LENGTH + PuzzleCodec.encodedLength(size, 0)];
+        payload[FrameCodec.SNAPSHOT_HEADER_LENGTH] = (byte) size;
+        assertEquals(-1, FrameCodec.snapshotBoardSize(payload, payload.length));
+
+        // 无符号字节能表示的最大值
+        byte[] huge = new byte[FrameCodec.SNAPSHOT_HEADER_LENGTH + PuzzleCodec.encodedLength(255, 0)];
+        huge[FrameCodec.SNAPSHOT_HEADER_LENGTH] = (byte) 255;
+        assertEquals(-1, FrameCodec.snapshotBoardSize(huge, huge.length));
+    }
+
+    @Test
+    public void rejectsZeroAndOddSizes() {
+        for (int size : new int[]{0, 1, 5, 7, 15}) {
+            byte[] payload = new byte[FrameCodec.SNAPSHOT_HEADER_LENGTH + PuzzleCodec.encodedLength(size, 0)];
+            payload[FrameCodec.SNAPSHOT_HEADER_LENGTH] = (byte) size;
+            assertEquals(-1, FrameCodec.snapshotBoardSize(payload, payload.length));
+        }
+    }
+
+    // 截断的快照：没有大小字节，或放不下声明大小的棋盘
+    @Test
+    public void rejectsTruncatedSnapshot() {
+        byte[] payload = snapshot(LineRules.MAX_LENGTH);
+        assertEquals(LineRules.MAX_LENGTH, FrameCodec.snapshotBoardSize(payload, payload.length));
+        assertEquals(-1, FrameCodec.snapshotBoardSize(payload, payload.length - 1));
+        assertEquals(-1, FrameCodec.snapshotBoardSize(payload, FrameCodec.SNAPSHOT_HEADER_LENGTH));
+    }
+}
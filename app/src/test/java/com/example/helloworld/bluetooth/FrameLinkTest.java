@@ -0,0 +1,87 @@
+package com.example.helloworld.bluetooth;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class FrameLinkTest {
+    // 只关心onFrame的返回值，其余回调什么也不做
+    private static class Receiver implements FrameLink.Callback {
+        boolean accept = true;
+        int frames;
+
+        @Override
+        public void onHandshake(FrameLink link, boolean resumed) {
+        }
+
+        @Override
+        public boolean onFrame(int type, byte[] buffer, int offset, int length) {
+            if (accept) {
+                frames++;
+            }
+            return accept;
+        }
+
+        @Override
+        public void onLinkStats(LinkMonitor.Metrics metrics) {
+        }
+
+        @Override
+        public void onLinkDead(long silenceMillis) {
+        }
+
+        @Override
+        public void onWriteError(IOException e) {
+        }
+
+        @Override
+        public void onClosed(FrameLink link, IOException cause) {
+        }
+    }
+
+    // 不调用run()：没有连接和发送线程，直接把帧交给onFrame，相当于读线程切出了这些帧
+    private static FrameLink handshaken(Session session, Receiver receiver) throws IOException {
+        FrameLink link = new FrameLink(null, session, receiver, 16, OutboundWriter.OVERFLOW_DROP, 1000, 5000);
+        byte[] hello = new Session().hello();
+        link.onFrame(FrameCodec.TYPE_HELLO, hello, 0, hello.length);
+        return link;
+    }
+
+    private static void deliver(FrameLink link, int n) throws IOException {
+        link.onFrame(FrameCodec.TYPE_MOVE, new byte[]{(byte) n}, 0, 1);
+    }
+
+    @Test
+    public void acceptedFramesAreCountedForAck() throws IOException {
+        Session session = new Session();
+        Receiver receiver = new Receiver();
+        FrameLink link = handshaken(session, receiver);
+        for (int i = 0; i < 3; i++) {
+            deliver(link, i);
+        }
+        assertEquals(3, receiver.frames);
+        assertEquals(3, session.takeAck(1));
+    }
+
+    // 收件箱没有接受的帧（已关闭或读线程被中断）不能算作收到，否则会被确认，对方不再补发
+    @Test
+    public void rejectedFrameIsNotAcknowledged() throws IOException {
+        Session session = new Session();
+        Receiver receiver = new Receiver();
+        FrameLink link = handshaken(session, receiver);
+        deliver(link, 1);
+
+        receiver.accept = false;
+        try {
+            deliver(link, 2);
+            fail("expected the link to close");
+        } catch (IOException expected) {
+            // 连接随之关闭
+        }
+        assertEquals(1, session.takeAck(1));
+        assertEquals(-1, session.takeAck(1));
+    }
+}
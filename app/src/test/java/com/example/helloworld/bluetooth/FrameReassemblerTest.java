@@ -0,0 +1,143 @@
+package com.example.helloworld.bluetooth;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FrameReassemblerTest {
+    // 记录收到的帧，回调返回后缓冲区会被覆盖，所以复制一份
+    private static class Collector implements FrameReassembler.Handler {
+        final List<Integer> types = new ArrayList<>();
+        final List<byte[]> payloads = new ArrayList<>();
+
+        @Override
+        public void onFrame(int type, byte[] buffer, int offset, int length) {
+            types.add(type);
+            payloads.add(Arrays.copyOfRange(buffer, offset, offset + length));
+        }
+    }
+
+    // 长度各异的一组帧（包括空负载和需要两三个字节长度前缀的），首尾相接
+    private static byte[][] samplePayloads(Random random) {
+        int[] lengths = {0, 1, 19, 127, 128, 300, 16383, 16384, 5000};
+        byte[][] payloads = new byte[lengths.length][];
+        for (int i = 0; i < lengths.length; i++) {
+            payloads[i] = new byte[lengths[i]];
+            random.nextBytes(payloads[i]);
+        }
+        return payloads;
+    }
+
+    private static byte[] concat(byte[][] payloads) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < payloads.length; i++) {
+            byte[] frame = FrameCodec.encode(FrameCodec.TYPE_TEXT + i % 12, payloads[i]);
+            out.write(frame, 0, frame.length);
+        }
+        return out.toByteArray();
+    }
+
+    private static void assertFrames(byte[][] expected, Collector collector) {
+        assertEquals(expected.length, collector.payloads.size());
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(FrameCodec.TYPE_TEXT + i % 12, (int) collector.types.get(i));
+            assertArrayEquals(expected[i], collector.payloads.get(i));
+        }
+    }
+
+    @Test
+    public void reassemblesFramesFedOneByteAtATime() throws IOException {
+        byte[][] payloads = samplePayloads(new Random(1));
+        byte[] stream = concat(payloads);
+        FrameReassembler reassembler = new FrameReassembler(16);
+        Collector collector = new Collector();
+        for (int i = 0; i < stream.length; i++) {
+            reassembler.feed(stream, i, 1, collector);
+        }
+        assertFrames(payloads, collector);
+        assertEquals(0, reassembler.pending());
+    }
+
+    // 多个帧在一次read()中到达
+    @Test
+    public void deliversCoalescedFramesFromOneRead() throws IOException {
+        byte[][] payloads = samplePayloads(new Random(2));
+        byte[] stream = concat(payloads);
+        FrameReassembler reassembler = new FrameReassembler();
+        Collector collector = new Collector();
+        reassembler.feed(stream, 0, stream.length, collector);
+        assertFrames(payloads, collector);
+        assertEquals(0, reassembler.pending());
+    }
+
+    // 随机切分，帧边界和切分点任意错开
+    @Test
+    public void reassemblesRandomlySplitStream() throws IOException {
+        Random random = new Random(3);
+        byte[][] payloads = samplePayloads(random);
+        byte[] stream = concat(payloads);
+        FrameReassembler reassembler = new FrameReassembler(64);
+        Collector collector = new Collector();
+        int pos = 0;
+        while (pos < stream.length) {
+            int chunk = Math.min(stream.length - pos, 1 + random.nextInt(700));
+            reassembler.feed(stream, pos, chunk, collector);
+            pos += chunk;
+        }
+        assertFrames(payloads, collector);
+    }
+
+    // 长于当前缓冲区的帧使缓冲区扩容，扩容不超过最长一帧所需的大小
+    @Test
+    public void growsBufferForLargeFrame() throws IOException {
+        byte[] payload = new byte[FrameCodec.MAX_PAYLOAD];
+        new Random(4).nextBytes(payload);
+        byte[] frame = FrameCodec.encode(FrameCodec.TYPE_SNAPSHOT, payload);
+        FrameReassembler reassembler = new FrameReassembler(32);
+        Collector collector = new Collector();
+        for (int pos = 0; pos < frame.length; pos += 1000) {
+            reassembler.feed(frame, pos, Math.min(1000, frame.length - pos), collector);
+        }
+        assertEquals(1, collector.payloads.size());
+        assertArrayEquals(payload, collector.payloads.get(0));
+        assertTrue(reassembler.capacity() >= frame.length);
+        assertTrue(reassembler.capacity() <= FrameCodec.frameLength(FrameCodec.MAX_PAYLOAD));
+    }
+
+    // 尚未完整的帧保留在缓冲区中，不回调
+    @Test
+    public void keepsIncompleteTail() throws IOException {
+        byte[] frame = FrameCodec.encode(FrameCodec.TYPE_MOVE, new byte[]{1, 2, 3});
+        FrameReassembler reassembler = new FrameReassembler();
+        Collector collector = new Collector();
+        reassembler.feed(frame, 0, frame.length - 1, collector);
+        assertEquals(0, collector.payloads.size());
+        assertEquals(frame.length - 1, reassembler.pending());
+        reassembler.feed(frame, frame.length - 1, 1, collector);
+        assertArrayEquals(new byte[]{1, 2, 3}, collector.payloads.get(0));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOversizedLength() throws IOException {
+        byte[] header = new byte[FrameCodec.MAX_LENGTH_BYTES];
+        FrameCodec.writeVarint(FrameCodec.MAX_PAYLOAD + 1, header, 0);
+        new FrameReassembler().feed(header, 0, header.length, new Collector());
+    }
+
+    // 长度前缀超过MAX_LENGTH_BYTES个字节仍未结束
+    @Test(expected = IOException.class)
+    public void rejectsMalformedVarint() throws IOException {
+        byte[] header = new byte[FrameCodec.MAX_LENGTH_BYTES + 1];
+        Arrays.fill(header, (byte) 0x80);
+        new FrameReassembler().feed(header, 0, header.length, new Collector());
+    }
+}
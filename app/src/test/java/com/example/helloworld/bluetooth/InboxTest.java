@@ -0,0 +1,227 @@
+package com.example.helloworld.bluetooth;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class InboxTest {
+    // 只记下提交的任务，由测试决定什么时候在当前线程上执行，相当于界面线程的消息队列
+    private static class ManualExecutor implements Executor {
+        private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+
+        @Override
+        public synchronized void execute(Runnable task) {
+            tasks.add(task);
+        }
+
+        synchronized int pending() {
+            return tasks.size();
+        }
+
+        // 执行最早提交的一个任务
+        void runOne() {
+            Runnable task;
+            synchronized (this) {
+                task = tasks.poll();
+            }
+            task.run();
+        }
+
+        void runAll() {
+            while (pending() > 0) {
+                runOne();
+            }
+        }
+    }
+
+    // 记下收到的帧（payload只在回调期间有效，所以拷贝一份）
+    private static class Recorder implements Inbox.Consumer {
+        final List<Integer> types = new ArrayList<>();
+        final List<byte[]> payloads = new ArrayList<>();
+
+        @Override
+        public void deliver(int type, byte[] payload, int length) {
+            types.add(type);
+            payloads.add(Arrays.copyOf(payload, length));
+        }
+    }
+
+    private static byte[] bytes(int n, int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (n * 31 + i);
+        }
+        return data;
+    }
+
+    // 连续放入的帧只提交一次任务，一批按顺序全部投递
+    @Test
+    public void deliversQueuedFramesInOneBatch() {
+        ManualExecutor executor = new ManualExecutor();
+        Recorder recorder = new Recorder();
+        Inbox inbox = new Inbox(16, executor, recorder);
+        for (int i = 0; i < 10; i++) {
+            byte[] payload = bytes(i, 3);
+            assertTrue(inbox.put(i, payload, 0, payload.length));
+        }
+        assertEquals(1, executor.pending());
+        assertEquals(10, inbox.depth());
+        assertEquals(10, inbox.getHighWaterMark());
+
+        executor.runAll();
+        assertEquals(10, recorder.types.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i, (int) recorder.types.get(i));
+            assertArrayEquals(bytes(i, 3), recorder.payloads.get(i));
+        }
+        assertEquals(0, inbox.depth());
+        assertEquals(10, inbox.getDelivered());
+        assertEquals(1, inbox.getBatches());
+    }
+
+    // 一批最多处理有限个帧，剩下的重新提交，不会一次占住消费线程太久
+    @Test
+    public void splitsLongBacklogIntoSeveralBatches() {
+        ManualExecutor executor = new ManualExecutor();
+        Recorder recorder = new Recorder();
+        Inbox inbox = new Inbox(256, executor, recorder);
+        byte[] payload = new byte[1];
+        for (int i = 0; i < 200; i++) {
+            payload[0] = (byte) i;
+            assertTrue(inbox.put(FrameCodec.TYPE_MOVE, payload, 0, 1));
+        }
+        executor.runOne();
+        assertTrue(recorder.types.size() < 200);
+        assertEquals(1, executor.pending());
+
+        executor.runAll();
+        assertEquals(200, recorder.types.size());
+        for (int i = 0; i < 200; i++) {
+            assertEquals((byte) i, recorder.payloads.get(i)[0]);
+        }
+        assertTrue(inbox.getBatches() > 1);
+    }
+
+    // 比槽位缓冲区更长的帧照样完整投递；只拷贝offset开始的length个字节，之后改动调用方的缓冲区不影响投递
+    @Test
+    public void copiesPayloadAndGrowsSlots() {
+        ManualExecutor executor = new ManualExecutor();
+        Recorder recorder = new Recorder();
+        Inbox inbox = new Inbox(4, executor, recorder);
+        byte[] large = bytes(7, 5000);
+        assertTrue(inbox.put(FrameCodec.TYPE_SNAPSHOT, large, 100, 4000));
+        byte[] small = bytes(8, 10);
+        assertTrue(inbox.put(FrameCodec.TYPE_MOVE, small, 0, small.length));
+        Arrays.fill(large, (byte) 0);
+        Arrays.fill(small, (byte) 0);
+
+        executor.runAll();
+        assertArrayEquals(Arrays.copyOfRange(bytes(7, 5000), 100, 4100), recorder.payloads.get(0));
+        assertArrayEquals(bytes(8, 10), recorder.payloads.get(1));
+    }
+
+    // 暂停期间的帧留在收件箱里，恢复后按顺序补发
+    @Test
+    public void pauseHoldsFramesUntilResume() {
+        ManualExecutor executor = new ManualExecutor();
+        Recorder recorder = new Recorder();
+        Inbox inbox = new Inbox(16, executor, recorder);
+        inbox.pause();
+        for (int i = 0; i < 3; i++) {
+            assertTrue(inbox.put(i, new byte[0], 0, 0));
+        }
+        executor.runAll();
+        assertEquals(0, recorder.types.size());
+        assertEquals(3, inbox.depth());
+
+        inbox.resume();
+        executor.runAll();
+        assertEquals(Arrays.asList(0, 1, 2), recorder.types);
+        assertEquals(0, inbox.depth());
+    }
+
+    // 关闭后排队的帧不再投递，put返回false
+    @Test
+    public void closeDropsQueuedFrames() {
+        ManualExecutor executor = new ManualExecutor();
+        Recorder recorder = new Recorder();
+        Inbox inbox = new Inbox(16, executor, recorder);
+        assertTrue(inbox.put(1, new byte[0], 0, 0));
+        inbox.close();
+        executor.runAll();
+        assertEquals(0, recorder.types.size());
+        assertFalse(inbox.put(2, new byte[0], 0, 0));
+    }
+
+    // 收件箱满时读线程被中断，put返回false，帧没有放入
+    @Test
+    public void putReturnsFalseWhenFullAndInterrupted() {
+        ManualExecutor executor = new ManualExecutor();
+        Recorder recorder = new Recorder();
+        Inbox inbox = new Inbox(4, executor, recorder);
+        int accepted = 0;
+        while (inbox.depth() < 4) {
+            assertTrue(inbox.put(accepted++, new byte[0], 0, 0));
+        }
+        Thread.currentThread().interrupt();
+        try {
+            assertFalse(inbox.put(99, new byte[0], 0, 0));
+        } finally {
+            Thread.interrupted();
+        }
+        executor.runAll();
+        assertEquals(accepted, recorder.types.size());
+        assertFalse(recorder.types.contains(99));
+    }
+
+    // 收件箱满时读线程等待，消费线程腾出空位后继续放入
+    @Test
+    public void fullInboxBlocksUntilDrained() throws InterruptedException {
+        ManualExecutor executor = new ManualExecutor();
+        Recorder recorder = new Recorder();
+        Inbox inbox = new Inbox(4, executor, recorder);
+        while (inbox.depth() < 4) {
+            assertTrue(inbox.put(1, new byte[0], 0, 0));
+        }
+        AtomicBoolean result = new AtomicBoolean();
+        Thread reader = new Thread(() -> result.set(inbox.put(2, new byte[0], 0, 0)));
+        reader.start();
+        reader.join(50);
+        assertTrue(reader.isAlive());
+
+        executor.runOne();
+        reader.join(5000);
+        assertFalse(reader.isAlive());
+        assertTrue(result.get());
+        assertEquals(1, inbox.depth());
+    }
+
+    // 收件箱满时关闭，等待中的读线程返回false
+    @Test
+    public void closeReleasesBlockedReader() throws InterruptedException {
+        Inbox inbox = new Inbox(4, new ManualExecutor(), new Recorder());
+        while (inbox.depth() < 4) {
+            assertTrue(inbox.put(1, new byte[0], 0, 0));
+        }
+        AtomicBoolean result = new AtomicBoolean(true);
+        Thread reader = new Thread(() -> result.set(inbox.put(2, new byte[0], 0, 0)));
+        reader.start();
+        reader.join(50);
+        assertTrue(reader.isAlive());
+
+        inbox.close();
+        reader.join(5000);
+        assertFalse(reader.isAlive());
+        assertFalse(result.get());
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.helloworld.bluetooth;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class OutboundWriterTest {
+    private static final long TIMEOUT_MS = 5000;
+
+    private static byte[] frame(int n, int length) {
+        byte[] payload = new byte[length];
+        for (int i = 0; i < length; i++) {
+            payload[i] = (byte) (n + i);
+        }
+        return FrameCodec.encode(FrameCodec.TYPE_TEXT, payload);
+    }
+
+    private static void awaitFramesWritten(OutboundWriter writer, long frames) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (writer.getMetrics().framesWritten < frames) {
+            assertTrue("timed out: " + writer.getMetrics(), System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    // 所有帧按放入顺序原样写出，超过合并缓冲区的大帧单独写出也不乱序
+    @Test
+    public void writesAllFramesInOrder() throws InterruptedException {
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        OutboundWriter writer = new OutboundWriter(sink, 64, OutboundWriter.OVERFLOW_BLOCK, null);
+        writer.start();
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        int count = 2000;
+        for (int i = 0; i < count; i++) {
+            byte[] f = frame(i, i % 500 == 0 ? 10000 : i % 37);
+            expected.write(f, 0, f.length);
+            assertTrue(writer.offer(f));
+        }
+        awaitFramesWritten(writer, count);
+        writer.close();
+
+        assertArrayEquals(expected.toByteArray(), sink.toByteArray());
+        OutboundWriter.Metrics metrics = writer.getMetrics();
+        assertEquals(count, metrics.enqueued);
+        assertEquals(0, metrics.dropped);
+        assertEquals(expected.size(), metrics.bytesWritten);
+        assertTrue(metrics.writes <= count);
+    }
+
+    // 没有启动的writer不会取走帧，队列满后OVERFLOW_DROP直接丢弃并计数
+    @Test
+    public void dropPolicyCountsOverflow() {
+        OutboundWriter writer = new OutboundWriter(new ByteArrayOutputStream(), 4, OutboundWriter.OVERFLOW_DROP, null);
+        for (int i = 0; i < writer.getCapacity(); i++) {
+            assertTrue(writer.offer(frame(i, 1)));
+        }
+        assertFalse(writer.offer(frame(99, 1)));
+        assertFalse(writer.offer(frame(100, 1)));
+
+        OutboundWriter.Metrics metrics = writer.getMetrics();
+        assertEquals(writer.getCapacity(), metrics.depth);
+        assertEquals(writer.getCapacity(), metrics.maxDepth);
+        assertEquals(writer.getCapacity(), metrics.enqueued);
+        assertEquals(2, metrics.dropped);
+    }
+
+    // OVERFLOW_BLOCK下生产者等到发送线程腾出空位
+    @Test
+    public void blockPolicyWaitsForSpace() throws InterruptedException {
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        OutboundWriter writer = new OutboundWriter(sink, 2, OutboundWriter.OVERFLOW_BLOCK, null);
+        for (int i = 0; i < writer.getCapacity(); i++) {
+            assertTrue(writer.offer(frame(i, 1)));
+        }
+        CountDownLatch offered = new CountDownLatch(1);
+        Thread producer = new Thread(() -> {
+            if (writer.offer(frame(42, 1))) {
+                offered.countDown();
+            }
+        });
+        producer.start();
+        assertFalse(offered.await(50, TimeUnit.MILLISECONDS));
+
+        writer.start();
+        assertTrue(offered.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        awaitFramesWritten(writer, writer.getCapacity() + 1);
+        writer.close();
+        assertEquals(0, writer.getMetrics().dropped);
+    }
+
+    @Test
+    public void closeRejectsFurtherFrames() {
+        OutboundWriter writer = new OutboundWriter(new ByteArrayOutputStream(), 8, OutboundWriter.OVERFLOW_BLOCK, null);
+        writer.start();
+        assertFalse(writer.isClosed());
+        writer.close();
+        assertTrue(writer.isClosed());
+        assertFalse(writer.offer(frame(1, 1)));
+        assertEquals(0, writer.getMetrics().enqueued);
+    }
+
+    // 写出失败时通知监听器并关闭，之后offer返回false
+    @Test
+    public void writeErrorClosesWriterAndNotifiesListener() throws InterruptedException {
+        IOException failure = new IOException("broken pipe");
+        OutputStream broken = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw failure;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                throw failure;
+            }
+        };
+        AtomicReference<IOException> reported = new AtomicReference<>();
+        CountDownLatch errored = new CountDownLatch(1);
+        OutboundWriter writer = new OutboundWriter(broken, 8, OutboundWriter.OVERFLOW_DROP, e -> {
+            reported.set(e);
+            errored.countDown();
+        });
+        writer.start();
+
+        assertTrue(writer.offer(frame(1, 1)));
+        assertTrue(errored.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        assertEquals(failure, reported.get());
+        assertTrue(writer.isClosed());
+        assertFalse(writer.offer(frame(2, 1)));
+        assertEquals(0, writer.getMetrics().framesWritten);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownOverflowPolicy() {
+        new OutboundWriter(new ByteArrayOutputStream(), 8, 7, null);
+    }
+}
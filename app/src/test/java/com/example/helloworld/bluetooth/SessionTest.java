@@ -0,0 +1,143 @@
+package com.example.helloworld.bluetooth;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SessionTest {
+    // 没有启动发送线程的writer：放入的帧留在队列里，depth()就是交给它的帧数
+    private static OutboundWriter idleWriter() {
+        return new OutboundWriter(new ByteArrayOutputStream(), 256, OutboundWriter.OVERFLOW_DROP, null);
+    }
+
+    private static byte[] frame(int n) {
+        return FrameCodec.encode(FrameCodec.TYPE_MOVE, new byte[]{(byte) n});
+    }
+
+    // 双方互发HELLO，返回{a是否恢复, b是否恢复}
+    private static boolean[] handshake(Session a, OutboundWriter wa, Session b, OutboundWriter wb) {
+        byte[] helloA = a.hello();
+        byte[] helloB = b.hello();
+        return new boolean[]{
+                a.onHello(helloB, 0, helloB.length, wa),
+                b.onHello(helloA, 0, helloA.length, wb)};
+    }
+
+    @Test
+    public void firstHandshakeStartsNewSessionThenResumes() {
+        Session a = new Session();
+        Session b = new Session();
+        boolean[] first = handshake(a, idleWriter(), b, idleWriter());
+        assertFalse(first[0]);
+        assertFalse(first[1]);
+        assertTrue(a.isEstablished());
+
+        a.detach();
+        b.detach();
+        boolean[] second = handshake(a, idleWriter(), b, idleWriter());
+        assertTrue(second[0]);
+        assertTrue(second[1]);
+    }
+
+    // 一方放弃了会话时，双方都从头开始，不会一方恢复、另一方重新开始
+    @Test
+    public void resetOnOneSideStartsNewSessionOnBoth() {
+        Session a = new Session();
+        Session b = new Session();
+        handshake(a, idleWriter(), b, idleWriter());
+        assertTrue(a.send(frame(1)));
+        b.onReceived();
+
+        a.reset();
+        b.detach();
+        boolean[] result = handshake(a, idleWriter(), b, idleWriter());
+        assertFalse(result[0]);
+        assertFalse(result[1]);
+        assertEquals(0, a.unacknowledged());
+    }
+
+    // 恢复时从对方已收到的位置补发
+    @Test
+    public void resumeReplaysFramesThePeerDidNotReceive() {
+        Session a = new Session();
+        Session b = new Session();
+        handshake(a, idleWriter(), b, idleWriter());
+        for (int i = 1; i <= 3; i++) {
+            assertTrue(a.send(frame(i)));
+        }
+        b.onReceived();
+
+        a.detach();
+        b.detach();
+        OutboundWriter resumed = idleWriter();
+        boolean[] result = handshake(a, resumed, b, idleWriter());
+        assertTrue(result[0]);
+        assertTrue(result[1]);
+        assertEquals(2, resumed.depth());
+        assertEquals(2, a.unacknowledged());
+    }
+
+    // 发送线程已退出时帧照样编号并留在缓冲区里，恢复后补发
+    @Test
+    public void keepsFramesSentToClosedWriter() {
+        Session a = new Session();
+        Session b = new Session();
+        OutboundWriter writer = idleWriter();
+        handshake(a, writer, b, idleWriter());
+        writer.close();
+        assertTrue(a.send(frame(1)));
+        assertTrue(a.send(frame(2)));
+        assertEquals(2, a.unacknowledged());
+
+        a.detach();
+        b.detach();
+        OutboundWriter resumed = idleWriter();
+        assertTrue(handshake(a, resumed, b, idleWriter())[0]);
+        assertEquals(2, resumed.depth());
+    }
+
+    // 发送队列满时帧被拒绝，不占用帧号
+    @Test
+    public void rejectsFrameWhenSendQueueIsFull() {
+        Session a = new Session();
+        OutboundWriter writer = new OutboundWriter(new ByteArrayOutputStream(), 2, OutboundWriter.OVERFLOW_DROP, null);
+        handshake(a, writer, new Session(), idleWriter());
+        for (int i = 0; i < writer.getCapacity(); i++) {
+            assertTrue(a.send(frame(i)));
+        }
+        assertFalse(a.send(frame(0)));
+        assertEquals(writer.getCapacity(), a.unacknowledged());
+    }
+
+    // 重放缓冲区满时拒绝新帧，而不是丢掉还没确认的帧；确认之后又能发送
+    @Test
+    public void refusesFramesWhenReplayBufferIsFull() {
+        Session a = new Session();
+        handshake(a, idleWriter(), new Session(), idleWriter());
+        a.detach();
+        for (int i = 0; i < Session.REPLAY_CAPACITY; i++) {
+            assertTrue(a.send(frame(i)));
+        }
+        assertFalse(a.send(frame(0)));
+        assertEquals(Session.REPLAY_CAPACITY, a.unacknowledged());
+
+        a.acknowledge(1);
+        assertTrue(a.send(frame(0)));
+    }
+
+    @Test
+    public void acknowledgesInBatches() {
+        Session a = new Session();
+        handshake(a, idleWriter(), new Session(), idleWriter());
+        a.onReceived();
+        a.onReceived();
+        assertEquals(-1, a.takeAck(3));
+        a.onReceived();
+        assertEquals(3, a.takeAck(3));
+        assertEquals(-1, a.takeAck(1));
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.helloworld.game;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BloomFilterTest {
+    @Test
+    public void hasNoFalseNegatives() {
+        BloomFilter filter = BloomFilter.create(10000, 0.01);
+        Random random = new Random(1);
+        long[] hashes = new long[10000];
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = random.nextLong();
+            filter.put(hashes[i]);
+        }
+        for (long hash : hashes) {
+            assertTrue(filter.mightContain(hash));
+        }
+    }
+
+    // 装到预计容量时误判率接近目标（这里放宽到两倍）
+    @Test
+    public void falsePositiveRateIsNearTarget() {
+        BloomFilter filter = BloomFilter.create(10000, 0.01);
+        Random random = new Random(2);
+        for (int i = 0; i < 10000; i++) {
+            filter.put(random.nextLong());
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 100000; i++) {
+            if (filter.mightContain(random.nextLong())) {
+                falsePositives++;
+            }
+        }
+        assertTrue("false positives: " + falsePositives, falsePositives < 2000);
+    }
+
+    @Test
+    public void putReportsRepeatedHash() {
+        BloomFilter filter = BloomFilter.create(100, 0.01);
+        assertTrue(filter.put(42));
+        assertFalse(filter.put(42));
+        assertEquals(1, filter.getInsertions());
+        filter.clear();
+        assertFalse(filter.mightContain(42));
+        assertEquals(0, filter.getInsertions());
+    }
+
+    @Test
+    public void survivesRoundTrip() throws IOException {
+        BloomFilter filter = BloomFilter.create(1000, 0.01);
+        Random random = new Random(3);
+        long[] hashes = new long[1000];
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = random.nextLong();
+            filter.put(hashes[i]);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        filter.writeTo(new DataOutputStream(bytes));
+        BloomFilter copy = BloomFilter.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())),
+                1000, 0.01);
+
+        assertEquals(filter.getInsertions(), copy.getInsertions());
+        assertEquals(filter.getNumBits(), copy.getNumBits());
+        assertEquals(filter.getNumHashes(), copy.getNumHashes());
+        for (long hash : hashes) {
+            assertTrue(copy.mightContain(hash));
+        }
+        for (int i = 0; i < 1000; i++) {
+            long probe = random.nextLong();
+            assertEquals(filter.mightContain(probe), copy.mightContain(probe));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsWrongMagic() throws IOException {
+        byte[] garbage = new byte[64];
+        BloomFilter.readFrom(new DataInputStream(new ByteArrayInputStream(garbage)), 1000, 0.01);
+    }
+
+    // 头部的long个数被篡改成很大的值时，在分配位数组之前就报错
+    @Test(expected = IOException.class)
+    public void rejectsCorruptWordCount() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BloomFilter.create(1000, 0.01).writeTo(new DataOutputStream(bytes));
+        byte[] data = bytes.toByteArray();
+        // MAGIC之后就是long个数
+        data[4] = 0x7F;
+        BloomFilter.readFrom(new DataInputStream(new ByteArrayInputStream(data)), 1000, 0.01);
+    }
+
+    // 按其他容量创建的过滤器不能当作当前参数的过滤器读入
+    @Test(expected = IOException.class)
+    public void rejectsFilterOfDifferentShape() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BloomFilter.create(500, 0.01).writeTo(new DataOutputStream(bytes));
+        BloomFilter.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), 1000, 0.01);
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.helloworld.game;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LineRulesTest {
+    // 直接按格子扫描的参考实现
+    private static boolean bruteRuns(int[] cells, int maxRun) {
+        int run = 0;
+        int last = 0;
+        for (int cell : cells) {
+            if (cell == 0 || cell == 3) {
+                run = 0;
+                last = 0;
+                continue;
+            }
+            run = cell == last ? run + 1 : 1;
+            last = cell;
+            if (run > maxRun) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int count(int[] cells, int symbol) {
+        int n = 0;
+        for (int cell : cells) {
+            if (cell == symbol) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    private static int pack(int[] cells) {
+        int code = 0;
+        for (int i = 0; i < cells.length; i++) {
+            code |= cells[i] << (2 * i);
+        }
+        return code;
+    }
+
+    private static void checkAgainstBruteForce(LineRules rules, int[] cells) {
+        int length = cells.length;
+        int code = pack(cells);
+        int x = count(cells, 1);
+        int o = count(cells, 2);
+        boolean runs = bruteRuns(cells, rules.getMaxRun());
+        boolean partial = runs && (!rules.isBalanced() || (x <= length / 2 && o <= length / 2));
+        boolean complete = runs && (!rules.isBalanced() || x == o);
+
+        String message = "maxRun=" + rules.getMaxRun() + " code=" + Integer.toHexString(code) + " len=" + length;
+        assertEquals(message, runs, rules.allowsRuns(code, length));
+        assertEquals(message, partial, rules.isValidPartial(code, length));
+        assertEquals(message, complete, rules.isValidComplete(code, length));
+        assertEquals(x, LineRules.countX(code));
+        assertEquals(o, LineRules.countO(code));
+        assertEquals(x + o == length, LineRules.isFull(code, length));
+    }
+
+    // 短线穷举所有X/O/空组合，与逐格扫描的结果一致
+    @Test
+    public void dfaMatchesBruteForceExhaustively() {
+        for (int maxRun = 1; maxRun <= 4; maxRun++) {
+            for (boolean balanced : new boolean[]{true, false}) {
+                LineRules rules = new LineRules.Builder().maxRun(maxRun).balanced(balanced).build();
+                for (int length = 1; length <= 9; length++) {
+                    int[] cells = new int[length];
+                    int total = 1;
+                    for (int i = 0; i < length; i++) {
+                        total *= 3;
+                    }
+                    for (int n = 0; n < total; n++) {
+                        int rest = n;
+                        for (int i = 0; i < length; i++) {
+                            cells[i] = rest % 3;
+                            rest /= 3;
+                        }
+                        checkAgainstBruteForce(rules, cells);
+                    }
+                }
+            }
+        }
+    }
+
+    // 最长16格的线随机抽样
+    @Test
+    public void dfaMatchesBruteForceOnLongLines() {
+        Random random = new Random(3);
+        for (int maxRun = 1; maxRun <= 5; maxRun++) {
+            LineRules rules = new LineRules.Builder().maxRun(maxRun).build();
+            for (int trial = 0; trial < 20000; trial++) {
+                int length = 10 + random.nextInt(LineRules.MAX_LENGTH - 9);
+                int[] cells = new int[length];
+                for (int i = 0; i < length; i++) {
+                    // 多数格子只用X/O，才能经常出现长连续
+                    int pick = random.nextInt(10);
+                    cells[i] = pick < 4 ? 1 : pick < 8 ? 2 : 0;
+                }
+                checkAgainstBruteForce(rules, cells);
+            }
+        }
+    }
+
+    // 编码3在连续规则里按空格处理，会打断连续
+    @Test
+    public void unusedCodeBreaksRuns() {
+        LineRules rules = LineRules.STANDARD;
+        assertFalse(rules.allowsRuns(pack(new int[]{1, 1, 1, 2}), 4));
+        assertTrue(rules.allowsRuns(pack(new int[]{1, 1, 3, 1, 1}), 5));
+    }
+
+    @Test
+    public void withCellReplacesOneCell() {
+        int code = pack(new int[]{1, 2, 1, 2});
+        int updated = LineRules.withCell(code, 2, GameLogic.CellState.O);
+        assertEquals(pack(new int[]{1, 2, 2, 2}), updated);
+        assertEquals(pack(new int[]{1, 2, 0, 2}), LineRules.withCell(updated, 2, GameLogic.CellState.EMPTY));
+    }
+
+    @Test
+    public void builderDefaultsAreStandard() {
+        LineRules rules = new LineRules.Builder().build();
+        assertTrue(rules.isStandard());
+        assertTrue(LineRules.STANDARD.isStandard());
+        assertEquals(2, rules.getMaxRun());
+        assertTrue(rules.isBalanced());
+        assertTrue(rules.requiresUniqueLines());
+        assertFalse(new LineRules.Builder().maxRun(3).build().isStandard());
+        assertFalse(new LineRules.Builder().uniqueLines(false).build().isStandard());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void builderRejectsZeroMaxRun() {
+        new LineRules.Builder().maxRun(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void builderRejectsOversizedMaxRun() {
+        new LineRules.Builder().maxRun(64);
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.helloworld.game;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PuzzleCanonicalizerTest {
+    private final PuzzleCanonicalizer canonicalizer = new PuzzleCanonicalizer();
+
+    // 8种几何变换（旋转0/90/180/270度，各自再左右翻转）× 是否X/O互换
+    private static List<GameLogic.CellState[][]> variants(GameLogic.CellState[][] board) {
+        List<GameLogic.CellState[][]> result = new ArrayList<>();
+        GameLogic.CellState[][] current = board;
+        for (int rotation = 0; rotation < 4; rotation++) {
+            for (GameLogic.CellState[][] geometric : new GameLogic.CellState[][][]{current, mirror(current)}) {
+                result.add(geometric);
+                result.add(swap(geometric));
+            }
+            current = rotate(current);
+        }
+        return result;
+    }
+
+    private static GameLogic.CellState[][] rotate(GameLogic.CellState[][] board) {
+        int n = board.length;
+        GameLogic.CellState[][] out = new GameLogic.CellState[n][n];
+        for (int r = 0; r < n; r++) {
+            for (int c = 0; c < n; c++) {
+                out[c][n - 1 - r] = board[r][c];
+            }
+        }
+        return out;
+    }
+
+    private static GameLogic.CellState[][] mirror(GameLogic.CellState[][] board) {
+        int n = board.length;
+        GameLogic.CellState[][] out = new GameLogic.CellState[n][n];
+        for (int r = 0; r < n; r++) {
+            for (int c = 0; c < n; c++) {
+                out[r][n - 1 - c] = board[r][c];
+            }
+        }
+        return out;
+    }
+
+    private static GameLogic.CellState[][] swap(GameLogic.CellState[][] board) {
+        int n = board.length;
+        GameLogic.CellState[][] out = new GameLogic.CellState[n][n];
+        for (int r = 0; r < n; r++) {
+            for (int c = 0; c < n; c++) {
+                GameLogic.CellState s = board[r][c];
+                out[r][c] = s == GameLogic.CellState.X ? GameLogic.CellState.O
+                        : s == GameLogic.CellState.O ? GameLogic.CellState.X : s;
+            }
+        }
+        return out;
+    }
+
+    private static GameLogic.CellState[][] randomBoard(Random random, int size) {
+        GameLogic.CellState[] states = GameLogic.CellState.values();
+        GameLogic.CellState[][] board = new GameLogic.CellState[size][size];
+        for (int r = 0; r < size; r++) {
+            for (int c = 0; c < size; c++) {
+                board[r][c] = states[random.nextInt(states.length)];
+            }
+        }
+        return board;
+    }
+
+    @Test
+    public void allSixteenVariantsHaveTheSameCanonicalForm() {
+        Random random = new Random(1);
+        for (int size : new int[]{2, 4, 5, 6, 8, 16}) {
+            GameLogic.CellState[][] board = randomBoard(random, size);
+            PuzzleCanonicalizer.CanonicalForm expected = canonicalizer.canonicalize(board);
+            List<GameLogic.CellState[][]> all = variants(board);
+            assertEquals(16, all.size());
+            for (GameLogic.CellState[][] variant : all) {
+                assertEquals(expected, canonicalizer.canonicalize(variant));
+                assertEquals(expected.hash64(), canonicalizer.canonicalHash(variant));
+            }
+        }
+    }
+
+    // 规范形式本身是16种变体之一，并且是其中打包编码最小的
+    @Test
+    public void canonicalFormIsTheSmallestVariant() {
+        GameLogic.CellState[][] board = randomBoard(new Random(2), 6);
+        int[] canonical = canonicalizer.canonicalize(board).getRows();
+        boolean found = false;
+        for (GameLogic.CellState[][] variant : variants(board)) {
+            int[] packed = pack(variant);
+            found |= Arrays.equals(packed, canonical);
+            assertTrue(compareUnsigned(canonical, packed) <= 0);
+        }
+        assertTrue(found);
+    }
+
+    @Test
+    public void differentPuzzlesHaveDifferentForms() {
+        GameLogic.CellState[][] a = GameLogic.fromSeed(6, GameLogic.Difficulty.HARD, 1).getBoard();
+        GameLogic.CellState[][] b = GameLogic.fromSeed(6, GameLogic.Difficulty.EASY, 1).getBoard();
+        assertNotEquals(canonicalizer.canonicalize(a), canonicalizer.canonicalize(b));
+    }
+
+    @Test
+    public void dedupeIndexAcceptsOneVariantPerPuzzle() {
+        PuzzleDedupeIndex index = new PuzzleDedupeIndex();
+        Random random = new Random(3);
+        Set<PuzzleCanonicalizer.CanonicalForm> expected = new HashSet<>();
+        // 足够多的谜题，让索引扩容几次
+        for (int i = 0; i < 500; i++) {
+            GameLogic.CellState[][] board = randomBoard(random, 2 + random.nextInt(3));
+            boolean isNew = expected.add(canonicalizer.canonicalize(board));
+            List<GameLogic.CellState[][]> all = variants(board);
+            assertEquals(isNew, index.add(all.get(random.nextInt(all.size()))));
+            for (GameLogic.CellState[][] variant : all) {
+                assertTrue(index.contains(variant));
+                assertFalse(index.add(variant));
+            }
+        }
+        assertEquals(expected.size(), index.size());
+        index.clear();
+        assertEquals(0, index.size());
+    }
+
+    private static int[] pack(GameLogic.CellState[][] board) {
+        int[] rows = new int[board.length];
+        for (int r = 0; r < board.length; r++) {
+            for (int c = 0; c < board.length; c++) {
+                rows[r] |= board[r][c].ordinal() << (2 * c);
+            }
+        }
+        return rows;
+    }
+
+    private static int compareUnsigned(int[] a, int[] b) {
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] != b[i]) {
+                return Integer.compare(a[i] ^ Integer.MIN_VALUE, b[i] ^ Integer.MIN_VALUE);
+            }
+        }
+        return 0;
+    }
+}
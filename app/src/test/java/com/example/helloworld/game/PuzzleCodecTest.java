@@ -0,0 +1,121 @@
+package com.example.helloworld.game;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class PuzzleCodecTest {
+    private final PuzzleCodec codec = new PuzzleCodec();
+
+    @Test
+    public void roundTripWithSolutionAndSeed() throws IOException {
+        Random random = new Random(1);
+        // 包括格子数不是4或8的倍数的大小，检查末尾不满一个字节的部分
+        for (int size : new int[]{1, 3, 4, 5, 6, 8, 10, 14}) {
+            GameLogic.CellState[][] puzzle = randomBoard(random, size, true);
+            GameLogic.CellState[][] solution = randomBoard(random, size, false);
+            long seed = random.nextLong();
+            int flags = PuzzleCodec.FLAG_SOLUTION | PuzzleCodec.FLAG_SEED;
+            byte[] out = new byte[PuzzleCodec.encodedLength(size, flags) + 3];
+
+            int written = codec.encode(puzzle, solution, true, seed, out, 3);
+            assertEquals(PuzzleCodec.encodedLength(size, flags), written);
+            assertEquals(size, PuzzleCodec.peekSize(out, 3));
+            assertEquals(written, PuzzleCodec.recordLength(out[3], out[4]));
+
+            GameLogic.CellState[][] decoded = new GameLogic.CellState[size][size];
+            GameLogic.CellState[][] decodedSolution = new GameLogic.CellState[size][size];
+            assertEquals(written, codec.decode(out, 3, written, decoded, decodedSolution));
+            assertArrayEquals(puzzle, decoded);
+            assertArrayEquals(solution, decodedSolution);
+            assertEquals(flags, codec.getLastFlags());
+            assertEquals(seed, codec.getLastSeed());
+        }
+    }
+
+    @Test
+    public void roundTripWithoutOptionalFields() throws IOException {
+        GameLogic.CellState[][] puzzle = randomBoard(new Random(2), 6, true);
+        byte[] out = new byte[PuzzleCodec.encodedLength(6, 0)];
+        assertEquals(out.length, codec.encode(puzzle, null, false, 0, out, 0));
+
+        GameLogic.CellState[][] decoded = new GameLogic.CellState[6][6];
+        codec.decode(out, 0, out.length, decoded, null);
+        assertArrayEquals(puzzle, decoded);
+        assertEquals(0, codec.getLastFlags());
+        assertEquals(0, codec.getLastSeed());
+    }
+
+    // 谜题库按ByteBuffer解码，结果必须与字节数组一致
+    @Test
+    public void byteBufferDecodeMatchesArrayDecode() throws IOException {
+        Random random = new Random(3);
+        GameLogic.CellState[][] puzzle = randomBoard(random, 8, true);
+        GameLogic.CellState[][] solution = randomBoard(random, 8, false);
+        int length = PuzzleCodec.encodedLength(8, PuzzleCodec.FLAG_SOLUTION | PuzzleCodec.FLAG_SEED);
+        byte[] out = new byte[length + 5];
+        codec.encode(puzzle, solution, true, 77L, out, 5);
+
+        GameLogic.CellState[][] decoded = new GameLogic.CellState[8][8];
+        GameLogic.CellState[][] decodedSolution = new GameLogic.CellState[8][8];
+        assertEquals(length, codec.decode(ByteBuffer.wrap(out), 5, length, decoded, decodedSolution));
+        assertArrayEquals(puzzle, decoded);
+        assertArrayEquals(solution, decodedSolution);
+        assertEquals(77L, codec.getLastSeed());
+    }
+
+    // 任意一位出错都必须被拒绝（CRC32能发现所有单比特错误，头部出错时报告格式错误）
+    @Test
+    public void rejectsEverySingleBitFlip() {
+        Random random = new Random(4);
+        GameLogic.CellState[][] puzzle = randomBoard(random, 6, true);
+        GameLogic.CellState[][] solution = randomBoard(random, 6, false);
+        byte[] out = new byte[PuzzleCodec.encodedLength(6, PuzzleCodec.FLAG_SOLUTION | PuzzleCodec.FLAG_SEED)];
+        codec.encode(puzzle, solution, true, 5L, out, 0);
+
+        for (int bit = 0; bit < out.length * 8; bit++) {
+            byte[] corrupt = out.clone();
+            corrupt[bit / 8] ^= (byte) (1 << (bit % 8));
+            try {
+                codec.decode(corrupt, 0, corrupt.length, new GameLogic.CellState[6][6], new GameLogic.CellState[6][6]);
+                fail("bit " + bit + " flipped but record accepted");
+            } catch (IOException expected) {
+                // 预期的结果
+            }
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsTruncatedRecord() throws IOException {
+        GameLogic.CellState[][] puzzle = randomBoard(new Random(5), 6, true);
+        byte[] out = new byte[PuzzleCodec.encodedLength(6, 0)];
+        codec.encode(puzzle, null, false, 0, out, 0);
+        codec.decode(out, 0, out.length - 1, new GameLogic.CellState[6][6], null);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsBoardOfWrongSize() throws IOException {
+        GameLogic.CellState[][] puzzle = randomBoard(new Random(6), 6, true);
+        byte[] out = new byte[PuzzleCodec.encodedLength(6, 0)];
+        codec.encode(puzzle, null, false, 0, out, 0);
+        codec.decode(out, 0, out.length, new GameLogic.CellState[8][8], null);
+    }
+
+    private static GameLogic.CellState[][] randomBoard(Random random, int size, boolean allowEmpty) {
+        GameLogic.CellState[] states = GameLogic.CellState.values();
+        GameLogic.CellState[][] board = new GameLogic.CellState[size][size];
+        for (int r = 0; r < size; r++) {
+            for (int c = 0; c < size; c++) {
+                board[r][c] = allowEmpty ? states[random.nextInt(states.length)]
+                        : (random.nextBoolean() ? GameLogic.CellState.X : GameLogic.CellState.O);
+            }
+        }
+        return board;
+    }
+}
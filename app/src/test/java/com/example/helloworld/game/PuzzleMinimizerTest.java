@@ -0,0 +1,102 @@
+package com.example.helloworld.game;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PuzzleMinimizerTest {
+    private static int countClues(GameLogic.CellState[][] board) {
+        int clues = 0;
+        for (GameLogic.CellState[] row : board) {
+            for (GameLogic.CellState cell : row) {
+                if (cell != GameLogic.CellState.EMPTY) {
+                    clues++;
+                }
+            }
+        }
+        return clues;
+    }
+
+    private static int countSolutions(GameLogic.CellState[][] board) {
+        PuzzleSolver solver = new PuzzleSolver(board.length);
+        solver.load(board);
+        return solver.countSolutions(2);
+    }
+
+    // 从完整的终盘删到最少，结果仍然只有原来的解，且剩下的每个线索都删不掉
+    @Test
+    public void keepsUniqueSolutionAndLeavesNoRedundantClue() {
+        Random random = new Random(1);
+        for (int size : new int[]{4, 6, 8}) {
+            for (long seed = 0; seed < 4; seed++) {
+                GameLogic.CellState[][] solution = GameLogic.fromSeed(size, GameLogic.Difficulty.EASY, seed).getSolution();
+                GameLogic.CellState[][] puzzle = GameLogic.fromSeed(size, GameLogic.Difficulty.EASY, seed).getSolution();
+                int remaining = new PuzzleMinimizer(size).minimize(puzzle, solution, random, 0);
+                assertEquals(remaining, countClues(puzzle));
+
+                PuzzleSolver solver = new PuzzleSolver(size);
+                solver.load(puzzle);
+                GameLogic.CellState[][] found = new GameLogic.CellState[size][size];
+                assertEquals(1, solver.countSolutions(2, found));
+                for (int r = 0; r < size; r++) {
+                    for (int c = 0; c < size; c++) {
+                        assertEquals(solution[r][c], found[r][c]);
+                        // 线索都来自原解
+                        assertTrue(puzzle[r][c] == GameLogic.CellState.EMPTY || puzzle[r][c] == solution[r][c]);
+                    }
+                }
+                for (int r = 0; r < size; r++) {
+                    for (int c = 0; c < size; c++) {
+                        if (puzzle[r][c] != GameLogic.CellState.EMPTY) {
+                            GameLogic.CellState clue = puzzle[r][c];
+                            puzzle[r][c] = GameLogic.CellState.EMPTY;
+                            assertEquals(2, countSolutions(puzzle));
+                            puzzle[r][c] = clue;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void respectsMinimumClueCount() {
+        GameLogic.CellState[][] solution = GameLogic.fromSeed(6, GameLogic.Difficulty.EASY, 7).getSolution();
+        GameLogic.CellState[][] puzzle = GameLogic.fromSeed(6, GameLogic.Difficulty.EASY, 7).getSolution();
+        int remaining = new PuzzleMinimizer(6).minimize(puzzle, solution, new Random(2), 18);
+        assertEquals(18, remaining);
+        assertEquals(18, countClues(puzzle));
+        assertEquals(1, countSolutions(puzzle));
+    }
+
+    // 同一随机序列得到同一谜题（种子确定性的基础）
+    @Test
+    public void isDeterministicForTheSameRandomSequence() {
+        GameLogic.CellState[][] solution = GameLogic.fromSeed(8, GameLogic.Difficulty.EASY, 3).getSolution();
+        GameLogic.CellState[][] a = GameLogic.fromSeed(8, GameLogic.Difficulty.EASY, 3).getSolution();
+        GameLogic.CellState[][] b = GameLogic.fromSeed(8, GameLogic.Difficulty.EASY, 3).getSolution();
+        new PuzzleMinimizer(8).minimize(a, solution, new Random(5), 0);
+        new PuzzleMinimizer(8).minimize(b, solution, new Random(5), 0);
+        for (int r = 0; r < 8; r++) {
+            for (int c = 0; c < 8; c++) {
+                assertEquals(a[r][c], b[r][c]);
+            }
+        }
+    }
+
+    // 截止时间已过时不再试删，谜题原样保留并报告提前结束
+    @Test
+    public void stopsAtDeadline() {
+        GameLogic.CellState[][] solution = GameLogic.fromSeed(6, GameLogic.Difficulty.EASY, 4).getSolution();
+        GameLogic.CellState[][] puzzle = GameLogic.fromSeed(6, GameLogic.Difficulty.EASY, 4).getSolution();
+        PuzzleMinimizer minimizer = new PuzzleMinimizer(6);
+        assertEquals(36, minimizer.minimize(puzzle, solution, new Random(1), 0, System.nanoTime() - 1));
+        assertTrue(minimizer.isCutShort());
+        minimizer.minimize(puzzle, solution, new Random(1), 0);
+        assertFalse(minimizer.isCutShort());
+    }
+}
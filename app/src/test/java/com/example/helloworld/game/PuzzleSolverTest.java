@@ -0,0 +1,103 @@
+package com.example.helloworld.game;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PuzzleSolverTest {
+    private static GameLogic.CellState[][] emptyBoard(int size) {
+        GameLogic.CellState[][] board = new GameLogic.CellState[size][size];
+        for (GameLogic.CellState[] row : board) {
+            Arrays.fill(row, GameLogic.CellState.EMPTY);
+        }
+        return board;
+    }
+
+    @Test
+    public void solvesGeneratedPuzzlesToTheirUniqueSolution() {
+        for (int size : new int[]{4, 6, 8}) {
+            for (long seed = 0; seed < 5; seed++) {
+                GameLogic game = GameLogic.fromSeed(size, GameLogic.Difficulty.HARD, seed);
+                PuzzleSolver solver = new PuzzleSolver(size);
+                solver.load(game.getBoard());
+                GameLogic.CellState[][] found = new GameLogic.CellState[size][size];
+                assertEquals(1, solver.countSolutions(2, found));
+                assertArrayEquals(game.getSolution(), found);
+                assertFalse(solver.isAborted());
+            }
+        }
+    }
+
+    // 空棋盘的解就是全部合法终盘：4x4有72个，6x6有4140个
+    @Test
+    public void countsAllGridsOfEmptyBoard() {
+        PuzzleSolver four = new PuzzleSolver(4);
+        four.load(emptyBoard(4));
+        assertEquals(72, four.countSolutions(1000));
+        PuzzleSolver six = new PuzzleSolver(6);
+        six.load(emptyBoard(6));
+        assertEquals(4140, six.countSolutions(10000));
+    }
+
+    @Test
+    public void stopsCountingAtLimit() {
+        PuzzleSolver solver = new PuzzleSolver(6);
+        solver.load(emptyBoard(6));
+        assertEquals(2, solver.countSolutions(2));
+    }
+
+    // 给定格子本身违反规则（三个连续的X）时无解
+    @Test
+    public void rejectsInconsistentGivens() {
+        GameLogic.CellState[][] board = emptyBoard(6);
+        board[0][0] = GameLogic.CellState.X;
+        board[0][1] = GameLogic.CellState.X;
+        board[0][2] = GameLogic.CellState.X;
+        PuzzleSolver solver = new PuzzleSolver(6);
+        solver.load(board);
+        assertFalse(solver.isConsistent());
+        assertEquals(0, solver.countSolutions(2));
+    }
+
+    @Test
+    public void canPlaceEnforcesRunAndBalanceRules() {
+        GameLogic.CellState[][] board = emptyBoard(4);
+        board[0][0] = GameLogic.CellState.X;
+        board[0][1] = GameLogic.CellState.X;
+        PuzzleSolver solver = new PuzzleSolver(4);
+        solver.load(board);
+        // 第三个X会连成三个，也会超过一半
+        assertFalse(solver.canPlace(0, 2, true));
+        assertTrue(solver.canPlace(0, 2, false));
+        // 已经有子的格子不能再放
+        assertFalse(solver.canPlace(0, 0, false));
+    }
+
+    // 超过节点上限时放弃并标记aborted，而不是报告无解
+    @Test
+    public void abortsWhenNodeBudgetIsExhausted() {
+        PuzzleSolver solver = new PuzzleSolver(12);
+        solver.load(emptyBoard(12));
+        solver.setNodeBudget(3);
+        assertEquals(0, solver.countSolutions(1000));
+        assertTrue(solver.isAborted());
+        assertTrue(solver.getNodes() > 3);
+    }
+
+    @Test
+    public void cancelAbortsNextSolve() {
+        PuzzleSolver solver = new PuzzleSolver(6);
+        solver.load(emptyBoard(6));
+        solver.cancel();
+        assertEquals(0, solver.countSolutions(1));
+        assertTrue(solver.isAborted());
+        // 取消只作用一次
+        solver.resetToGivens();
+        assertEquals(1, solver.countSolutions(1));
+    }
+}
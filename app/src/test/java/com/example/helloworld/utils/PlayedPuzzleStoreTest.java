@@ -0,0 +1,96 @@
+package com.example.helloworld.utils;
+
+import com.example.helloworld.game.GameLogic;
+import com.example.helloworld.game.GridCatalogue;
+import com.example.helloworld.game.PuzzleCanonicalizer;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PlayedPuzzleStoreTest {
+    private static final int SIZE = 4;
+    private static final int CELLS = SIZE * SIZE;
+
+    // 穷举4x4困难谜题可能的结果：每个终盘上所有唯一解、且去掉任何一个线索都不再唯一的线索子集，
+    // 按规范形式计数。最小化按随机顺序试删、每个线索只试一次，得到的正是这样的谜题，
+    // 并且每个这样的谜题都能由某个试删顺序得到
+    private static Set<Long> minimalPuzzles() {
+        GridCatalogue catalogue = GridCatalogue.builtIn(SIZE);
+        int count = catalogue.count();
+        GameLogic.CellState[][][] grids = new GameLogic.CellState[count][SIZE][SIZE];
+        for (int i = 0; i < count; i++) {
+            catalogue.grid(i, grids[i]);
+        }
+        PuzzleCanonicalizer canonicalizer = new PuzzleCanonicalizer();
+        Set<Long> forms = new HashSet<>();
+        boolean[] unique = new boolean[1 << CELLS];
+        int[] agree = new int[count];
+        GameLogic.CellState[][] puzzle = new GameLogic.CellState[SIZE][SIZE];
+        for (int g = 0; g < count; g++) {
+            // agree[h]：终盘h与终盘g相同的格子
+            for (int h = 0; h < count; h++) {
+                agree[h] = 0;
+                for (int k = 0; k < CELLS; k++) {
+                    if (grids[g][k / SIZE][k % SIZE] == grids[h][k / SIZE][k % SIZE]) {
+                        agree[h] |= 1 << k;
+                    }
+                }
+            }
+            // 线索集合mask唯一确定终盘g，当且仅当没有别的终盘在mask上都与g相同
+            for (int mask = 0; mask < 1 << CELLS; mask++) {
+                boolean isUnique = true;
+                for (int h = 0; h < count && isUnique; h++) {
+                    isUnique = h == g || (mask & ~agree[h]) != 0;
+                }
+                unique[mask] = isUnique;
+            }
+            for (int mask = 0; mask < 1 << CELLS; mask++) {
+                if (!unique[mask] || !isMinimal(unique, mask)) {
+                    continue;
+                }
+                for (int k = 0; k < CELLS; k++) {
+                    puzzle[k / SIZE][k % SIZE] = (mask >>> k & 1) != 0
+                            ? grids[g][k / SIZE][k % SIZE] : GameLogic.CellState.EMPTY;
+                }
+                forms.add(canonicalizer.canonicalHash(puzzle));
+            }
+        }
+        return forms;
+    }
+
+    private static boolean isMinimal(boolean[] unique, int mask) {
+        for (int rest = mask; rest != 0; rest &= rest - 1) {
+            if (unique[mask & ~(rest & -rest)]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // 生成算法变了（ENGINE_VERSION加一）或者常数与穷举结果不符时失败，提醒重新核对
+    @Test
+    public void distinct4x4HardCountMatchesExhaustiveDerivation() {
+        assertEquals("re-derive DISTINCT_4X4_HARD for the new engine",
+                GameLogic.ENGINE_VERSION, PlayedPuzzleStore.DISTINCT_ENGINE_VERSION);
+        Set<Long> forms = minimalPuzzles();
+        assertEquals(forms.size(), PlayedPuzzleStore.distinctPuzzles(SIZE, GameLogic.Difficulty.HARD));
+
+        // 实际生成的谜题都在穷举的集合里（最小化确实删到了不能再删）
+        PuzzleCanonicalizer canonicalizer = new PuzzleCanonicalizer();
+        for (long seed = 0; seed < 2000; seed++) {
+            GameLogic game = GameLogic.fromSeed(SIZE, GameLogic.Difficulty.HARD, seed);
+            assertTrue("seed " + seed, forms.contains(canonicalizer.canonicalHash(game.getBoard())));
+        }
+    }
+
+    @Test
+    public void otherCombinationsAreUnbounded() {
+        assertEquals(Integer.MAX_VALUE, PlayedPuzzleStore.distinctPuzzles(4, GameLogic.Difficulty.EASY));
+        assertEquals(Integer.MAX_VALUE, PlayedPuzzleStore.distinctPuzzles(6, GameLogic.Difficulty.HARD));
+    }
+}